@@ -3,6 +3,7 @@ package cz.muni.fi.pv217.kafka;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.muni.fi.pv217.kafka.dto.AnalyticsRequest;
+import cz.muni.fi.pv217.kafka.dto.MetricAggregate;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -16,12 +17,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.util.concurrent.AtomicDouble;
 
+import java.time.Instant;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Feeds the device dashboards. Readings arrive as tumbling window aggregates on metric-aggregates;
+ * processed-data-stream carries only the events that violate a rule, so violations show up without
+ * waiting for their window to close. A metric is only updated by data newer than what it shows.
+ */
 @ApplicationScoped
 public class AnalyticsRequestListener {
 
+    private static final String TUMBLING = "TUMBLING";
+
     private static final Logger LOG = LoggerFactory.getLogger(AnalyticsRequestListener.class);
 
     @Inject
@@ -35,10 +45,12 @@ public class AnalyticsRequestListener {
     private final ConcurrentMap<String, AtomicDouble> metricViolations = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AtomicDouble> locationLat = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AtomicDouble> locationLon = new ConcurrentHashMap<>();
+    // Time of the data each device metric shows, an aggregate ends where the readings of the next window start
+    private final ConcurrentMap<String, Instant> metricTimes = new ConcurrentHashMap<>();
 
 
     void onStart(@Observes StartupEvent ev) {
-        LOG.info("AnalyticsRequestListener started. Consuming Kafka topic: processed-data-stream");
+        LOG.info("AnalyticsRequestListener started. Consuming Kafka topics: processed-data-stream, metric-aggregates");
     }
 
 
@@ -68,6 +80,39 @@ public class AnalyticsRequestListener {
     }
 
 
+    // Sliding windows overlap the tumbling ones, only the tumbling aggregates update the dashboards
+    @Incoming("metric-aggregates")
+    @Timed("metric_aggregate_processing_time")
+    @Counted("metric_aggregate_request_count")
+    public void consumeAggregate(String message) {
+        if (message == null || message.isBlank()) {
+            LOG.warn("Received empty Kafka message – skipping");
+            return;
+        }
+
+        try {
+            MetricAggregate aggregate = objectMapper.readValue(message, MetricAggregate.class);
+            if (!TUMBLING.equals(aggregate.getWindowType()) || aggregate.getDeviceId() == null
+                    || aggregate.getMetricName() == null || aggregate.getWindowEnd() == null) {
+                return;
+            }
+
+            LOG.debug("Received aggregate for deviceId={}, metric={}, window end={}",
+                    aggregate.getDeviceId(), aggregate.getMetricName(), aggregate.getWindowEnd());
+
+            String deviceId = aggregate.getDeviceId().toString();
+            pushMetric(deviceId, aggregate.getMetricName(), aggregate.getAvg(),
+                    aggregate.getViolationCount() > 0, aggregate.getWindowEnd());
+            pushLocation(deviceId, aggregate.getLocation());
+
+        } catch (JsonProcessingException e) {
+            LOG.error("JSON parse error: {}", e.getMessage());
+        } catch (Exception e) {
+            LOG.error("Processing error", e);
+        }
+    }
+
+
     private AtomicDouble gauge(String name, Tags tags, ConcurrentMap<String, AtomicDouble> store) {
 
         // Stable unique key for this metric + tags combination
@@ -91,25 +136,49 @@ public class AnalyticsRequestListener {
         String deviceId = req.getDeviceId().toString();
 
         for (AnalyticsRequest.ProcessedEventMetricTo metric : req.getMetrics()) {
+            if (metric.getValue() != null) {
+                pushMetric(deviceId, metric.getMetricName(), metric.getValue(),
+                        metric.isViolatingSafety(), req.getTimestamp());
+            }
+        }
+
+        pushLocation(deviceId, req.getLocation());
+    }
 
-            gauge(
-                    "device_metric_value",
-                    Tags.of("deviceId", deviceId, "metricName", metric.getMetricName()),
-                    metricValues
-            ).set(metric.getValue());
-
-            gauge(
-                    "device_metric_violation",
-                    Tags.of("deviceId", deviceId, "metricName", metric.getMetricName()),
-                    metricViolations
-            ).set(metric.isViolatingSafety() ? 1.0 : 0.0);
+
+    private void pushMetric(String deviceId, String metricName, double value, boolean violating, Instant at) {
+
+        // Skips data older than what the metric already shows, e.g. the aggregate of a window
+        // that closed after a violating reading of the next one was received
+        if (at != null) {
+            Instant shown = metricTimes.merge(deviceId + "|" + metricName, at,
+                    (previous, current) -> current.isBefore(previous) ? previous : current);
+            if (!shown.equals(at)) {
+                return;
+            }
         }
 
+        gauge(
+                "device_metric_value",
+                Tags.of("deviceId", deviceId, "metricName", metricName),
+                metricValues
+        ).set(value);
+
+        gauge(
+                "device_metric_violation",
+                Tags.of("deviceId", deviceId, "metricName", metricName),
+                metricViolations
+        ).set(violating ? 1.0 : 0.0);
+    }
+
+
+    private void pushLocation(String deviceId, Map<String, Double> location) {
+
         // ---- LOCATION ----
-        if (req.getLocation() != null) {
+        if (location != null) {
 
-            Double lat = req.getLocation().get("latitude");
-            Double lon = req.getLocation().get("longitude");
+            Double lat = location.get("latitude");
+            Double lon = location.get("longitude");
 
             if (lat != null && lon != null) {
                 gauge(
@@ -0,0 +1,31 @@
+package cz.muni.fi.pv217.kafka.dto;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Aggregate of one metric of a device over a closed window, from the metric-aggregates topic.
+ */
+@Builder
+@Getter
+@Setter
+public class MetricAggregate {
+
+    UUID deviceId;
+    // Latest known location of the device
+    Map<String, Double> location;
+    String metricName;
+    // TUMBLING or SLIDING
+    String windowType;
+    Instant windowStart;
+    Instant windowEnd;
+    long count;
+    long violationCount;
+    double min;
+    double max;
+    double avg;
+}
@@ -1,21 +1,44 @@
 package cz.muni.fi.pv217.devicemanagementservice.api;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
 import cz.muni.fi.pv217.devicemanagementservice.dto.device.CreateDeviceRequest;
+import cz.muni.fi.pv217.devicemanagementservice.dto.device.DeviceExistenceResponse;
 import cz.muni.fi.pv217.devicemanagementservice.dto.device.UpdateDeviceRequest;
+import cz.muni.fi.pv217.devicemanagementservice.dto.bulk.BulkResult;
 import cz.muni.fi.pv217.devicemanagementservice.exceptions.DeviceNotFoundException;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceReadService;
 import cz.muni.fi.pv217.devicemanagementservice.service.DeviceService;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import java.net.URI;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @Slf4j
 @Path("/devices")
@@ -23,9 +46,27 @@ import lombok.extern.slf4j.Slf4j;
 @Consumes(MediaType.APPLICATION_JSON)
 public class DeviceResource {
 
+    // Id of the last item of a full page, to be passed as 'after' for the next page
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Set when more devices were found near the location than device.geo.max-candidates allows
+    // to compare, the result may then miss some of the nearest devices
+    static final String TRUNCATED_HEADER = "X-Truncated";
+
     @Inject
     DeviceService service;
 
+    @Inject
+    DeviceReadService readService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "device.bulk.max-items", defaultValue = "100000")
+    int bulkMaxItems;
+
+    @ConfigProperty(name = "device.exists.max-ids", defaultValue = "10000")
+    int existsMaxIds;
+
     // --- C: Create (POST /devices) ---
     @POST
     @Timed("create_device_processing_time")
@@ -37,13 +78,107 @@ public class DeviceResource {
         return Response.created(URI.create("/devices/" + device.id)).entity(device).build();
     }
 
+    // --- C: Bulk create (POST /devices/bulk) ---
+    // Items are validated one by one, so invalid items are reported instead of rejecting the request.
+    // 201 when all items were created, 207 with the failures when only some were. When none was,
+    // 503 if items could not be stored and can be sent again, otherwise 400.
+    @POST
+    @Path("/bulk")
+    @Timed("bulk_create_device_processing_time")
+    @Counted("bulk_create_device_request_count")
+    public Response createBulk(List<CreateDeviceRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > bulkMaxItems) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Bulk request must contain between 1 and " + bulkMaxItems + " devices"))
+                    .build();
+        }
+
+        BulkResult result = service.createDevices(requests);
+        return Response.status(BulkResult.status(result)).entity(result).build();
+    }
+
+    // --- Listing (GET /devices), one page of `limit` devices (100 by default) ---
+    // Devices are paged by id: a full page carries its last id in X-Next-Cursor, which is passed
+    // as `after` to get the next one. Clients that need every device read GET /devices/stream.
     @GET
     @Timed("getall_device_processing_time")
     @Counted("getall_device_request_count")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAll() {
-        var devices = service.findAllDevices();
-        return Response.ok(devices).build();
+    public Response getAll(@QueryParam("after") UUID after,
+                           @QueryParam("limit") @DefaultValue("100") @Min(1) @Max(1000) int limit,
+                           @QueryParam("status") DeviceStatus status,
+                           @QueryParam("type") String type) {
+        List<Device> devices = service.findDevicePage(after, status, type, limit);
+        Response.ResponseBuilder response = Response.ok(devices);
+        if (devices.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, devices.get(devices.size() - 1).id);
+        }
+        return response.build();
+    }
+
+    // --- Radius query (GET /devices/near), nearest first, see TRUNCATED_HEADER ---
+    @GET
+    @Path("/near")
+    @Timed("near_device_processing_time")
+    @Counted("near_device_request_count")
+    public Response near(@QueryParam("latitude") @NotNull @DecimalMin("-90") @DecimalMax("90") Double latitude,
+                         @QueryParam("longitude") @NotNull @DecimalMin("-180") @DecimalMax("180") Double longitude,
+                         @QueryParam("radiusKm") @NotNull @DecimalMin(value = "0", inclusive = false) @DecimalMax("20040") Double radiusKm,
+                         @QueryParam("status") DeviceStatus status,
+                         @QueryParam("limit") @DefaultValue("100") @Min(1) @Max(1000) int limit) {
+        DeviceService.NearbyDevices nearby = service.findDevicesNear(latitude, longitude, radiusKm, status, limit);
+        Response.ResponseBuilder response = Response.ok(nearby.devices());
+        if (nearby.truncated()) {
+            response.header(TRUNCATED_HEADER, true);
+        }
+        return response.build();
+    }
+
+    // --- Bounding-box query (GET /devices/within) ---
+    @GET
+    @Path("/within")
+    @Timed("within_device_processing_time")
+    @Counted("within_device_request_count")
+    public Response within(@QueryParam("minLatitude") @NotNull @DecimalMin("-90") @DecimalMax("90") Double minLatitude,
+                           @QueryParam("minLongitude") @NotNull @DecimalMin("-180") @DecimalMax("180") Double minLongitude,
+                           @QueryParam("maxLatitude") @NotNull @DecimalMin("-90") @DecimalMax("90") Double maxLatitude,
+                           @QueryParam("maxLongitude") @NotNull @DecimalMin("-180") @DecimalMax("180") Double maxLongitude,
+                           @QueryParam("status") DeviceStatus status,
+                           @QueryParam("limit") @DefaultValue("1000") @Min(1) @Max(10000) int limit) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Minimum latitude and longitude must not exceed the maximum ones"))
+                    .build();
+        }
+        return Response.ok(service.findDevicesWithin(minLatitude, minLongitude, maxLatitude, maxLongitude, status, limit)).build();
+    }
+
+    // --- Existence check (POST /devices/exists) ---
+    // Answers with a bitmap in request order instead of loading and serializing every device
+    @POST
+    @Path("/exists")
+    @Timed("exists_device_processing_time")
+    @Counted("exists_device_request_count")
+    public Response exists(List<UUID> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > existsMaxIds || ids.contains(null)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Request must contain between 1 and " + existsMaxIds + " device ids"))
+                    .build();
+        }
+
+        BitSet registered = service.findRegistered(ids);
+        String bitmap = Base64.getEncoder().encodeToString(registered.toByteArray());
+        return Response.ok(new DeviceExistenceResponse(ids.size(), registered.cardinality(), bitmap)).build();
+    }
+
+    @GET
+    @Path("/stream")
+    @Timed("stream_device_processing_time")
+    @Counted("stream_device_request_count")
+    @Produces(NdjsonOutput.MEDIA_TYPE)
+    public Response stream(@QueryParam("status") DeviceStatus status, @QueryParam("type") String type) {
+        StreamingOutput body = output -> service.streamDevices(status, type, NdjsonOutput.lines(objectMapper, Device.class, output));
+        return Response.ok(body).build();
     }
 
     @GET
@@ -51,26 +186,33 @@ public class DeviceResource {
     @Timed("get_by_id_processing_time")
     @Counted("get_by_id_request_count")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getById(@PathParam("id") UUID id) {
-        try {
-            Device device = service.findDeviceById(id);
-            return Response.ok(device).build();
-        } catch (DeviceNotFoundException e) {
-            // LOG.error("Device not found: {}, {}", id,  e.getMessage());
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
+    public Uni<Response> getById(@PathParam("id") UUID id, @Context Request request,
+                                 @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        return conditional(readService, id, request, ifNoneMatch, () -> readService.findDeviceById(id)
+                .map(device -> device != null
+                        ? Response.ok(device).tag(versionTag(device.version)).build()
+                        : Response.status(Response.Status.NOT_FOUND).build()));
     }
 
     @PUT
     @Timed("update_device_processing_time")
     @Counted("update_device_request_count")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response update(@Valid UpdateDeviceRequest request) {
+    public Response update(@Valid UpdateDeviceRequest request,
+                           @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch) {
         try {
-            var updatedDevice = service.updateDevice(request.id(), request);
-            return Response.ok(updatedDevice).build();
+            var updatedDevice = service.updateDevice(request.id(), request, matchedVersion(ifMatch));
+            return Response.ok(updatedDevice).tag(versionTag(updatedDevice.version)).build();
         } catch (DeviceNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
+        } catch (OptimisticLockException e) {
+            // Without If-Match the conflict is answered by OptimisticLockExceptionMapper
+            if (ifMatch == null) {
+                throw e;
+            }
+            return Response.status(Response.Status.PRECONDITION_FAILED)
+                    .entity(Map.of("error", "Device was changed, fetch it again to get its current ETag"))
+                    .build();
         }
     }
 
@@ -86,4 +228,49 @@ public class DeviceResource {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * ETag of the representations of a device and of its rules, see Device#version.
+     */
+    static EntityTag versionTag(long version) {
+        return new EntityTag(Long.toString(version));
+    }
+
+    /**
+     * Version required by an If-Match header, null when the header is missing or matches any version.
+     * A tag that is not a strong version tag never matches.
+     */
+    static Long matchedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Answers a conditional request with 304 Not Modified after reading only the version of the device,
+     * other requests get the full response.
+     */
+    static Uni<Response> conditional(DeviceReadService readService, UUID deviceId, Request request,
+                                     String ifNoneMatch, Supplier<Uni<Response>> full) {
+        if (ifNoneMatch == null) {
+            return full.get();
+        }
+        return readService.findDeviceVersion(deviceId)
+                .flatMap(version -> {
+                    if (version == null) {
+                        return full.get();
+                    }
+                    Response.ResponseBuilder notModified = request.evaluatePreconditions(versionTag(version));
+                    return notModified != null ? Uni.createFrom().item(notModified.build()) : full.get();
+                });
+    }
+}
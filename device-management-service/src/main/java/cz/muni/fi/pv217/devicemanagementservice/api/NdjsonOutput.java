@@ -0,0 +1,41 @@
+package cz.muni.fi.pv217.devicemanagementservice.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes entities to a response as newline-delimited JSON, one line per entity, as they are read.
+ */
+final class NdjsonOutput {
+
+    static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private NdjsonOutput() {
+    }
+
+    /**
+     * @return A consumer writing every entity as one line to the output, which is neither flushed
+     * after every entity nor closed
+     */
+    static <T> Consumer<T> lines(ObjectMapper objectMapper, Class<T> type, OutputStream output) {
+        ObjectWriter writer = objectMapper.writerFor(type)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return entity -> {
+            try {
+                writer.writeValue(output, entity);
+                output.write('\n');
+            } catch (IOException e) {
+                // Client went away, ends the stream and its transaction
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
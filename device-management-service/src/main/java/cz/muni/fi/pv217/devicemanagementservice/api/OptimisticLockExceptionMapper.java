@@ -0,0 +1,28 @@
+package cz.muni.fi.pv217.devicemanagementservice.api;
+
+import jakarta.persistence.OptimisticLockException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Answers a change that lost the race against a concurrent change of the same device with
+ * 409 Conflict instead of 500, the client can fetch the device again and retry.
+ */
+@Slf4j
+@Provider
+public class OptimisticLockExceptionMapper implements ExceptionMapper<OptimisticLockException> {
+
+    @Override
+    public Response toResponse(OptimisticLockException exception) {
+        log.debug("Concurrent change rejected: {}", exception.getMessage());
+        return Response.status(Response.Status.CONFLICT)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(Map.of("error", "Device was changed concurrently, fetch it again and retry"))
+                .build();
+    }
+}
@@ -1,21 +1,33 @@
 package cz.muni.fi.pv217.devicemanagementservice.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
+import cz.muni.fi.pv217.devicemanagementservice.dto.bulk.BulkResult;
 import cz.muni.fi.pv217.devicemanagementservice.dto.rule.CreateRuleRequest;
 import cz.muni.fi.pv217.devicemanagementservice.dto.rule.UpdateRuleRequest;
 import cz.muni.fi.pv217.devicemanagementservice.exceptions.DeviceNotFoundException;
+import cz.muni.fi.pv217.devicemanagementservice.exceptions.InvalidRuleException;
 import cz.muni.fi.pv217.devicemanagementservice.exceptions.RuleNotFoundException;
-import cz.muni.fi.pv217.devicemanagementservice.service.DeviceService;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceReadService;
 import cz.muni.fi.pv217.devicemanagementservice.service.RuleService;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.net.URI;
 import java.util.List;
@@ -32,7 +44,13 @@ public class RuleResource {
     RuleService service;
 
     @Inject
-    DeviceService deviceService;
+    DeviceReadService readService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "device.bulk.max-items", defaultValue = "100000")
+    int bulkMaxItems;
 
     // --- C: Create (POST /rules) ---
     @POST
@@ -54,13 +72,51 @@ public class RuleResource {
         }
     }
 
+    // --- C: Bulk create (POST /rules/bulk) ---
+    // Items are validated one by one, so invalid items are reported instead of rejecting the request.
+    // 201 when all items were created, 207 with the failures when only some were. When none was,
+    // 503 if items could not be stored and can be sent again, otherwise 400.
+    @POST
+    @Path("/bulk")
+    @Timed("bulk_create_rule_processing_time")
+    @Counted("bulk_create_rule_request_count")
+    public Response createBulk(List<CreateRuleRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > bulkMaxItems) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Bulk request must contain between 1 and " + bulkMaxItems + " rules"))
+                    .build();
+        }
+
+        BulkResult result = service.createRules(requests);
+        return Response.status(BulkResult.status(result)).entity(result).build();
+    }
+
+    // --- Listing (GET /rules), one page of `limit` rules, paged like GET /devices; every rule is read
+    // through GET /rules/stream ---
     @GET
     @Timed("get_rule_processing_time")
     @Counted("get_rule_request_count")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAll() {
-        var rules = service.findAllRules();
-        return Response.ok(rules).build();
+    public Response getAll(@QueryParam("after") UUID after,
+                           @QueryParam("limit") @DefaultValue("100") @Min(1) @Max(1000) int limit,
+                           @QueryParam("deviceId") UUID deviceId,
+                           @QueryParam("ruleType") RuleType ruleType) {
+        List<Rule> rules = service.findRulePage(after, deviceId, ruleType, limit);
+        Response.ResponseBuilder response = Response.ok(rules);
+        if (rules.size() == limit) {
+            response.header(DeviceResource.NEXT_CURSOR_HEADER, rules.get(rules.size() - 1).id);
+        }
+        return response.build();
+    }
+
+    @GET
+    @Path("/stream")
+    @Timed("stream_rule_processing_time")
+    @Counted("stream_rule_request_count")
+    @Produces(NdjsonOutput.MEDIA_TYPE)
+    public Response stream(@QueryParam("deviceId") UUID deviceId, @QueryParam("ruleType") RuleType ruleType) {
+        StreamingOutput body = output -> service.streamRules(deviceId, ruleType, NdjsonOutput.lines(objectMapper, Rule.class, output));
+        return Response.ok(body).build();
     }
 
     @GET
@@ -83,16 +139,15 @@ public class RuleResource {
     @Timed("get_rule_by_device_id_processing_time")
     @Counted("get_rule_by_device_id_request_count")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getRuleByDeviceId(@PathParam("device_id") UUID deviceId) {
-        try {
-            deviceService.findDeviceById(deviceId);
-        } catch (DeviceNotFoundException e) {
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity("No device with ID: " + deviceId + " does not exists")
-                    .build();
-        }
-
-        return Response.ok(service.findRuleByDeviceId(deviceId)).build();
+    public Uni<Response> getRuleByDeviceId(@PathParam("device_id") UUID deviceId, @Context Request request,
+                                           @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        // A matching If-None-Match is answered from the device version, without loading the rules
+        return DeviceResource.conditional(readService, deviceId, request, ifNoneMatch, () -> readService.findDeviceWithRules(deviceId)
+                .map(device -> device != null
+                        ? Response.ok(device.rules).tag(DeviceResource.versionTag(device.version)).build()
+                        : Response.status(Response.Status.NOT_FOUND)
+                                .entity("No device with ID: " + deviceId + " does not exists")
+                                .build()));
     }
 
     @PUT
@@ -105,6 +160,11 @@ public class RuleResource {
             return Response.ok(updatedRule).build();
         } catch (RuleNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
+        } catch (InvalidRuleException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getMessage()))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
         } catch (DeviceNotFoundException e) {
             Map<String, String> errorResponse = Map.of(
                     "error", "Device Not Found for rule",
@@ -0,0 +1,3 @@
+package cz.muni.fi.pv217.devicemanagementservice.domain;
+
+public enum ChangedEntityType { DEVICE, RULE }
@@ -1,15 +1,21 @@
 package cz.muni.fi.pv217.devicemanagementservice.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import org.h2.util.json.JSONObject;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 @Entity
+@Cacheable
 @Table(name = "devices")
 public class Device extends PanacheEntityBase {
 
@@ -33,6 +39,11 @@ public class Device extends PanacheEntityBase {
     @Column(name = "latitude")
     public Double latitude;
 
+    // Spatial index of latitude and longitude, see Geohash
+    @JsonIgnore
+    @Column(name = "geohash")
+    public Long geohash;
+
     @Column(name = "created_at", nullable = false)
     public Instant createdAt;
 
@@ -42,15 +53,29 @@ public class Device extends PanacheEntityBase {
     @Column(name = "description")
     public String description;
 
+    // Incremented on every change of the device or its rules, exposed as the ETag instead of in the body
+    @JsonIgnore
+    @Version
+    @Column(name = "version", nullable = false)
+    public long version;
+
+    // Loaded only by the join-fetch queries of DeviceRepository, not part of the REST representation
+    @JsonIgnore
+    @OneToMany(mappedBy = "device", fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public List<Rule> rules = new ArrayList<>();
+
     @PrePersist
     void onCreate() {
         this.createdAt = Instant.now();
         if (this.status == null) this.status = DeviceStatus.PROVISIONING;
+        this.geohash = Geohash.encode(latitude, longitude);
     }
 
     @PreUpdate
     void onUpdate() {
         this.updatedAt = Instant.now();
+        this.geohash = Geohash.encode(latitude, longitude);
     }
 }
 
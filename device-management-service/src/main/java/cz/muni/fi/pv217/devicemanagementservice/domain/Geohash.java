@@ -0,0 +1,130 @@
+package cz.muni.fi.pv217.devicemanagementservice.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash of a location stored as a number: the 60 interleaved longitude and latitude bits of a
+ * 12 character geohash (cells of a few centimeters). Locations close to each other share a prefix,
+ * so every geohash cell is a contiguous range of values and an area is a few range scans of an
+ * ordinary B-tree index, on PostgreSQL as well as on H2.
+ */
+public final class Geohash {
+
+    public static final int BITS = 60;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private Geohash() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Values of a geohash cell, from inclusive and to exclusive.
+     */
+    public record Range(long from, long to) {}
+
+    /**
+     * @return The geohash of the location, or null if the location is incomplete or out of range
+     */
+    public static Long encode(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null
+                || !(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            return null;
+        }
+        int latBits = BITS / 2;
+        int lonBits = BITS - latBits;
+        return interleave(cell(latitude, -90, 90, latBits), cell(longitude, -180, 180, lonBits), BITS);
+    }
+
+    /**
+     * Covers the bounding box with at most maxCells geohash cells, as small as that allows.
+     * Cells next to each other in the geohash order are merged into one range.
+     * The cells cover more than the box, results have to be filtered by the exact coordinates.
+     */
+    public static List<Range> cover(double minLatitude, double minLongitude,
+                                    double maxLatitude, double maxLongitude, int maxCells) {
+        int bits = 0;
+        while (bits < BITS && cellCount(minLatitude, minLongitude, maxLatitude, maxLongitude, bits + 1) <= maxCells) {
+            bits++;
+        }
+
+        int latBits = bits / 2;
+        int lonBits = bits - latBits;
+        long minLat = cell(minLatitude, -90, 90, latBits);
+        long maxLat = cell(maxLatitude, -90, 90, latBits);
+        long minLon = cell(minLongitude, -180, 180, lonBits);
+        long maxLon = cell(maxLongitude, -180, 180, lonBits);
+
+        List<Long> cells = new ArrayList<>();
+        for (long lat = minLat; lat <= maxLat; lat++) {
+            for (long lon = minLon; lon <= maxLon; lon++) {
+                cells.add(interleave(lat, lon, bits));
+            }
+        }
+        cells.sort(null);
+
+        int shift = BITS - bits;
+        List<Range> ranges = new ArrayList<>();
+        for (long cell : cells) {
+            long from = cell << shift;
+            long to = (cell + 1) << shift;
+            Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last.to() == from) {
+                ranges.set(ranges.size() - 1, new Range(last.from(), to));
+            } else {
+                ranges.add(new Range(from, to));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Great-circle distance of two locations in kilometers.
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Degrees of latitude spanned by the given distance.
+     */
+    public static double latitudeDegrees(double km) {
+        return Math.toDegrees(km / EARTH_RADIUS_KM);
+    }
+
+    private static long cellCount(double minLatitude, double minLongitude,
+                                  double maxLatitude, double maxLongitude, int bits) {
+        int latBits = bits / 2;
+        int lonBits = bits - latBits;
+        long lat = cell(maxLatitude, -90, 90, latBits) - cell(minLatitude, -90, 90, latBits) + 1;
+        long lon = cell(maxLongitude, -180, 180, lonBits) - cell(minLongitude, -180, 180, lonBits) + 1;
+        return lat * lon;
+    }
+
+    // Index of the cell containing the value when [min, max] is split into 2^bits cells
+    private static long cell(double value, double min, double max, int bits) {
+        long cells = 1L << bits;
+        long cell = (long) Math.floor((value - min) / (max - min) * cells);
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+
+    // Geohash bit order: the first bit is longitude, then latitude and longitude alternate
+    private static long interleave(long lat, long lon, int bits) {
+        int latBits = bits / 2;
+        int lonBits = bits - latBits;
+        long hash = 0;
+        for (int i = 0; i < bits; i++) {
+            long bit = i % 2 == 0
+                    ? (lon >>> (lonBits - 1 - i / 2)) & 1
+                    : (lat >>> (latBits - 1 - i / 2)) & 1;
+            hash = (hash << 1) | bit;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,41 @@
+package cz.muni.fi.pv217.devicemanagementservice.domain;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Change of a device or rule waiting to be published to the device-change-events topic.
+ * Written in the transaction of the change, deleted once the relay has published it.
+ */
+@Entity
+@Table(name = "device_change_outbox")
+public class OutboxEvent extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id; // Increasing, events are published in id order
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false)
+    public ChangedEntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    public UUID entityId;
+
+    @Column(name = "device_id", nullable = false)
+    public UUID deviceId; // Record key, keeps the changes of one device in order
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false)
+    public ChangeType changeType;
+
+    @Column(name = "created_at", nullable = false)
+    public Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = Instant.now();
+    }
+}
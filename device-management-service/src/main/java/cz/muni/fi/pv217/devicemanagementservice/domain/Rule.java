@@ -8,6 +8,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
+@Cacheable
 @Table(name = "rules")
 public class Rule extends PanacheEntityBase {
 
@@ -27,6 +28,19 @@ public class Rule extends PanacheEntityBase {
     @Column(name = "description")
     public String description; // Optional field
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "rule_type", nullable = false)
+    public RuleType ruleType;
+
+    @Column(name = "hysteresis")
+    public Double hysteresis; // HYSTERESIS: distance inside the range needed to clear an alert
+
+    @Column(name = "window_seconds")
+    public Integer windowSeconds; // WINDOWED: length of the sliding window
+
+    @Column(name = "violation_count")
+    public Integer violationCount; // WINDOWED: violations within the window that raise an alert
+
     @Column(name = "created_at", nullable = false)
     public Instant createdAt;
 
@@ -41,6 +55,7 @@ public class Rule extends PanacheEntityBase {
     @PrePersist
     protected void onCreate() {
         this.createdAt = Instant.now();
+        if (this.ruleType == null) this.ruleType = RuleType.RANGE;
     }
 
     @PreUpdate
@@ -0,0 +1,3 @@
+package cz.muni.fi.pv217.devicemanagementservice.domain;
+
+public enum RuleType { RANGE, RATE_OF_CHANGE, HYSTERESIS, WINDOWED }
@@ -0,0 +1,14 @@
+package cz.muni.fi.pv217.devicemanagementservice.dto.bulk;
+
+/**
+ * An item of a bulk request that was not created.
+ *
+ * @param index     Position of the item in the request
+ * @param message   Why the item was rejected
+ * @param retryable True when the item was valid but could not be stored, sending it again may succeed
+ */
+public record BulkFailure(
+        int index,
+        String message,
+        boolean retryable
+) {}
@@ -0,0 +1,31 @@
+package cz.muni.fi.pv217.devicemanagementservice.dto.bulk;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of a bulk request.
+ *
+ * @param requested Number of items in the request
+ * @param created   Number of created items
+ * @param ids       Ids of the created items in request order, null for items that failed
+ * @param failures  Items that were not created
+ */
+public record BulkResult(
+        int requested,
+        int created,
+        List<UUID> ids,
+        List<BulkFailure> failures
+) {
+
+    /**
+     * @return 201 when all items were created, 207 when only some were. When none was, 503 if items
+     * could not be stored and can be sent again, otherwise 400.
+     */
+    public static int status(BulkResult result) {
+        if (result.created() > 0) {
+            return result.failures().isEmpty() ? 201 : 207;
+        }
+        return result.failures().stream().anyMatch(BulkFailure::retryable) ? 503 : 400;
+    }
+}
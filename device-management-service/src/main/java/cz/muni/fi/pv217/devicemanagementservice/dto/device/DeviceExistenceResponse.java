@@ -0,0 +1,15 @@
+package cz.muni.fi.pv217.devicemanagementservice.dto.device;
+
+/**
+ * Which of the requested devices are registered.
+ *
+ * @param requested  Number of requested ids
+ * @param registered Number of registered devices among them
+ * @param bitmap     Base64 of a little-endian bitmap (java.util.BitSet#toByteArray), bit i is set
+ *                   when the i-th requested id is a registered device
+ */
+public record DeviceExistenceResponse(
+        int requested,
+        int registered,
+        String bitmap
+) {}
@@ -1,11 +1,16 @@
 package cz.muni.fi.pv217.devicemanagementservice.dto.rule;
 
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
+import cz.muni.fi.pv217.devicemanagementservice.validation.RuleParametersValid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
 
 import java.util.UUID;
 
+@RuleParametersValid
 public record CreateRuleRequest (
 
     @NotNull
@@ -22,7 +27,18 @@ public record CreateRuleRequest (
     String description,
 
     @NotNull(message = "Device ID is required")
-    UUID deviceId
+    UUID deviceId,
+
+    RuleType ruleType, // defaults to RANGE
+
+    @PositiveOrZero
+    Double hysteresis,
+
+    @Positive
+    Integer windowSeconds,
+
+    @Positive
+    Integer violationCount
 
     )
 {}
@@ -1,7 +1,10 @@
 package cz.muni.fi.pv217.devicemanagementservice.dto.rule;
 
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
 
 import java.util.UUID;
@@ -21,6 +24,17 @@ public record UpdateRuleRequest(
 
         String description,
 
-        UUID deviceId
+        UUID deviceId,
+
+        RuleType ruleType,
+
+        @PositiveOrZero
+        Double hysteresis,
+
+        @Positive
+        Integer windowSeconds,
+
+        @Positive
+        Integer violationCount
 ) {
 }
@@ -0,0 +1,7 @@
+package cz.muni.fi.pv217.devicemanagementservice.exceptions;
+
+public class InvalidRuleException extends RuntimeException {
+    public InvalidRuleException(String message) {
+        super(message);
+    }
+}
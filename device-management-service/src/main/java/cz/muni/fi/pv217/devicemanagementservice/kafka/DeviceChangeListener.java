@@ -0,0 +1,83 @@
+package cz.muni.fi.pv217.devicemanagementservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangeType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangedEntityType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.kafka.pojos.DeviceChangeMessage;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evicts changed devices from the caches of this instance, for changes made by any instance.
+ * <p>
+ * Changes made through this instance already update or invalidate its caches, those of other
+ * instances only reach it through the device-change-events topic relayed from their outbox.
+ * The device and its rule collection are dropped from the second-level cache and its metadata
+ * fragment is invalidated; a changed rule is dropped as well, together with the cached rule queries.
+ * Every instance reads all events, see the channel configuration.
+ */
+@ApplicationScoped
+public class DeviceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceChangeListener.class);
+
+    private static final String RULES_ROLE = Device.class.getName() + ".rules";
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    DeviceMetadataFragmentCache fragmentCache;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    /**
+     * Consumes a device change event, only in-memory caches are touched so it runs on the consumer thread.
+     *
+     * @param message The JSON message from Kafka
+     */
+    @Incoming("device-change-evictions")
+    public void onDeviceChange(String message) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+        try {
+            DeviceChangeMessage change = objectMapper.readValue(message, DeviceChangeMessage.class);
+            if (change.deviceId() == null) {
+                LOG.warn("Received device change event without device ID, skipping");
+                return;
+            }
+            evict(change);
+            LOG.debug("Evicted device {} from the caches after {} {}",
+                    change.deviceId(), change.entityType(), change.changeType());
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to deserialize device change event: {}. Error: {}", message, e.getMessage(), e);
+        }
+    }
+
+    private void evict(DeviceChangeMessage change) {
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(Device.class, change.deviceId());
+        cache.evictCollectionData(RULES_ROLE, change.deviceId());
+        // Rule queries are only invalidated by changes of this instance, a changed or deleted rule
+        // of another one could be missing from them or still be listed
+        if (ChangedEntityType.RULE.name().equals(change.entityType())) {
+            if (change.entityId() != null) {
+                cache.evictEntityData(Rule.class, change.entityId());
+            }
+            cache.evictDefaultQueryRegion();
+        } else if (ChangeType.DELETED.name().equals(change.changeType())) {
+            cache.evictDefaultQueryRegion();
+        }
+        fragmentCache.invalidate(change.deviceId());
+    }
+}
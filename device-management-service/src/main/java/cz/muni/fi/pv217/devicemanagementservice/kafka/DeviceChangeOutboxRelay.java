@@ -0,0 +1,169 @@
+package cz.muni.fi.pv217.devicemanagementservice.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.muni.fi.pv217.devicemanagementservice.domain.OutboxEvent;
+import cz.muni.fi.pv217.devicemanagementservice.kafka.pojos.DeviceChangeMessage;
+import cz.muni.fi.pv217.devicemanagementservice.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the events of the outbox to the device-change-events topic in batches.
+ * <p>
+ * One instance at a time relays, the one holding the relay lease. A batch is read, sent without
+ * waiting for single acknowledgements and deleted once all of its records are acknowledged; no
+ * transaction or lock is held while waiting, reading and deleting run in short transactions of their
+ * own. If any record fails the batch stays in the outbox and is sent again on the next run, consumers
+ * must therefore tolerate duplicates. Records are keyed by device id, so the changes of one device
+ * keep their order within the partition.
+ */
+@ApplicationScoped
+public class DeviceChangeOutboxRelay {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceChangeOutboxRelay.class);
+
+    @Inject
+    OutboxRepository repository;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @Channel("device-change-events")
+    Emitter<String> emitter;
+
+    @ConfigProperty(name = "device.outbox.relay.batch-size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "device.outbox.relay.ack-timeout", defaultValue = "10s")
+    Duration ackTimeout;
+
+    @ConfigProperty(name = "device.outbox.relay.lease-timeout", defaultValue = "30s")
+    Duration leaseTimeout;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private Counter publishedEvents;
+    private Counter failedBatches;
+
+    @PostConstruct
+    void init() {
+        if (leaseTimeout.compareTo(ackTimeout) <= 0) {
+            throw new IllegalStateException("device.outbox.relay.lease-timeout must be longer than device.outbox.relay.ack-timeout");
+        }
+        publishedEvents = registry.counter("device_outbox_published_events");
+        failedBatches = registry.counter("device_outbox_failed_batches");
+    }
+
+    /**
+     * Drains the outbox batch by batch until a batch comes back partially filled or fails, if this
+     * instance gets the relay lease. The lease is renewed before every batch and released at the end.
+     */
+    @Scheduled(every = "${device.outbox.relay.interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void relay() {
+        try {
+            int published;
+            do {
+                if (!QuarkusTransaction.requiringNew().call(this::renewLease)) {
+                    LOG.debug("Outbox relay lease is held by another instance");
+                    return;
+                }
+                published = publishBatch();
+            } while (published == batchSize);
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> repository.releaseLease(instanceId));
+        }
+    }
+
+    private boolean renewLease() {
+        Instant now = Instant.now();
+        return repository.acquireLease(instanceId, now.plus(leaseTimeout), now);
+    }
+
+    /**
+     * Publishes the oldest events of the outbox, must run without a transaction while holding the lease.
+     *
+     * @return The number of published events, -1 if the batch failed
+     */
+    int publishBatch() {
+        List<OutboxEvent> events = QuarkusTransaction.requiringNew().call(() -> repository.findOldest(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(events.size());
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[events.size()];
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                OutboxEvent event = events.get(i);
+                ids.add(event.id);
+                acks[i] = send(event);
+            }
+            CompletableFuture.allOf(acks).get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedBatches.increment();
+            LOG.error("Interrupted while publishing {} outbox events, they are kept for the next run", events.size());
+            return -1;
+        } catch (Exception e) {
+            failedBatches.increment();
+            LOG.error("Failed to publish {} outbox events, they are kept for the next run. Error: {}",
+                    events.size(), e.getMessage());
+            return -1;
+        }
+
+        QuarkusTransaction.requiringNew().run(() -> repository.deleteByIds(ids));
+        publishedEvents.increment(events.size());
+        LOG.debug("Published {} device change events from the outbox", events.size());
+        return events.size();
+    }
+
+    private CompletableFuture<Void> send(OutboxEvent event) throws Exception {
+        DeviceChangeMessage message = new DeviceChangeMessage(
+                event.id,
+                event.entityType.name(),
+                event.entityId,
+                event.deviceId,
+                event.changeType.name(),
+                event.createdAt
+        );
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        OutgoingKafkaRecordMetadata<String> metadata = OutgoingKafkaRecordMetadata.<String>builder()
+                .withKey(event.deviceId.toString())
+                .build();
+        emitter.send(Message.of(objectMapper.writeValueAsString(message))
+                .addMetadata(metadata)
+                .withAck(() -> {
+                    ack.complete(null);
+                    return CompletableFuture.completedFuture(null);
+                })
+                .withNack(failure -> {
+                    ack.completeExceptionally(failure);
+                    return CompletableFuture.completedFuture(null);
+                }));
+        return ack;
+    }
+}
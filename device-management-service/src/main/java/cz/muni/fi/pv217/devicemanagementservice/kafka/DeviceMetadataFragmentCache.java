@@ -0,0 +1,132 @@
+package cz.muni.fi.pv217.devicemanagementservice.kafka;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceChangedEvent;
+import cz.muni.fi.pv217.devicemanagementservice.service.DevicesChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-encoded JSON metadata of the devices recently requested, ready to be copied into a response.
+ * <p>
+ * Every device has a generation that is advanced when the device or one of its rules changes.
+ * A fragment is stored with the generation read before its device was loaded and is only served
+ * while that generation is current, so a fragment built from data read before a concurrent change
+ * is never served after the change committed.
+ * <p>
+ * Generations and fragments share one entry per device, bounded by
+ * device.metadata.fragment-cache.max-size and dropped after device.cache.max-age. A device without
+ * an entry is at the floor generation, raised to the generation of every evicted entry, so a load
+ * that started before an evicted change cannot store its fragment.
+ */
+@ApplicationScoped
+public class DeviceMetadataFragmentCache {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "device.metadata.fragment-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "device.cache.max-age", defaultValue = "5M")
+    Duration maxAge;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong floor = new AtomicLong();
+
+    private Cache<UUID, Entry> entries;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter invalidations;
+
+    // The fragment is null after an invalidation until the device is loaded again
+    private record Entry(long generation, byte[] json) {
+    }
+
+    @PostConstruct
+    void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxAge)
+                .<UUID, Entry>evictionListener((deviceId, entry, cause) -> {
+                    if (entry != null) {
+                        floor.accumulateAndGet(entry.generation(), Math::max);
+                    }
+                })
+                .build();
+        hits = registry.counter("device_metadata_fragment_cache_hits");
+        misses = registry.counter("device_metadata_fragment_cache_misses");
+        invalidations = registry.counter("device_metadata_fragment_cache_invalidations");
+        Gauge.builder("device_metadata_fragment_cache_size", entries, Cache::estimatedSize)
+                .description("Number of cached device metadata fragments and generations")
+                .register(registry);
+    }
+
+    /**
+     * @return The current generation of the device, to be read before the device is loaded
+     */
+    public long generation(UUID deviceId) {
+        Entry entry = entries.getIfPresent(deviceId);
+        return entry != null ? entry.generation() : floor.get();
+    }
+
+    /**
+     * @return The encoded metadata of the device, or null if it is not cached or outdated
+     */
+    public byte[] get(UUID deviceId) {
+        Entry entry = entries.getIfPresent(deviceId);
+        if (entry == null || entry.json() == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.json();
+    }
+
+    /**
+     * Stores the encoded metadata of a device, unless the device changed since the generation was read.
+     *
+     * @param deviceId   The device id
+     * @param json       The encoded metadata
+     * @param generation The generation read before the device was loaded
+     */
+    public void put(UUID deviceId, byte[] json, long generation) {
+        entries.asMap().compute(deviceId, (id, current) -> {
+            long currentGeneration = current != null ? current.generation() : floor.get();
+            return currentGeneration == generation ? new Entry(generation, json) : current;
+        });
+    }
+
+    /**
+     * Invalidates the fragment of a changed device once the changing transaction is over.
+     * Invalidating after a rollback as well only costs one rebuild.
+     */
+    void onDeviceChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) DeviceChangedEvent event) {
+        invalidate(event.deviceId());
+    }
+
+    void onDevicesChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) DevicesChangedEvent event) {
+        event.changes().forEach(change -> invalidate(change.deviceId()));
+    }
+
+    public void invalidate(UUID deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        entries.put(deviceId, new Entry(clock.incrementAndGet(), null));
+        invalidations.increment();
+    }
+}
@@ -1,148 +1,295 @@
 package cz.muni.fi.pv217.devicemanagementservice.kafka;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
-import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
-import cz.muni.fi.pv217.devicemanagementservice.exceptions.DeviceNotFoundException;
-import cz.muni.fi.pv217.devicemanagementservice.kafka.pojos.BatchResponse;
 import cz.muni.fi.pv217.devicemanagementservice.kafka.pojos.DeviceMetadata;
 import cz.muni.fi.pv217.devicemanagementservice.kafka.pojos.RuleData;
-import cz.muni.fi.pv217.devicemanagementservice.service.DeviceService;
-import cz.muni.fi.pv217.devicemanagementservice.service.RuleService;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceReadService;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.control.ActivateRequestContext;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 /**
- * MOCK class for testing - returns hardcoded device metadata.
- * This class listens to metadata-batch-requests and responds with mock data.
- * DELETE THIS CLASS when implementing real device metadata lookup.
+ * Answers the metadata-batch-requests of the processing service with the metadata and rules of the
+ * requested devices, looked up in the database and cached as pre-encoded fragments.
  */
 @ApplicationScoped
 public class DeviceMetadataHandler {
 
     @Inject
-    DeviceService deviceService;
+    DeviceReadService readService;
 
     @Inject
-    RuleService ruleService;
+    DeviceMetadataFragmentCache fragmentCache;
+
+    @ConfigProperty(name = "device.metadata.lookup.chunk-size", defaultValue = "1000")
+    int lookupChunkSize;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final Logger LOG = LoggerFactory.getLogger(DeviceMetadataHandler.class);
 
+    // Layout of BatchResponse around the device fragments
+    private static final byte[] RESPONSE_START = "{\"batchId\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] METADATA_START = "\",\"metadata\":{".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE_END = "}}".getBytes(StandardCharsets.UTF_8);
+    private static final JsonStringEncoder JSON_ENCODER = JsonStringEncoder.getInstance();
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    // Shared pool, a ThreadLocal buffer would not be reused by the short-lived virtual threads
+    private final Queue<ByteArrayOutputStream> buffers = new ConcurrentLinkedQueue<>();
+
     @Inject
     @Channel("metadata-batch-responses")
-    Emitter<String> responseEmitter;
+    Emitter<byte[]> responseEmitter;
 
     void onStart(@Observes StartupEvent ev) {
-        LOG.info("MockDeviceMetadataHandler is starting up - MOCK MODE ACTIVE");
-        LOG.warn("This is a MOCK implementation - delete this class when implementing real metadata lookup");
+        LOG.info("DeviceMetadataHandler is starting up and ready to consume from metadata-batch-requests topic.");
     }
 
     /**
-     * Listens to metadata-batch-requests topic and responds with hardcoded mock data.
-     * Always returns the same hardcoded JSON response regardless of input.
+     * One parsed request of the metadata-batch-requests topic.
+     */
+    private record MetadataRequest(String batchId, List<UUID> deviceIds, String replyTopic) {}
+
+    /**
+     * Listens to metadata-batch-requests topic and responds with the metadata of the requested devices.
+     * Records are consumed in batches of up to max.poll.records: the devices of all requests of the
+     * batch are resolved together, each device once, and one response per request is sent to the reply
+     * topic named in the request, so that it reaches the processing instance holding the batch, or to
+     * the metadata-batch-responses topic when the request has none.
+     * Lookups block on the database, batches are handled on virtual threads, up to
+     * smallrye.messaging.worker.&lt;virtual-thread&gt;.max-concurrency at once.
+     * The batch is acknowledged once every response was written to Kafka. When the devices cannot be
+     * looked up or a response cannot be sent, the method fails and the batch is handed to the failure
+     * strategy of the channel instead of being committed without responses.
      */
     @ActivateRequestContext
     @Incoming("metadata-batch-requests")
+    @RunOnVirtualThread
     @Timed("onMetadataRequest_processing_time")
     @Counted("onMetadataRequest_request_count")
-    public void onMetadataRequest(String message) throws Exception {
-        if (message == null || message.isEmpty()) {
-            LOG.debug("Received empty message, skipping");
+    public void onMetadataRequests(List<String> messages) {
+        List<MetadataRequest> requests = new ArrayList<>(messages.size());
+        Set<UUID> deviceIds = new LinkedHashSet<>();
+        for (String message : messages) {
+            MetadataRequest request = parseRequest(message);
+            if (request != null) {
+                requests.add(request);
+                deviceIds.addAll(request.deviceIds());
+            }
+        }
+        if (requests.isEmpty()) {
             return;
         }
 
-        LOG.info("Received metadata batch request (MOCK): {}", message);
-        JsonNode rootNode = objectMapper.readTree(message);
+        LOG.info("Processing {} metadata requests for {} distinct devices", requests.size(), deviceIds.size());
+        Map<UUID, byte[]> fragments;
+        try {
+            fragments = resolveFragments(deviceIds);
+        } catch (RuntimeException e) {
+            LOG.error("Error resolving metadata of {} devices: {}", deviceIds.size(), e.getMessage(), e);
+            throw e;
+        }
 
+        List<CompletableFuture<Void>> sent = new ArrayList<>(requests.size());
+        for (MetadataRequest request : requests) {
+            byte[] response = assembleResponse(request.batchId(), request.deviceIds(), fragments);
+            String topic = request.replyTopic().isEmpty() ? "metadata-batch-responses" : request.replyTopic();
+            sent.add(responseEmitter.send(toReply(response, request.batchId(), request.replyTopic()))
+                    .toCompletableFuture()
+                    .whenComplete((ignored, failure) -> {
+                        if (failure != null) {
+                            LOG.error("Error sending metadata response for batch ID: {} to {}: {}",
+                                    request.batchId(), topic, failure.getMessage());
+                        } else {
+                            LOG.debug("Sent metadata response for batch ID: {} to {}", request.batchId(), topic);
+                        }
+                    }));
+        }
+        // Blocks the virtual thread only, bounded by delivery.timeout.ms of the producer
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * @return The request, or null if the message is empty or lacks the batch ID or device IDs
+     */
+    private MetadataRequest parseRequest(String message) {
+        if (message == null || message.isEmpty()) {
+            LOG.debug("Received empty message, skipping");
+            return null;
+        }
 
         try {
-            // Extract batchId from the incoming message (simple string parsing)
+            JsonNode rootNode = objectMapper.readTree(message);
             String batchId = extractBatchId(rootNode);
             List<UUID> deviceIds = extractDeviceIds(rootNode);
 
             if (batchId.isEmpty()) {
                 LOG.error("Could not extract batch ID from message or does not exists, skipping");
-                return;
+                return null;
             }
 
             if (deviceIds.isEmpty()) {
                 LOG.error("Could not extract device ID(s) from message or does not exists, skipping");
-                return;
+                return null;
             }
+            return new MetadataRequest(batchId, deviceIds, extractReplyTopic(rootNode));
+        } catch (Exception e) {
+            LOG.error("Error parsing metadata request: {}", e.getMessage(), e);
+            return null;
+        }
+    }
 
-            LOG.info("Processing MOCK metadata request for batch ID: {}", batchId);
-            LOG.info("Contains list of device ID(s): {}", deviceIds);
-            List<Device> deviceList = deviceIds.stream()
-                    // Map uses the static wrapper function (which catches the exception)
-                    .map(this::findDeviceSafely)
-                    // Filter out the null values returned by the wrapper function
-                    .filter(Objects::nonNull)
-                    .toList();
-
-            // Generate device metadata response
-            String response = generateDeviceResponse(batchId, deviceList);
-
-            if (response != null) {
-                responseEmitter.send(response);
-                LOG.info("Sent metadata response for batch ID: {}", batchId);
+    /**
+     * Assembles the response by copying the pre-encoded metadata of every device into a pooled buffer.
+     * Devices without a current fragment are loaded with their rules in one query and encoded once,
+     * unknown devices are left out of the response.
+     *
+     * @param batchId   The batch ID of the request
+     * @param deviceIds The requested devices
+     * @return The encoded BatchResponse
+     */
+    public byte[] generateDeviceResponse(String batchId, List<UUID> deviceIds) {
+        return assembleResponse(batchId, deviceIds, resolveFragments(deviceIds));
+    }
+
+    /**
+     * The encoded metadata of the given devices, taken from the fragment cache where current.
+     * The rest is loaded with their rules, one query per device.metadata.lookup.chunk-size devices,
+     * and encoded into the cache. Unknown devices are missing from the result.
+     */
+    private Map<UUID, byte[]> resolveFragments(Collection<UUID> deviceIds) {
+        Map<UUID, byte[]> fragments = new HashMap<>();
+        Map<UUID, Long> missing = new LinkedHashMap<>();
+        for (UUID deviceId : deviceIds) {
+            byte[] fragment = fragmentCache.get(deviceId);
+            if (fragment != null) {
+                fragments.put(deviceId, fragment);
             } else {
-                LOG.error("Failed to generate response for batch ID: {}, skipping send", batchId);
+                // Read before the device is loaded, a concurrent change makes the new fragment outdated
+                missing.put(deviceId, fragmentCache.generation(deviceId));
             }
+        }
 
-        } catch (Exception e) {
-            LOG.error("Error handling metadata request: {}", e.getMessage(), e);
+        List<UUID> missingIds = new ArrayList<>(missing.keySet());
+        for (int from = 0; from < missingIds.size(); from += lookupChunkSize) {
+            List<UUID> chunk = missingIds.subList(from, Math.min(from + lookupChunkSize, missingIds.size()));
+            for (Device device : readService.findDevicesWithRules(chunk)) {
+                byte[] fragment = encodeDeviceMetadata(device);
+                if (fragment != null) {
+                    fragmentCache.put(device.id, fragment, missing.get(device.id));
+                    fragments.put(device.id, fragment);
+                }
+            }
         }
+        return fragments;
     }
 
-    public String generateDeviceResponse(String batchId, List<Device> deviceList) {
-        Map<UUID, DeviceMetadata> metadataMap = new HashMap<>();
-        for (Device device : deviceList) {
-            UUID deviceId = device.id;
-            List<Rule> rules = ruleService.findRuleByDeviceId(deviceId);
-            List<RuleData> ruleDataList = rules.stream()
-                    .map(rule -> new RuleData(
-                            rule.ruleName,
-                            rule.fromValue,
-                            rule.toValue
-                    ))
-                    .toList();
-
-            // Create location as Map to match processing service expectations
-            Map<String, Double> location = new HashMap<>();
-            location.put("latitude", device.latitude);
-            location.put("longitude", device.longitude);
-
-            DeviceMetadata deviceMetadata = new DeviceMetadata(location, device.name, device.type, device.status.name(), ruleDataList);
-            metadataMap.put(deviceId, deviceMetadata);
+    /**
+     * Writes BatchResponse with the fragments of the requested devices, in request order.
+     */
+    private byte[] assembleResponse(String batchId, List<UUID> deviceIds, Map<UUID, byte[]> fragments) {
+        ByteArrayOutputStream buffer = acquireBuffer();
+        try {
+            buffer.writeBytes(RESPONSE_START);
+            buffer.writeBytes(JSON_ENCODER.quoteAsUTF8(batchId));
+            buffer.writeBytes(METADATA_START);
+            boolean first = true;
+            Set<UUID> written = new HashSet<>();
+            for (UUID deviceId : deviceIds) {
+                byte[] fragment = fragments.get(deviceId);
+                // Devices requested twice are written once, the keys of BatchResponse.metadata are unique
+                if (fragment == null || !written.add(deviceId)) {
+                    continue;
+                }
+                if (!first) {
+                    buffer.write(',');
+                }
+                first = false;
+                buffer.write('"');
+                buffer.writeBytes(deviceId.toString().getBytes(StandardCharsets.US_ASCII));
+                buffer.write('"');
+                buffer.write(':');
+                buffer.writeBytes(fragment);
+            }
+            buffer.writeBytes(RESPONSE_END);
+            return buffer.toByteArray();
+        } finally {
+            releaseBuffer(buffer);
         }
+    }
 
-        BatchResponse batchResponse = new BatchResponse(batchId, metadataMap);
-
+    /**
+     * Encodes the metadata of one device with its loaded rules, the value of its entry in BatchResponse.metadata.
+     */
+    private byte[] encodeDeviceMetadata(Device device) {
+        List<RuleData> ruleDataList = device.rules.stream()
+                .map(rule -> new RuleData(
+                        rule.ruleName,
+                        rule.fromValue,
+                        rule.toValue,
+                        rule.ruleType != null ? rule.ruleType.name() : null,
+                        rule.hysteresis,
+                        rule.windowSeconds,
+                        rule.violationCount
+                ))
+                .toList();
+
+        // Create location as Map to match processing service expectations
+        Map<String, Double> location = new HashMap<>();
+        location.put("latitude", device.latitude);
+        location.put("longitude", device.longitude);
+
+        DeviceMetadata deviceMetadata = new DeviceMetadata(location, device.name, device.type, device.status.name(), ruleDataList,
+                device.version);
         try {
-            return objectMapper.writeValueAsString(batchResponse);
+            return objectMapper.writeValueAsBytes(deviceMetadata);
         } catch (Exception e) {
-            LOG.error("Failed to serialize batch response for batch ID: {}. Error: {}", batchId, e.getMessage(), e);
+            LOG.error("Failed to serialize metadata of device: {}. Error: {}", device.id, e.getMessage(), e);
             return null;
         }
     }
 
+    private ByteArrayOutputStream acquireBuffer() {
+        ByteArrayOutputStream buffer = buffers.poll();
+        return buffer != null ? buffer : new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteArrayOutputStream buffer) {
+        // Oversized buffers of exceptionally large requests are not kept
+        if (buffer.size() <= MAX_POOLED_BUFFER_SIZE && buffers.size() < MAX_POOLED_BUFFERS) {
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+
     /**
      * Simple extraction of batchId from JSON string.
      */
@@ -155,6 +302,27 @@ public class DeviceMetadataHandler {
         return "";
     }
 
+    /**
+     * Reply topic of the requesting instance, empty when the request does not name one.
+     */
+    private String extractReplyTopic(JsonNode rootNode) {
+        JsonNode replyTopicNode = rootNode.get("replyTopic");
+        if (replyTopicNode != null && replyTopicNode.isTextual() && !replyTopicNode.asText().isBlank()) {
+            return replyTopicNode.asText();
+        }
+        return "";
+    }
+
+    private Message<byte[]> toReply(byte[] response, String batchId, String replyTopic) {
+        OutgoingKafkaRecordMetadata.OutgoingKafkaRecordMetadataBuilder<String> metadata =
+                OutgoingKafkaRecordMetadata.<String>builder().withKey(batchId);
+        if (!replyTopic.isEmpty()) {
+            // Overrides the topic configured for the metadata-batch-responses channel
+            metadata.withTopic(replyTopic);
+        }
+        return Message.of(response).addMetadata(metadata.build());
+    }
+
     private List<UUID> extractDeviceIds(JsonNode rootNode) {
         JsonNode deviceIdsNode = rootNode.get("deviceIds");
         if (deviceIdsNode != null && deviceIdsNode.isArray()) {
@@ -184,13 +352,6 @@ public class DeviceMetadataHandler {
         return Collections.emptyList();
     }
 
-    private Device findDeviceSafely(UUID uuid) {
-        try {
-            return deviceService.findDeviceById(uuid);
-        } catch (DeviceNotFoundException e) {
-            return null;
-        }
-    }
 
 
 
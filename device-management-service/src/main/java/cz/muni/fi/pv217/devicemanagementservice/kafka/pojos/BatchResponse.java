@@ -3,6 +3,9 @@ package cz.muni.fi.pv217.devicemanagementservice.kafka.pojos;
 
 import java.util.Map;
 
+/**
+ * Layout of the metadata response, DeviceMetadataHandler writes it from pre-encoded device fragments.
+ */
 public record BatchResponse(
         String batchId,
         Map<java.util.UUID, DeviceMetadata> metadata
@@ -0,0 +1,17 @@
+package cz.muni.fi.pv217.devicemanagementservice.kafka.pojos;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Change event on the device-change-events topic, keyed by deviceId.
+ * Carries no state, consumers invalidate what they cached for the device and reload it when needed.
+ */
+public record DeviceChangeMessage(
+        long eventId,
+        String entityType,
+        UUID entityId,
+        UUID deviceId,
+        String changeType,
+        Instant occurredAt
+) {}
@@ -4,10 +4,16 @@ import java.util.List;
 import java.util.Map;
 
 
+/**
+ * Metadata of one device in BatchResponse.metadata.
+ *
+ * @param version The version of the device, incremented on every change of the device or its rules
+ */
 public record DeviceMetadata(
         Map<String, Double> location,
         String deviceName,
         String deviceType,
         String deviceStatus,
-        List<RuleData> rules
+        List<RuleData> rules,
+        long version
 ) {}
@@ -6,5 +6,12 @@ public record RuleData (
     @JsonProperty("rule_name")
     String ruleName,
     double from,
-    double to
+    double to,
+    @JsonProperty("rule_type")
+    String ruleType,
+    Double hysteresis,
+    @JsonProperty("window_seconds")
+    Integer windowSeconds,
+    @JsonProperty("violation_count")
+    Integer violationCount
 ) {}
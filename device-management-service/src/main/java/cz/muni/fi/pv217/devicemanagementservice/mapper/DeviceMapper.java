@@ -12,7 +12,7 @@ public final class DeviceMapper {
 
     public static Device mapCreateRequestToDevice(CreateDeviceRequest request, Device device) {
         device.name = request.name();
-        device.type = request.type();
+        device.type = request.type() != null ? request.type().toUpperCase() : null;
         device.status = request.status();
 
         if (request.description() != null) {
@@ -2,6 +2,7 @@ package cz.muni.fi.pv217.devicemanagementservice.mapper;
 
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
 import cz.muni.fi.pv217.devicemanagementservice.dto.rule.CreateRuleRequest;
 import cz.muni.fi.pv217.devicemanagementservice.dto.rule.UpdateRuleRequest;
 import cz.muni.fi.pv217.devicemanagementservice.exceptions.DeviceNotFoundException;
@@ -17,22 +18,34 @@ public final class RuleMapper {
     DeviceService service;
 
     public Rule mapCreateRequestToRule(CreateRuleRequest request, Rule rule) {
-
-        rule.ruleName = request.ruleName();
-        rule.fromValue = request.fromValue();
-        rule.toValue = request.toValue();
-
         try {
-            rule.device = service.findDeviceById(request.deviceId());
+            return mapCreateRequestToRule(request, rule, service.findDeviceById(request.deviceId()));
         } catch (DeviceNotFoundException e) {
             // add log
             throw e;
         }
+    }
+
+    /**
+     * Maps the request onto a rule of a device the caller has already resolved, e.g. a reference
+     * of a device whose existence was checked for a whole bulk request at once.
+     */
+    public Rule mapCreateRequestToRule(CreateRuleRequest request, Rule rule, Device device) {
+
+        rule.ruleName = request.ruleName();
+        rule.fromValue = request.fromValue();
+        rule.toValue = request.toValue();
+        rule.device = device;
 
         if (request.description() != null) {
             rule.description = request.description();
         }
 
+        rule.ruleType = request.ruleType() != null ? request.ruleType() : RuleType.RANGE;
+        rule.hysteresis = request.hysteresis();
+        rule.windowSeconds = request.windowSeconds();
+        rule.violationCount = request.violationCount();
+
         return rule;
     }
 
@@ -64,6 +77,22 @@ public final class RuleMapper {
             rule.description = request.description();
         }
 
+        if (request.ruleType() != null) {
+            rule.ruleType = request.ruleType();
+        }
+
+        if (request.hysteresis() != null) {
+            rule.hysteresis = request.hysteresis();
+        }
+
+        if (request.windowSeconds() != null) {
+            rule.windowSeconds = request.windowSeconds();
+        }
+
+        if (request.violationCount() != null) {
+            rule.violationCount = request.violationCount();
+        }
+
         return rule;
     }
 }
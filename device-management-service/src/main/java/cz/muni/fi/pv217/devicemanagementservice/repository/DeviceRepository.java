@@ -2,16 +2,258 @@ package cz.muni.fi.pv217.devicemanagementservice.repository;
 
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
 import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Geohash;
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Parameters;
+import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.HibernateHints;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class DeviceRepository implements PanacheRepositoryBase<Device, UUID> {
 
-    // Custom query example
-    public List<Device> findActiveDevicesByLocation(String location) {
-        return list("status = ?1 and location = ?2", DeviceStatus.ACTIVE, location);
+    private static final String RULES_ROLE = Device.class.getName() + ".rules";
+    private static final String UPDATE_GEOHASH = "UPDATE devices SET geohash = ? WHERE id = ?";
+
+    /**
+     * Devices located in the bounding box, found through the geohash index: one range scan per
+     * geohash range, the rows of the ranges outside the box are filtered out by the coordinates.
+     *
+     * @param ranges The geohash ranges covering the box, see Geohash#cover
+     * @param status Only devices with this status, not applied if null
+     */
+    public List<Device> findWithin(List<Geohash.Range> ranges, double minLatitude, double minLongitude,
+                                   double maxLatitude, double maxLongitude, DeviceStatus status, int limit) {
+        Parameters parameters = new Parameters();
+        StringBuilder query = inRanges(ranges, parameters)
+                .append(" and latitude between :minLatitude and :maxLatitude")
+                .append(" and longitude between :minLongitude and :maxLongitude");
+        parameters.and("minLatitude", minLatitude).and("maxLatitude", maxLatitude)
+                .and("minLongitude", minLongitude).and("maxLongitude", maxLongitude);
+        if (status != null) {
+            query.append(" and status = :status");
+            parameters.and("status", status);
+        }
+        return find(query.toString(), parameters).page(0, limit).list();
+    }
+
+    /**
+     * Up to limit devices of the geohash ranges and the latitude band, nearest to the location first.
+     * The database orders the rows by an equirectangular approximation of their distance, which
+     * compares longitudes across the antimeridian, so the rows it cuts at the limit are the farthest
+     * ones and are never loaded.
+     *
+     * @param ranges The geohash ranges covering the area, see Geohash#cover
+     * @param status Only devices with this status, not applied if null
+     */
+    public List<Device> findNearest(List<Geohash.Range> ranges, double latitude, double longitude,
+                                    double minLatitude, double maxLatitude, DeviceStatus status, int limit) {
+        Parameters parameters = new Parameters();
+        StringBuilder query = inRanges(ranges, parameters)
+                .append(" and latitude between :minLatitude and :maxLatitude");
+        parameters.and("minLatitude", minLatitude).and("maxLatitude", maxLatitude);
+        if (status != null) {
+            query.append(" and status = :status");
+            parameters.and("status", status);
+        }
+        String longitudeDelta = "least(abs(longitude - :longitude), 360 - abs(longitude - :longitude))";
+        query.append(" order by (latitude - :latitude) * (latitude - :latitude) + :cos2 * ")
+                .append(longitudeDelta).append(" * ").append(longitudeDelta);
+        double cos = Math.cos(Math.toRadians(latitude));
+        parameters.and("latitude", latitude).and("longitude", longitude).and("cos2", cos * cos);
+        return find(query.toString(), parameters).page(0, limit).list();
+    }
+
+    // Opens the condition with the geohash ranges, one range scan of the index each
+    private static StringBuilder inRanges(List<Geohash.Range> ranges, Parameters parameters) {
+        StringBuilder query = new StringBuilder("(");
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i > 0) {
+                query.append(" or ");
+            }
+            query.append("(geohash >= :from").append(i).append(" and geohash < :to").append(i).append(")");
+            parameters.and("from" + i, ranges.get(i).from()).and("to" + i, ranges.get(i).to());
+        }
+        return query.append(")");
+    }
+
+    /**
+     * Fills in the geohash of up to limit devices that have a location but no geohash yet, written
+     * with one JDBC batch and without loading the entities, which would bump their versions.
+     *
+     * @return The number of updated devices
+     */
+    public int backfillGeohashes(int limit) {
+        List<Object[]> locations = getEntityManager()
+                .createQuery("select d.id, d.latitude, d.longitude from Device d "
+                        + "where d.geohash is null and d.latitude is not null and d.longitude is not null", Object[].class)
+                .setMaxResults(limit)
+                .getResultList();
+        if (locations.isEmpty()) {
+            return 0;
+        }
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_GEOHASH)) {
+                for (Object[] location : locations) {
+                    Long geohash = Geohash.encode((Double) location[1], (Double) location[2]);
+                    // Out of range locations are marked so that they are not selected again
+                    statement.setLong(1, geohash != null ? geohash : -1L);
+                    statement.setObject(2, location[0]);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+        return locations.size();
+    }
+
+    /**
+     * Loads the devices with the given ids together with their rules.
+     * Devices whose rules are in the second-level cache are served from it with one multi-load,
+     * the rest are loaded with a single join-fetch query, which puts them into the cache.
+     * Unknown ids are skipped.
+     */
+    public List<Device> findWithRulesByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Cache cache = getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        List<UUID> hits = new ArrayList<>();
+        List<UUID> misses = new ArrayList<>();
+        for (UUID id : ids) {
+            if (cache.containsEntity(Device.class, id) && cache.containsCollection(RULES_ROLE, id)) {
+                hits.add(id);
+            } else {
+                misses.add(id);
+            }
+        }
+
+        List<Device> devices = new ArrayList<>(ids.size());
+        if (!hits.isEmpty()) {
+            // Ordered result, null where a device was evicted or deleted in the meantime
+            List<Device> cached = getEntityManager().unwrap(Session.class)
+                    .byMultipleIds(Device.class)
+                    .multiLoad(hits);
+            for (int i = 0; i < hits.size(); i++) {
+                Device device = cached.get(i);
+                if (device != null) {
+                    Hibernate.initialize(device.rules);
+                    devices.add(device);
+                } else {
+                    misses.add(hits.get(i));
+                }
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            devices.addAll(list("select distinct d from Device d left join fetch d.rules where d.id in ?1", misses));
+        }
+        return devices;
+    }
+
+    /**
+     * The version of the device without loading it, or null if it does not exist.
+     */
+    public Long findVersion(UUID id) {
+        return getEntityManager()
+                .createQuery("select d.version from Device d where d.id = :id", Long.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Increments the versions of the given devices after a bulk change of their rules.
+     * The update bypasses the persistence context, so pending changes are flushed before it and
+     * the managed entities are detached after it, they would keep their previous version otherwise.
+     */
+    public void incrementVersions(Collection<UUID> ids) {
+        if (!ids.isEmpty()) {
+            flush();
+            update("version = version + 1 where id in ?1", ids);
+            getEntityManager().clear();
+        }
+    }
+
+    /**
+     * Write-locks the rows of the given devices until the end of the transaction, after flushing the
+     * pending changes. Rows are locked in id order, so transactions locking several devices do not
+     * deadlock each other. Unknown ids are skipped.
+     */
+    public void lockRows(Collection<UUID> ids) {
+        if (!ids.isEmpty()) {
+            flush();
+            getEntityManager()
+                    .createNativeQuery("SELECT id FROM devices WHERE id IN (?1) ORDER BY id FOR UPDATE")
+                    .setParameter(1, ids)
+                    .getResultList();
+        }
+    }
+
+    /**
+     * The given ids that belong to existing devices.
+     */
+    public List<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return getEntityManager()
+                .createQuery("select d.id from Device d where d.id in :ids", UUID.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * One page of the matching devices ordered by id, starting after the given id (keyset pagination).
+     * Every page costs one index seek, no matter how deep it is.
+     */
+    public List<Device> findPage(UUID after, DeviceStatus status, String type, int limit) {
+        return filtered(after, status, type).page(0, limit).list();
+    }
+
+    /**
+     * All matching devices ordered by id, read through a database cursor of the given fetch size.
+     * Must be consumed within a transaction. The second-level cache is neither read nor filled.
+     */
+    public Stream<Device> streamAll(DeviceStatus status, String type, int fetchSize) {
+        return filtered(null, status, type)
+                .withHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .withHint(HibernateHints.HINT_READ_ONLY, true)
+                .withHint(HibernateHints.HINT_CACHE_MODE, CacheMode.IGNORE)
+                .stream();
+    }
+
+    private PanacheQuery<Device> filtered(UUID after, DeviceStatus status, String type) {
+        StringBuilder query = new StringBuilder("1 = 1");
+        Parameters parameters = new Parameters();
+        if (after != null) {
+            query.append(" and id > :after");
+            parameters.and("after", after);
+        }
+        if (status != null) {
+            query.append(" and status = :status");
+            parameters.and("status", status);
+        }
+        if (type != null) {
+            // Types are stored upper case, see DeviceMapper
+            query.append(" and type = :type");
+            parameters.and("type", type.toUpperCase());
+        }
+        return find(query.toString(), Sort.by("id"), parameters);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package cz.muni.fi.pv217.devicemanagementservice.repository;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.OutboxEvent;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+@ApplicationScoped
+public class OutboxRepository implements PanacheRepositoryBase<OutboxEvent, Long> {
+
+    private static final String INSERT = "INSERT INTO device_change_outbox "
+            + "(entity_type, entity_id, device_id, change_type, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final int INSERT_BATCH_SIZE = 500;
+    private static final String ACQUIRE_LEASE = "UPDATE device_change_outbox_lease SET owner = ?1, leased_until = ?2 "
+            + "WHERE id = 1 AND (owner = ?1 OR leased_until IS NULL OR leased_until < ?3)";
+    private static final String RELEASE_LEASE = "UPDATE device_change_outbox_lease SET leased_until = NULL "
+            + "WHERE id = 1 AND owner = ?1";
+
+    /**
+     * Oldest unpublished events. Not locked, only the holder of the relay lease reads them.
+     * The events of one device are in id order, see OutboxWriter.
+     */
+    public List<OutboxEvent> findOldest(int limit) {
+        return findAll(Sort.by("id"))
+                .page(0, limit)
+                .list();
+    }
+
+    /**
+     * Takes or renews the relay lease with one conditional update, it succeeds if the lease is free,
+     * expired or already held by the owner.
+     *
+     * @return True if the owner holds the lease until the given time
+     */
+    public boolean acquireLease(String owner, Instant until, Instant now) {
+        return getEntityManager().createNativeQuery(ACQUIRE_LEASE)
+                .setParameter(1, owner)
+                .setParameter(2, Timestamp.from(until))
+                .setParameter(3, Timestamp.from(now))
+                .executeUpdate() == 1;
+    }
+
+    public void releaseLease(String owner) {
+        getEntityManager().createNativeQuery(RELEASE_LEASE)
+                .setParameter(1, owner)
+                .executeUpdate();
+    }
+
+    public long deleteByIds(List<Long> ids) {
+        return delete("id in ?1", ids);
+    }
+
+    /**
+     * Inserts the events with JDBC batches. The generated ids are not read back, which lets the
+     * identity column be used in a batch where persisting every event would insert them one by one.
+     */
+    public void insertAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                int pending = 0;
+                for (OutboxEvent event : events) {
+                    statement.setString(1, event.entityType.name());
+                    statement.setObject(2, event.entityId);
+                    statement.setObject(3, event.deviceId);
+                    statement.setString(4, event.changeType.name());
+                    statement.setTimestamp(5, createdAt);
+                    statement.addBatch();
+                    if (++pending == INSERT_BATCH_SIZE) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package cz.muni.fi.pv217.devicemanagementservice.repository;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read-only queries of devices and rules on the reactive PostgreSQL client, without a JDBC
+ * connection or worker thread per query. Rows are mapped to detached entities with the same
+ * JSON representation as the ones loaded by Hibernate.
+ * <p>
+ * Hibernate Reactive cannot be used next to Hibernate ORM in one application, so the queries
+ * are written in SQL; the second-level cache of Hibernate ORM is not involved.
+ */
+@ApplicationScoped
+public class ReactiveDeviceReadRepository {
+
+    private static final String DEVICE_COLUMNS =
+            "d.id, d.name, d.type, d.status, d.longitude, d.latitude, d.description, d.created_at, d.updated_at, d.version";
+    private static final String RULE_COLUMNS =
+            "r.id AS r_id, r.rule_name, r.from_value, r.to_value, r.description AS r_description, r.rule_type, "
+            + "r.hysteresis, r.window_seconds, r.violation_count, r.created_at AS r_created_at, r.updated_at AS r_updated_at";
+    private static final String DEVICE_BY_ID =
+            "SELECT " + DEVICE_COLUMNS + " FROM devices d WHERE d.id = $1";
+    private static final String DEVICE_VERSION =
+            "SELECT version FROM devices WHERE id = $1";
+    private static final String DEVICES_WITH_RULES =
+            "SELECT " + DEVICE_COLUMNS + ", " + RULE_COLUMNS
+            + " FROM devices d LEFT JOIN rules r ON r.device_id = d.id WHERE d.id = ANY($1)";
+
+    @Inject
+    Instance<PgPool> pool;
+
+    /**
+     * @return Whether a reactive datasource is configured, it is not with H2 in tests
+     */
+    public boolean isAvailable() {
+        return pool.isResolvable();
+    }
+
+    /**
+     * @return The device, or null if it does not exist
+     */
+    public Uni<Device> findById(UUID id) {
+        return pool.get().preparedQuery(DEVICE_BY_ID)
+                .execute(Tuple.of(id))
+                .map(rows -> rows.size() == 0 ? null : toDevice(rows.iterator().next()));
+    }
+
+    /**
+     * @return The version of the device, or null if it does not exist
+     */
+    public Uni<Long> findVersion(UUID id) {
+        return pool.get().preparedQuery(DEVICE_VERSION)
+                .execute(Tuple.of(id))
+                .map(rows -> rows.size() == 0 ? null : rows.iterator().next().getLong("version"));
+    }
+
+    /**
+     * Loads the devices with the given ids together with their rules in one query, unknown ids are skipped.
+     */
+    public Uni<List<Device>> findWithRulesByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return pool.get().preparedQuery(DEVICES_WITH_RULES)
+                .execute(Tuple.of(ids.toArray(new UUID[0])))
+                .map(ReactiveDeviceReadRepository::toDevicesWithRules);
+    }
+
+    private static List<Device> toDevicesWithRules(RowSet<Row> rows) {
+        Map<UUID, Device> devices = new LinkedHashMap<>();
+        for (Row row : rows) {
+            Device device = devices.computeIfAbsent(row.getUUID("id"), id -> toDevice(row));
+            // Devices without rules come back with one row of null rule columns
+            if (row.getUUID("r_id") != null) {
+                Rule rule = toRule(row);
+                rule.device = device;
+                device.rules.add(rule);
+            }
+        }
+        return new ArrayList<>(devices.values());
+    }
+
+    private static Device toDevice(Row row) {
+        Device device = new Device();
+        device.id = row.getUUID("id");
+        device.name = row.getString("name");
+        device.type = row.getString("type");
+        device.status = DeviceStatus.valueOf(row.getString("status"));
+        device.longitude = row.getDouble("longitude");
+        device.latitude = row.getDouble("latitude");
+        device.description = row.getString("description");
+        device.createdAt = toInstant(row.getLocalDateTime("created_at"));
+        device.updatedAt = toInstant(row.getLocalDateTime("updated_at"));
+        device.version = row.getLong("version");
+        return device;
+    }
+
+    private static Rule toRule(Row row) {
+        Rule rule = new Rule();
+        rule.id = row.getUUID("r_id");
+        rule.ruleName = row.getString("rule_name");
+        rule.fromValue = row.getInteger("from_value");
+        rule.toValue = row.getInteger("to_value");
+        rule.description = row.getString("r_description");
+        rule.ruleType = RuleType.valueOf(row.getString("rule_type"));
+        rule.hysteresis = row.getDouble("hysteresis");
+        rule.windowSeconds = row.getInteger("window_seconds");
+        rule.violationCount = row.getInteger("violation_count");
+        rule.createdAt = toInstant(row.getLocalDateTime("r_created_at"));
+        rule.updatedAt = toInstant(row.getLocalDateTime("r_updated_at"));
+        return rule;
+    }
+
+    // Hibernate writes Instants to the TIMESTAMP columns in UTC
+    private static Instant toInstant(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.toInstant(ZoneOffset.UTC) : null;
+    }
+}
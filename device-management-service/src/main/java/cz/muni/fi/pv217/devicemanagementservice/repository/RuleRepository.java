@@ -3,15 +3,69 @@ package cz.muni.fi.pv217.devicemanagementservice.repository;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
 import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Parameters;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 @ApplicationScoped
 public class RuleRepository implements PanacheRepositoryBase<Rule, UUID> {
     public List<Rule> findRulesByDeviceId(UUID deviceId) {
-        return list("device.id = ?1",  deviceId);
+        // Served from the query cache until the rules table changes
+        return find("device.id = ?1", deviceId)
+                .withHint(HibernateHints.HINT_CACHEABLE, true)
+                .list();
+    }
+
+    public long deleteByDeviceId(UUID deviceId) {
+        return delete("device.id = ?1", deviceId);
+    }
+
+    /**
+     * One page of the matching rules with their devices ordered by id, starting after the given id
+     * (keyset pagination).
+     */
+    public List<Rule> findPage(UUID after, UUID deviceId, RuleType ruleType, int limit) {
+        return filtered(after, deviceId, ruleType).page(0, limit).list();
+    }
+
+    /**
+     * All matching rules with their devices ordered by id, read through a database cursor of the
+     * given fetch size. Must be consumed within a transaction. The second-level cache is neither
+     * read nor filled.
+     */
+    public Stream<Rule> streamAll(UUID deviceId, RuleType ruleType, int fetchSize) {
+        return filtered(null, deviceId, ruleType)
+                .withHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .withHint(HibernateHints.HINT_READ_ONLY, true)
+                .withHint(HibernateHints.HINT_CACHE_MODE, CacheMode.IGNORE)
+                .stream();
+    }
+
+    private PanacheQuery<Rule> filtered(UUID after, UUID deviceId, RuleType ruleType) {
+        // The device is serialized with every rule, fetch it in the same query
+        StringBuilder query = new StringBuilder("from Rule r join fetch r.device where 1 = 1");
+        Parameters parameters = new Parameters();
+        if (after != null) {
+            query.append(" and r.id > :after");
+            parameters.and("after", after);
+        }
+        if (deviceId != null) {
+            query.append(" and r.device.id = :deviceId");
+            parameters.and("deviceId", deviceId);
+        }
+        if (ruleType != null) {
+            query.append(" and r.ruleType = :ruleType");
+            parameters.and("ruleType", ruleType);
+        }
+        query.append(" order by r.id");
+        return find(query.toString(), parameters);
     }
 }
 
@@ -0,0 +1,25 @@
+package cz.muni.fi.pv217.devicemanagementservice.service;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangeType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangedEntityType;
+
+import java.util.UUID;
+
+/**
+ * Fired when a device or one of its rules is created, updated or deleted, within the changing transaction.
+ *
+ * @param deviceId   The device that changed or owns the changed rule
+ * @param entityType Whether the device or one of its rules changed
+ * @param entityId   The id of the changed device or rule
+ * @param changeType The kind of change
+ */
+public record DeviceChangedEvent(UUID deviceId, ChangedEntityType entityType, UUID entityId, ChangeType changeType) {
+
+    public static DeviceChangedEvent device(UUID deviceId, ChangeType changeType) {
+        return new DeviceChangedEvent(deviceId, ChangedEntityType.DEVICE, deviceId, changeType);
+    }
+
+    public static DeviceChangedEvent rule(UUID ruleId, UUID deviceId, ChangeType changeType) {
+        return new DeviceChangedEvent(deviceId, ChangedEntityType.RULE, ruleId, changeType);
+    }
+}
@@ -0,0 +1,39 @@
+package cz.muni.fi.pv217.devicemanagementservice.service;
+
+import cz.muni.fi.pv217.devicemanagementservice.repository.DeviceRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Fills in the geohash of devices stored before the geohash column existed (V1.5.0), batch by batch
+ * in separate transactions. Devices created or moved since then get their geohash from the entity,
+ * so once a database is backfilled every further startup finds nothing to do with one query.
+ */
+@Slf4j
+@ApplicationScoped
+public class DeviceGeohashBackfill {
+
+    @Inject
+    DeviceRepository repository;
+
+    @ConfigProperty(name = "device.geohash.backfill.batch-size", defaultValue = "5000")
+    int batchSize;
+
+    void onStart(@Observes StartupEvent ev) {
+        long backfilled = 0;
+        int updated;
+        do {
+            updated = QuarkusTransaction.requiringNew().call(() -> repository.backfillGeohashes(batchSize));
+            backfilled += updated;
+        } while (updated == batchSize);
+
+        if (backfilled > 0) {
+            log.info("Backfilled the geohash of {} devices", backfilled);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cz.muni.fi.pv217.devicemanagementservice.service;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.repository.DeviceRepository;
+import cz.muni.fi.pv217.devicemanagementservice.repository.ReactiveDeviceReadRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * The hot read paths (device by id, rules of a device and metadata batch resolution) in one of two
+ * persistence modes. With device.persistence.reactive-reads the queries run on the reactive
+ * PostgreSQL client and the caller's thread is never blocked. Otherwise Hibernate ORM is used
+ * on a worker thread, sharing its second-level cache with the rest of the service.
+ */
+@Slf4j
+@ApplicationScoped
+public class DeviceReadService {
+
+    @Inject
+    DeviceRepository deviceRepository;
+
+    @Inject
+    ReactiveDeviceReadRepository reactiveRepository;
+
+    @ConfigProperty(name = "device.persistence.reactive-reads", defaultValue = "false")
+    boolean reactiveReads;
+
+    @PostConstruct
+    void init() {
+        if (reactiveReads && !reactiveRepository.isAvailable()) {
+            log.warn("Reactive reads are enabled but no reactive datasource is configured, using Hibernate ORM");
+            reactiveReads = false;
+        }
+    }
+
+    /**
+     * @return The device, or null if it does not exist
+     */
+    public Uni<Device> findDeviceById(UUID id) {
+        if (reactiveReads) {
+            return reactiveRepository.findById(id);
+        }
+        return onWorker(() -> deviceRepository.findById(id));
+    }
+
+    /**
+     * Reads only the version of the device, which is enough to revalidate a cached representation.
+     *
+     * @return The version of the device, or null if it does not exist
+     */
+    public Uni<Long> findDeviceVersion(UUID id) {
+        if (reactiveReads) {
+            return reactiveRepository.findVersion(id);
+        }
+        return onWorker(() -> deviceRepository.findVersion(id));
+    }
+
+    /**
+     * @return The device with its rules loaded, each rule with the device set, or null if the device does not exist
+     */
+    public Uni<Device> findDeviceWithRules(UUID deviceId) {
+        Uni<List<Device>> devices = reactiveReads
+                ? reactiveRepository.findWithRulesByIds(List.of(deviceId))
+                : onWorker(() -> deviceRepository.findWithRulesByIds(List.of(deviceId)));
+        return devices.map(found -> found.isEmpty() ? null : found.get(0));
+    }
+
+    /**
+     * Finds the devices with the given ids and their rules, unknown ids are skipped.
+     * Blocks the calling thread, meant for virtual threads such as the Kafka handlers.
+     */
+    public List<Device> findDevicesWithRules(List<UUID> ids) {
+        if (reactiveReads) {
+            return reactiveRepository.findWithRulesByIds(ids).await().indefinitely();
+        }
+        return QuarkusTransaction.joiningExisting().call(() -> deviceRepository.findWithRulesByIds(ids));
+    }
+
+    private <T> Uni<T> onWorker(Supplier<T> read) {
+        return Uni.createFrom().item(() -> QuarkusTransaction.requiringNew().call(read::get))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+}
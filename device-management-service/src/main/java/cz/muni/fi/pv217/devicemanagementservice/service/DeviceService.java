@@ -1,32 +1,137 @@
 package cz.muni.fi.pv217.devicemanagementservice.service;
 
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangeType;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Geohash;
 import cz.muni.fi.pv217.devicemanagementservice.dto.device.CreateDeviceRequest;
 import cz.muni.fi.pv217.devicemanagementservice.dto.device.UpdateDeviceRequest;
+import cz.muni.fi.pv217.devicemanagementservice.dto.bulk.BulkFailure;
+import cz.muni.fi.pv217.devicemanagementservice.dto.bulk.BulkResult;
 import cz.muni.fi.pv217.devicemanagementservice.exceptions.DeviceNotFoundException;
 import cz.muni.fi.pv217.devicemanagementservice.mapper.DeviceMapper;
 import cz.muni.fi.pv217.devicemanagementservice.repository.DeviceRepository;
+import cz.muni.fi.pv217.devicemanagementservice.repository.RuleRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.narayana.jta.runtime.TransactionConfiguration;
 import jakarta.enterprise.context.ApplicationScoped; // <-- Correct Scope for Services
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class DeviceService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceService.class);
+
     @Inject
     DeviceRepository repository;
 
+    @Inject
+    RuleRepository ruleRepository;
+
+    @Inject
+    Event<DeviceChangedEvent> deviceChanged;
+
+    @Inject
+    Event<DevicesChangedEvent> devicesChanged;
+
+    @Inject
+    Validator validator;
+
+    @ConfigProperty(name = "device.stream.fetch-size", defaultValue = "500")
+    int streamFetchSize;
+
+    @ConfigProperty(name = "device.bulk.chunk-size", defaultValue = "1000")
+    int bulkChunkSize;
+
+    @ConfigProperty(name = "device.geo.max-cells", defaultValue = "16")
+    int geoMaxCells;
+
+    @ConfigProperty(name = "device.geo.max-candidates", defaultValue = "50000")
+    int geoMaxCandidates;
+
     @Transactional
     public Device createDevice(CreateDeviceRequest request) {
         Device device = DeviceMapper.mapCreateRequestToDevice(request, new Device());
         repository.persist(device);
+        deviceChanged.fire(DeviceChangedEvent.device(device.id, ChangeType.CREATED));
 
         return device;
     }
 
+    /**
+     * Creates the devices of a bulk request. Every item is validated up front, invalid items are
+     * reported and skipped. The rest is persisted in chunks, each in its own transaction with batched
+     * inserts; a chunk that fails is reported as a whole and does not affect the other chunks.
+     */
+    public BulkResult createDevices(List<CreateDeviceRequest> requests) {
+        List<UUID> ids = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<BulkFailure> failures = new ArrayList<>();
+        List<Integer> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            String violations = BulkRequests.violations(validator, requests.get(i));
+            if (violations == null) {
+                valid.add(i);
+            } else {
+                failures.add(new BulkFailure(i, violations, false));
+            }
+        }
+
+        int created = 0;
+        for (List<Integer> chunk : BulkRequests.chunks(valid, bulkChunkSize)) {
+            try {
+                QuarkusTransaction.requiringNew().run(() -> persistDevices(requests, chunk, ids));
+                created += chunk.size();
+            } catch (RuntimeException e) {
+                // The cause stays in the log, it may carry SQL and schema details
+                LOG.error("Bulk chunk of {} devices was not stored: {}", chunk.size(), e.getMessage(), e);
+                for (int index : chunk) {
+                    ids.set(index, null);
+                    failures.add(new BulkFailure(index, "Device could not be stored", true));
+                }
+            }
+        }
+
+        failures.sort(Comparator.comparingInt(BulkFailure::index));
+        return new BulkResult(requests.size(), created, ids, failures);
+    }
+
+    private void persistDevices(List<CreateDeviceRequest> requests, List<Integer> chunk, List<UUID> ids) {
+        // New devices are not read back right away, keep them out of the second-level cache
+        repository.getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+        List<DeviceChangedEvent> changes = new ArrayList<>(chunk.size());
+        for (int index : chunk) {
+            Device device = DeviceMapper.mapCreateRequestToDevice(requests.get(index), new Device());
+            repository.persist(device);
+            ids.set(index, device.id);
+            changes.add(DeviceChangedEvent.device(device.id, ChangeType.CREATED));
+        }
+        devicesChanged.fire(new DevicesChangedEvent(changes));
+        // Sends the inserts in JDBC batches of quarkus.hibernate-orm.jdbc.statement-batch-size
+        repository.flush();
+        repository.getEntityManager().clear();
+    }
+
     // --- R: Read ---
     public Device findDeviceById(UUID id) {
         return repository.findByIdOptional(id)
@@ -37,18 +142,174 @@ public class DeviceService {
         return repository.listAll();
     }
 
+    /**
+     * Checks which of the given ids belong to registered devices, with one indexed query per
+     * device.bulk.chunk-size ids.
+     *
+     * @return Bit i is set when the i-th id is a registered device
+     */
+    public BitSet findRegistered(List<UUID> ids) {
+        Set<UUID> registered = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += bulkChunkSize) {
+            registered.addAll(repository.findExistingIds(ids.subList(from, Math.min(from + bulkChunkSize, ids.size()))));
+        }
+        BitSet bitmap = new BitSet(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (registered.contains(ids.get(i))) {
+                bitmap.set(i);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * One page of devices ordered by id, filters that are null are not applied.
+     *
+     * @param after The id of the last device of the previous page, null for the first page
+     * @param limit The page size
+     */
+    public List<Device> findDevicePage(UUID after, DeviceStatus status, String type, int limit) {
+        return repository.findPage(after, status, type, limit);
+    }
+
+    /**
+     * Devices located in the bounding box, in no particular order.
+     *
+     * @param status Only devices with this status, not applied if null
+     */
+    public List<Device> findDevicesWithin(double minLatitude, double minLongitude, double maxLatitude,
+                                          double maxLongitude, DeviceStatus status, int limit) {
+        List<Geohash.Range> ranges = Geohash.cover(minLatitude, minLongitude, maxLatitude, maxLongitude, geoMaxCells);
+        return repository.findWithin(ranges, minLatitude, minLongitude, maxLatitude, maxLongitude, status, limit);
+    }
+
+    /**
+     * Devices within the radius of a location, nearest first.
+     *
+     * @param truncated True when more than device.geo.max-candidates devices were found near the location
+     *                  and the nearest of them reached the radius, devices cut from the candidates could
+     *                  be nearer than the last ones of the result
+     */
+    public record NearbyDevices(List<Device> devices, boolean truncated) {}
+
+    /**
+     * Devices within the radius of the location, nearest first. The devices of the bounding box of the
+     * circle are ordered by their approximate distance in the database, up to device.geo.max-candidates
+     * of the nearest are loaded and filtered and sorted by their exact distance.
+     *
+     * @param status Only devices with this status, not applied if null
+     */
+    public NearbyDevices findDevicesNear(double latitude, double longitude, double radiusKm, DeviceStatus status, int limit) {
+        double latitudeDelta = Geohash.latitudeDegrees(radiusKm);
+        double minLatitude = Math.max(-90, latitude - latitudeDelta);
+        double maxLatitude = Math.min(90, latitude + latitudeDelta);
+        // Degrees of longitude shrink towards the poles, the widest part of the circle decides
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+        double longitudeDelta = Math.min(180, latitudeDelta / cos);
+
+        List<double[]> longitudeRanges = new ArrayList<>(2);
+        if (longitudeDelta >= 180) {
+            longitudeRanges.add(new double[]{-180, 180});
+        } else if (longitude - longitudeDelta < -180) {
+            // The circle crosses the antimeridian, its box is split in two
+            longitudeRanges.add(new double[]{longitude - longitudeDelta + 360, 180});
+            longitudeRanges.add(new double[]{-180, longitude + longitudeDelta});
+        } else if (longitude + longitudeDelta > 180) {
+            longitudeRanges.add(new double[]{longitude - longitudeDelta, 180});
+            longitudeRanges.add(new double[]{-180, longitude + longitudeDelta - 360});
+        } else {
+            longitudeRanges.add(new double[]{longitude - longitudeDelta, longitude + longitudeDelta});
+        }
+
+        List<Geohash.Range> ranges = new ArrayList<>();
+        for (double[] range : longitudeRanges) {
+            ranges.addAll(Geohash.cover(minLatitude, range[0], maxLatitude, range[1], geoMaxCells));
+        }
+        List<Device> candidates = repository.findNearest(ranges, latitude, longitude, minLatitude, maxLatitude,
+                status, geoMaxCandidates);
+
+        // The candidates are ordered by their approximate distance, when the farthest of them is still
+        // within the radius, devices within the radius may have been cut
+        boolean truncated = candidates.size() == geoMaxCandidates
+                && distanceKm(latitude, longitude, candidates.get(candidates.size() - 1)) <= radiusKm;
+        List<Device> devices = candidates.stream()
+                .filter(device -> distanceKm(latitude, longitude, device) <= radiusKm)
+                .sorted(Comparator.comparingDouble(device -> distanceKm(latitude, longitude, device)))
+                .limit(limit)
+                .toList();
+        return new NearbyDevices(devices, truncated);
+    }
+
+    private static double distanceKm(double latitude, double longitude, Device device) {
+        return Geohash.distanceKm(latitude, longitude, device.latitude, device.longitude);
+    }
 
+    /**
+     * Passes every matching device to the consumer in id order, filters that are null are not applied.
+     * Devices are read through a database cursor and dropped from the persistence context after every
+     * fetch, so memory use does not grow with the number of devices.
+     */
     @Transactional
+    @TransactionConfiguration(timeoutFromConfigProperty = "device.stream.transaction-timeout")
+    public void streamDevices(DeviceStatus status, String type, Consumer<Device> consumer) {
+        try (Stream<Device> devices = repository.streamAll(status, type, streamFetchSize)) {
+            Iterator<Device> iterator = devices.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                if (++count % streamFetchSize == 0) {
+                    repository.getEntityManager().clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the devices with the given ids and their rules with one query, unknown ids are skipped.
+     */
+    public List<Device> findDevicesWithRules(List<UUID> ids) {
+        return repository.findWithRulesByIds(ids);
+    }
+
+
     public Device updateDevice(UUID id, UpdateDeviceRequest request) {
+        return updateDevice(id, request, null);
+    }
+
+    /**
+     * Updates the device if it is still at the expected version, see Device#version.
+     *
+     * @param expectedVersion The version the change is based on, null to update any version
+     * @throws OptimisticLockException If the device is at another version or was changed concurrently
+     */
+    @Transactional
+    public Device updateDevice(UUID id, UpdateDeviceRequest request, Long expectedVersion) {
         Device existingDevice = repository.findByIdOptional(id)
                 .orElseThrow(() -> new DeviceNotFoundException("Device with id: '" + id + "' not found"));
+        if (expectedVersion != null && existingDevice.version != expectedVersion) {
+            throw new OptimisticLockException("Device with id: '" + id + "' is at version " + existingDevice.version);
+        }
 
-        return DeviceMapper.mapUpdateRequestToDevice(request, existingDevice);
+        Device updatedDevice = DeviceMapper.mapUpdateRequestToDevice(request, existingDevice);
+        // Flushed here so that a concurrent update fails with the OptimisticLockException
+        // instead of a rolled back commit
+        repository.flush();
+        // Recorded once the update is applied and written
+        deviceChanged.fire(DeviceChangedEvent.device(id, ChangeType.UPDATED));
+        return updatedDevice;
     }
 
     @Transactional
     public boolean deleteDevice(UUID id) {
-        return repository.deleteById(id);
+        // Delete the rules through Hibernate instead of leaving them to ON DELETE CASCADE,
+        // so their cached entities and query results are invalidated as well
+        ruleRepository.deleteByDeviceId(id);
+        boolean deleted = repository.deleteById(id);
+        if (deleted) {
+            // One event for the device, its deleted rules are implied
+            deviceChanged.fire(DeviceChangedEvent.device(id, ChangeType.DELETED));
+        }
+        return deleted;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package cz.muni.fi.pv217.devicemanagementservice.service;
+
+import java.util.List;
+
+/**
+ * Fired once for a chunk of changes made by a bulk operation, within the changing transaction,
+ * instead of one {@link DeviceChangedEvent} per change.
+ */
+public record DevicesChangedEvent(List<DeviceChangedEvent> changes) {
+}
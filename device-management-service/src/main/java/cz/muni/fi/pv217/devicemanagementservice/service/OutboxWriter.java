@@ -0,0 +1,76 @@
+package cz.muni.fi.pv217.devicemanagementservice.service;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangeType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangedEntityType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.OutboxEvent;
+import cz.muni.fi.pv217.devicemanagementservice.repository.DeviceRepository;
+import cz.muni.fi.pv217.devicemanagementservice.repository.OutboxRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Records every device and rule change in the outbox, in the transaction of the change,
+ * so the change and its event are committed or rolled back together.
+ * <p>
+ * The outbox ids are generated on insert, not on commit, so they only follow the order of the changes
+ * of a device if its changes do not overlap. The row of the device is therefore write-locked before
+ * its events are inserted: a concurrent change of the device waits for this transaction to end before
+ * it gets its outbox id, and the relay publishing in id order keeps the changes of a device in order.
+ */
+@ApplicationScoped
+public class OutboxWriter {
+
+    @Inject
+    OutboxRepository repository;
+
+    @Inject
+    DeviceRepository deviceRepository;
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    void onDeviceChanged(@Observes DeviceChangedEvent event) {
+        if (!isNewDevice(event)) {
+            deviceRepository.lockRows(Set.of(event.deviceId()));
+        }
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.entityType = event.entityType();
+        outboxEvent.entityId = event.entityId();
+        outboxEvent.deviceId = event.deviceId();
+        outboxEvent.changeType = event.changeType();
+        repository.persist(outboxEvent);
+    }
+
+    /**
+     * Records the changes of a bulk operation with one batched insert.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void onDevicesChanged(@Observes DevicesChangedEvent event) {
+        Set<UUID> changedDevices = new HashSet<>();
+        List<OutboxEvent> outboxEvents = new ArrayList<>(event.changes().size());
+        for (DeviceChangedEvent change : event.changes()) {
+            if (!isNewDevice(change)) {
+                changedDevices.add(change.deviceId());
+            }
+            OutboxEvent outboxEvent = new OutboxEvent();
+            outboxEvent.entityType = change.entityType();
+            outboxEvent.entityId = change.entityId();
+            outboxEvent.deviceId = change.deviceId();
+            outboxEvent.changeType = change.changeType();
+            outboxEvents.add(outboxEvent);
+        }
+        deviceRepository.lockRows(changedDevices);
+        repository.insertAll(outboxEvents);
+    }
+
+    // A device created in this transaction is not visible to others before the commit, nothing to wait for
+    private static boolean isNewDevice(DeviceChangedEvent event) {
+        return event.entityType() == ChangedEntityType.DEVICE && event.changeType() == ChangeType.CREATED;
+    }
+}
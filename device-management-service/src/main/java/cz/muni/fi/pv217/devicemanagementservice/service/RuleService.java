@@ -1,35 +1,161 @@
 package cz.muni.fi.pv217.devicemanagementservice.service;
 
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangeType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
 import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
+import cz.muni.fi.pv217.devicemanagementservice.dto.bulk.BulkFailure;
+import cz.muni.fi.pv217.devicemanagementservice.dto.bulk.BulkResult;
 import cz.muni.fi.pv217.devicemanagementservice.dto.rule.CreateRuleRequest;
 import cz.muni.fi.pv217.devicemanagementservice.dto.rule.UpdateRuleRequest;
+import cz.muni.fi.pv217.devicemanagementservice.exceptions.InvalidRuleException;
 import cz.muni.fi.pv217.devicemanagementservice.exceptions.RuleNotFoundException;
 import cz.muni.fi.pv217.devicemanagementservice.mapper.RuleMapper;
+import cz.muni.fi.pv217.devicemanagementservice.repository.DeviceRepository;
 import cz.muni.fi.pv217.devicemanagementservice.repository.RuleRepository;
+import cz.muni.fi.pv217.devicemanagementservice.validation.RuleParametersValidator;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.narayana.jta.runtime.TransactionConfiguration;
 import jakarta.enterprise.context.ApplicationScoped; // <-- Correct Scope for Services
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class RuleService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(RuleService.class);
+
     @Inject
     RuleRepository repository;
 
+    @Inject
+    DeviceRepository deviceRepository;
+
     @Inject
     RuleMapper mapper;
 
+    @Inject
+    Event<DeviceChangedEvent> deviceChanged;
+
+    @Inject
+    Event<DevicesChangedEvent> devicesChanged;
+
+    @Inject
+    Validator validator;
+
+    @ConfigProperty(name = "device.stream.fetch-size", defaultValue = "500")
+    int streamFetchSize;
+
+    @ConfigProperty(name = "device.bulk.chunk-size", defaultValue = "1000")
+    int bulkChunkSize;
+
     @Transactional
     public Rule createRule(CreateRuleRequest request) {
         Rule rule = mapper.mapCreateRequestToRule(request, new Rule());
         repository.persist(rule);
+        incrementVersion(rule.device);
+        deviceChanged.fire(DeviceChangedEvent.rule(rule.id, rule.device.id, ChangeType.CREATED));
 
         return rule;
     }
 
+    /**
+     * Creates the rules of a bulk request. Every item is validated up front, invalid items are reported
+     * and skipped. The rest is persisted in chunks, each in its own transaction with batched inserts;
+     * a chunk that fails is reported as a whole and does not affect the others. The devices of a chunk
+     * are checked in the transaction that inserts its rules, items of unknown devices are reported.
+     */
+    public BulkResult createRules(List<CreateRuleRequest> requests) {
+        List<UUID> ids = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<BulkFailure> failures = new ArrayList<>();
+        List<Integer> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            String violations = BulkRequests.violations(validator, requests.get(i));
+            if (violations == null) {
+                valid.add(i);
+            } else {
+                failures.add(new BulkFailure(i, violations, false));
+            }
+        }
+
+        int created = 0;
+        for (List<Integer> chunk : BulkRequests.chunks(valid, bulkChunkSize)) {
+            try {
+                List<BulkFailure> unknown = QuarkusTransaction.requiringNew().call(() -> persistRules(requests, chunk, ids));
+                failures.addAll(unknown);
+                created += chunk.size() - unknown.size();
+            } catch (RuntimeException e) {
+                // The cause stays in the log, it may carry SQL and schema details
+                LOG.error("Bulk chunk of {} rules was not stored: {}", chunk.size(), e.getMessage(), e);
+                for (int index : chunk) {
+                    ids.set(index, null);
+                    failures.add(new BulkFailure(index, "Rule could not be stored", true));
+                }
+            }
+        }
+
+        failures.sort(Comparator.comparingInt(BulkFailure::index));
+        return new BulkResult(requests.size(), created, ids, failures);
+    }
+
+    /**
+     * @return The items of the chunk whose device does not exist, they are not stored
+     */
+    private List<BulkFailure> persistRules(List<CreateRuleRequest> requests, List<Integer> chunk, List<UUID> ids) {
+        // New rules are not read back right away, keep them out of the second-level cache
+        repository.getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+        Set<UUID> requestedDevices = new LinkedHashSet<>();
+        for (int index : chunk) {
+            requestedDevices.add(requests.get(index).deviceId());
+        }
+        // One update for all devices of the chunk. It write-locks the existing devices first, so none of
+        // them can be deleted before the rules are inserted; the references are not loaded to be locked
+        deviceRepository.incrementVersions(requestedDevices);
+        Set<UUID> existingDevices = new HashSet<>(deviceRepository.findExistingIds(requestedDevices));
+
+        List<BulkFailure> unknown = new ArrayList<>();
+        List<DeviceChangedEvent> changes = new ArrayList<>(chunk.size());
+        for (int index : chunk) {
+            CreateRuleRequest request = requests.get(index);
+            if (!existingDevices.contains(request.deviceId())) {
+                unknown.add(new BulkFailure(index, "Device with id: '" + request.deviceId() + "' not found", false));
+                continue;
+            }
+            // The device is locked above, a reference links the rule without loading it
+            Device device = repository.getEntityManager().getReference(Device.class, request.deviceId());
+            Rule rule = mapper.mapCreateRequestToRule(request, new Rule(), device);
+            repository.persist(rule);
+            ids.set(index, rule.id);
+            changes.add(DeviceChangedEvent.rule(rule.id, request.deviceId(), ChangeType.CREATED));
+        }
+        devicesChanged.fire(new DevicesChangedEvent(changes));
+        // Sends the inserts in JDBC batches of quarkus.hibernate-orm.jdbc.statement-batch-size
+        repository.flush();
+        repository.getEntityManager().clear();
+        return unknown;
+    }
+
     // --- R: Read ---
     public Rule findRuleById(UUID id) {
         return repository.findByIdOptional(id)
@@ -44,18 +170,84 @@ public class RuleService {
         return repository.listAll();
     }
 
+    /**
+     * One page of rules with their devices ordered by id, filters that are null are not applied.
+     *
+     * @param after The id of the last rule of the previous page, null for the first page
+     * @param limit The page size
+     */
+    public List<Rule> findRulePage(UUID after, UUID deviceId, RuleType ruleType, int limit) {
+        return repository.findPage(after, deviceId, ruleType, limit);
+    }
+
+    /**
+     * Passes every matching rule with its device to the consumer in id order, filters that are null
+     * are not applied. Rules are read through a database cursor and dropped from the persistence
+     * context after every fetch, so memory use does not grow with the number of rules.
+     */
+    @Transactional
+    @TransactionConfiguration(timeoutFromConfigProperty = "device.stream.transaction-timeout")
+    public void streamRules(UUID deviceId, RuleType ruleType, Consumer<Rule> consumer) {
+        try (Stream<Rule> rules = repository.streamAll(deviceId, ruleType, streamFetchSize)) {
+            Iterator<Rule> iterator = rules.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                if (++count % streamFetchSize == 0) {
+                    repository.getEntityManager().clear();
+                }
+            }
+        }
+    }
+
 
+    /**
+     * @throws InvalidRuleException If the updated parameters do not fit the rule type
+     * @throws OptimisticLockException If a device of the rule was changed concurrently
+     */
     @Transactional
     public Rule updateRule(UUID id, UpdateRuleRequest request) {
         Rule existingRule = repository.findByIdOptional(id)
                 .orElseThrow(() -> new RuleNotFoundException("Rule with id: '" + id + "' not found"));
 
-        return mapper.mapUpdateRequestToRule(request, existingRule);
+        Device previousDevice = existingRule.device;
+        UUID previousDeviceId = previousDevice.id;
+        Rule updatedRule = mapper.mapUpdateRequestToRule(request, existingRule);
+        // The request may change only some of the parameters, the merged rule is checked
+        String violation = RuleParametersValidator.violation(updatedRule.ruleType, updatedRule.fromValue,
+                updatedRule.toValue, updatedRule.hysteresis, updatedRule.windowSeconds, updatedRule.violationCount);
+        if (violation != null) {
+            throw new InvalidRuleException(violation);
+        }
+        incrementVersion(previousDevice);
+        deviceChanged.fire(DeviceChangedEvent.rule(id, previousDeviceId, ChangeType.UPDATED));
+        if (!previousDeviceId.equals(updatedRule.device.id)) {
+            // The rule moved to another device, which changes as well
+            incrementVersion(updatedRule.device);
+            deviceChanged.fire(DeviceChangedEvent.rule(id, updatedRule.device.id, ChangeType.UPDATED));
+        }
+        // Flushed here so that a concurrent change of the device fails with the OptimisticLockException
+        // instead of a rolled back commit
+        repository.flush();
+        return updatedRule;
     }
 
     @Transactional
     public boolean deleteRule(UUID id) {
-        return repository.deleteById(id);
+        return repository.findByIdOptional(id)
+                .map(rule -> {
+                    incrementVersion(rule.device);
+                    deviceChanged.fire(DeviceChangedEvent.rule(id, rule.device.id, ChangeType.DELETED));
+                    repository.delete(rule);
+                    return true;
+                })
+                .orElse(false);
     }
 
+    /**
+     * The rules are part of the versioned representation of their device, see Device#version.
+     */
+    private void incrementVersion(Device device) {
+        repository.getEntityManager().lock(device, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package cz.muni.fi.pv217.devicemanagementservice.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+import java.lang.annotation.*;
+
+/**
+ * The parameters of a rule fit its rule type, see RuleParametersValidator.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = RuleParametersValidator.class)
+@Documented
+public @interface RuleParametersValid {
+    String message() default "Rule parameters do not fit the rule type.";
+    Class<?>[] groups() default {};
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,48 @@
+package cz.muni.fi.pv217.devicemanagementservice.validation;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.RuleType;
+import cz.muni.fi.pv217.devicemanagementservice.dto.rule.CreateRuleRequest;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Checks the parameters the rule type needs: a WINDOWED rule needs a positive window and violation
+ * count, the hysteresis band of a HYSTERESIS rule has to fit into the range twice. The processing
+ * service does not evaluate rules whose parameters do not fit.
+ */
+public class RuleParametersValidator implements ConstraintValidator<RuleParametersValid, CreateRuleRequest> {
+
+    @Override
+    public boolean isValid(CreateRuleRequest request, ConstraintValidatorContext context) {
+        if (request == null) {
+            return true;
+        }
+        String violation = violation(request.ruleType(), request.fromValue(), request.toValue(),
+                request.hysteresis(), request.windowSeconds(), request.violationCount());
+        if (violation == null) {
+            return true;
+        }
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate(violation).addConstraintViolation();
+        return false;
+    }
+
+    /**
+     * @return Why the parameters do not fit the rule type, or null if they do. A missing type is RANGE,
+     * missing boundaries are reported by the constraints of the request.
+     */
+    public static String violation(RuleType ruleType, Integer fromValue, Integer toValue,
+                                   Double hysteresis, Integer windowSeconds, Integer violationCount) {
+        if (ruleType == RuleType.WINDOWED
+                && (windowSeconds == null || windowSeconds <= 0 || violationCount == null || violationCount <= 0)) {
+            return "WINDOWED rule requires a positive windowSeconds and violationCount";
+        }
+        if (ruleType == RuleType.HYSTERESIS && fromValue != null && toValue != null) {
+            double band = hysteresis != null ? hysteresis : 0.0;
+            if (band < 0 || fromValue + band > toValue - band) {
+                return "HYSTERESIS rule requires a hysteresis of at most half the range between fromValue and toValue";
+            }
+        }
+        return null;
+    }
+}
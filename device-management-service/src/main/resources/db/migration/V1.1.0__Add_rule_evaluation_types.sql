@@ -0,0 +1,11 @@
+-- --------------------------------------------------------
+-- Rule evaluation types
+-- RANGE           healthy range [from_value, to_value] (previous behaviour)
+-- RATE_OF_CHANGE  allowed change per second in [from_value, to_value]
+-- HYSTERESIS      range that clears only once the value is back inside by `hysteresis`
+-- WINDOWED        `violation_count` range violations within `window_seconds`
+-- --------------------------------------------------------
+ALTER TABLE rules ADD COLUMN rule_type VARCHAR(30) DEFAULT 'RANGE' NOT NULL;
+ALTER TABLE rules ADD COLUMN hysteresis DOUBLE PRECISION;
+ALTER TABLE rules ADD COLUMN window_seconds INTEGER;
+ALTER TABLE rules ADD COLUMN violation_count INTEGER;
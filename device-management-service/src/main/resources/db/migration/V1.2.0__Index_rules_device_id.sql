@@ -0,0 +1,6 @@
+-- --------------------------------------------------------
+-- Rules are looked up by their device (metadata requests join devices with
+-- their rules, RuleRepository.findRulesByDeviceId); PostgreSQL does not index
+-- foreign key columns on its own
+-- --------------------------------------------------------
+CREATE INDEX IF NOT EXISTS idx_rules_device_id ON rules (device_id);
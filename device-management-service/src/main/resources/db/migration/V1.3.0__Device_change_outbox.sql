@@ -0,0 +1,12 @@
+-- --------------------------------------------------------
+-- Outbox of device and rule changes, written in the transaction of the change
+-- and deleted by DeviceChangeOutboxRelay once published to device-change-events
+-- --------------------------------------------------------
+CREATE TABLE device_change_outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL, -- DEVICE or RULE
+    entity_id UUID NOT NULL,
+    device_id UUID NOT NULL, -- Record key
+    change_type VARCHAR(20) NOT NULL, -- CREATED, UPDATED or DELETED
+    created_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,5 @@
+-- --------------------------------------------------------
+-- Optimistic version of a device, incremented on every change of the device
+-- or of its rules; the ETag of /devices/{id} and /rules/device/{device_id}
+-- --------------------------------------------------------
+ALTER TABLE devices ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,9 @@
+-- --------------------------------------------------------
+-- Numeric geohash of the device location (see Geohash), the index answers
+-- radius and bounding-box queries with a few range scans. Existing devices
+-- are filled in by DeviceGeohashBackfill at startup, new and updated devices
+-- by the entity itself
+-- --------------------------------------------------------
+ALTER TABLE devices ADD COLUMN geohash BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_devices_geohash ON devices (geohash);
@@ -0,0 +1,6 @@
+-- --------------------------------------------------------
+-- Device types are stored upper case so that the type filter of the device
+-- listing can compare them as they are. Types created before DeviceMapper
+-- normalized them are brought in line here
+-- --------------------------------------------------------
+UPDATE devices SET type = UPPER(type) WHERE type <> UPPER(type);
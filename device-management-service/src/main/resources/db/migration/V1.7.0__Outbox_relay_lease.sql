@@ -0,0 +1,12 @@
+-- --------------------------------------------------------
+-- Lease of the outbox relay: one instance at a time publishes the outbox, without holding
+-- a transaction while it waits for Kafka. Taken and renewed by DeviceChangeOutboxRelay,
+-- a lease not renewed within device.outbox.relay.lease-timeout can be taken over
+-- --------------------------------------------------------
+CREATE TABLE device_change_outbox_lease (
+    id INT PRIMARY KEY,
+    owner VARCHAR(64),
+    leased_until TIMESTAMP
+);
+
+INSERT INTO device_change_outbox_lease (id, owner, leased_until) VALUES (1, NULL, NULL);
@@ -0,0 +1,117 @@
+package cz.muni.fi.pv217.KafkaTest;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangeType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.ChangedEntityType;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
+import cz.muni.fi.pv217.devicemanagementservice.domain.OutboxEvent;
+import cz.muni.fi.pv217.devicemanagementservice.dto.device.CreateDeviceRequest;
+import cz.muni.fi.pv217.devicemanagementservice.dto.device.UpdateDeviceRequest;
+import cz.muni.fi.pv217.devicemanagementservice.kafka.DeviceChangeOutboxRelay;
+import cz.muni.fi.pv217.devicemanagementservice.repository.OutboxRepository;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that device changes are recorded in the outbox together with the change
+ * and that the relay empties the outbox once the events are published.
+ */
+@QuarkusTest
+public class DeviceChangeOutboxTest {
+
+    @Inject
+    DeviceService deviceService;
+
+    @Inject
+    DeviceChangeOutboxRelay relay;
+
+    @Inject
+    OutboxRepository outboxRepository;
+
+    @BeforeEach
+    public void emptyOutbox() {
+        QuarkusTransaction.requiringNew().run(OutboxEvent::deleteAll);
+    }
+
+    @Test
+    public void testDeviceChanges_AreRecordedInOrder() {
+        Device device = deviceService.createDevice(createRequest());
+        deviceService.updateDevice(device.id, new UpdateDeviceRequest(device.id, null, null, DeviceStatus.INACTIVE, null, null, null));
+        assertTrue(deviceService.deleteDevice(device.id));
+
+        List<OutboxEvent> events = outboxEvents(device.id);
+        assertEquals(3, events.size());
+        assertEquals(List.of(ChangeType.CREATED, ChangeType.UPDATED, ChangeType.DELETED),
+                events.stream().map(event -> event.changeType).toList());
+        events.forEach(event -> {
+            assertEquals(ChangedEntityType.DEVICE, event.entityType);
+            assertEquals(device.id, event.entityId);
+        });
+    }
+
+    @Test
+    public void testRolledBackChange_IsNotRecorded() {
+        UUID[] deviceId = new UUID[1];
+        QuarkusTransaction.requiringNew().run(() -> {
+            deviceId[0] = deviceService.createDevice(createRequest()).id;
+            QuarkusTransaction.setRollbackOnly();
+        });
+
+        assertTrue(outboxEvents(deviceId[0]).isEmpty());
+    }
+
+    @Test
+    public void testDeleteOfUnknownDevice_IsNotRecorded() {
+        assertFalse(deviceService.deleteDevice(UUID.randomUUID()));
+
+        assertEquals(0, QuarkusTransaction.requiringNew().call(OutboxEvent::count));
+    }
+
+    @Test
+    public void testRelay_PublishesAndEmptiesOutbox() {
+        Device device = deviceService.createDevice(createRequest());
+        deviceService.deleteDevice(device.id);
+
+        relay.relay();
+
+        assertTrue(outboxEvents(device.id).isEmpty());
+    }
+
+    @Test
+    public void testRelay_WaitsForLeaseOfAnotherInstance() {
+        Device device = deviceService.createDevice(createRequest());
+        Instant now = Instant.now();
+        assertTrue(QuarkusTransaction.requiringNew().call(
+                () -> outboxRepository.acquireLease("other-instance", now.plus(Duration.ofMinutes(1)), now)));
+        try {
+            relay.relay();
+
+            assertEquals(1, outboxEvents(device.id).size());
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> outboxRepository.releaseLease("other-instance"));
+        }
+
+        relay.relay();
+
+        assertTrue(outboxEvents(device.id).isEmpty());
+    }
+
+    private List<OutboxEvent> outboxEvents(UUID deviceId) {
+        return QuarkusTransaction.requiringNew().call(() -> OutboxEvent.<OutboxEvent>list("deviceId = ?1 order by id", deviceId));
+    }
+
+    private CreateDeviceRequest createRequest() {
+        return new CreateDeviceRequest("Outbox Device", "TEMP_SENSOR", DeviceStatus.ACTIVE, 16.6, 49.2, null);
+    }
+}
@@ -0,0 +1,302 @@
+package cz.muni.fi.pv217.KafkaTest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.kafka.DeviceChangeListener;
+import cz.muni.fi.pv217.devicemanagementservice.kafka.DeviceMetadataFragmentCache;
+import cz.muni.fi.pv217.devicemanagementservice.kafka.DeviceMetadataHandler;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceService;
+import cz.muni.fi.pv217.devicemanagementservice.service.RuleService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the metadata lookup of DeviceMetadataHandler, one join-fetch query for all requested
+ * devices, with the previous lookup of every device and its rules one by one, and checks that
+ * the second-level cache serves repeated lookups and follows device and rule changes.
+ * Also checks that the cached metadata fragments of the response follow rule changes, including
+ * changes of other instances announced by device change events, and that a batch of requests looks
+ * up its devices together.
+ */
+@QuarkusTest
+public class DeviceMetadataLookupTest {
+
+    private static final int DEVICES = 100;
+    private static final int RULES_PER_DEVICE = 5;
+
+    @Inject
+    DeviceService deviceService;
+
+    @Inject
+    RuleService ruleService;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    DeviceMetadataHandler metadataHandler;
+
+    @Inject
+    DeviceMetadataFragmentCache fragmentCache;
+
+    @Inject
+    DeviceChangeListener changeListener;
+
+    @Inject
+    DataSource dataSource;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<UUID> deviceIds = new ArrayList<>();
+
+    @BeforeEach
+    public void createDevices() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int i = 0; i < DEVICES; i++) {
+                Device device = new Device();
+                device.name = "Lookup Device " + i;
+                device.type = "TEMP_SENSOR";
+                device.status = DeviceStatus.ACTIVE;
+                device.persist();
+                for (int r = 0; r < RULES_PER_DEVICE; r++) {
+                    Rule rule = new Rule();
+                    rule.ruleName = "metric-" + r;
+                    rule.fromValue = 0;
+                    rule.toValue = 100;
+                    rule.updatedAt = Instant.now();
+                    rule.device = device;
+                    rule.persist();
+                }
+                deviceIds.add(device.id);
+            }
+        });
+    }
+
+    @AfterEach
+    public void deleteDevices() {
+        deviceIds.forEach(deviceService::deleteDevice);
+        deviceIds.clear();
+    }
+
+    @Test
+    public void testFindDevicesWithRules_LoadsEverythingInOneQuery() {
+        Statistics statistics = sessionFactory.getStatistics();
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+
+        List<Device> devices = QuarkusTransaction.requiringNew().call(() -> deviceService.findDevicesWithRules(deviceIds));
+
+        assertEquals(DEVICES, devices.size());
+        devices.forEach(device -> assertEquals(RULES_PER_DEVICE, device.rules.size(), "Rules should be fetched with the device"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindDevicesWithRules_SkipsUnknownDevices() {
+        List<UUID> ids = List.of(deviceIds.get(0), UUID.randomUUID());
+
+        List<Device> devices = QuarkusTransaction.requiringNew().call(() -> deviceService.findDevicesWithRules(ids));
+
+        assertEquals(1, devices.size());
+        assertEquals(deviceIds.get(0), devices.get(0).id);
+    }
+
+    @Test
+    public void testFindDevicesWithRules_ServesRepeatedLookupsFromCache() {
+        Statistics statistics = sessionFactory.getStatistics();
+        bulkLookup();
+        statistics.clear();
+
+        List<Device> devices = QuarkusTransaction.requiringNew().call(() -> deviceService.findDevicesWithRules(deviceIds));
+
+        assertEquals(DEVICES, devices.size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    @Test
+    public void testFindDevicesWithRules_SeesNewRules() {
+        UUID deviceId = deviceIds.get(0);
+        bulkLookup();
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            Rule rule = new Rule();
+            rule.ruleName = "added-metric";
+            rule.fromValue = 0;
+            rule.toValue = 10;
+            rule.updatedAt = Instant.now();
+            rule.device = Device.findById(deviceId);
+            rule.persist();
+        });
+
+        List<Device> devices = QuarkusTransaction.requiringNew().call(() -> deviceService.findDevicesWithRules(List.of(deviceId)));
+        assertEquals(RULES_PER_DEVICE + 1, devices.get(0).rules.size());
+        assertEquals(RULES_PER_DEVICE + 1, QuarkusTransaction.requiringNew().call(() -> ruleService.findRuleByDeviceId(deviceId)).size());
+    }
+
+    @Test
+    public void testDeleteDevice_EvictsDeviceAndItsRules() {
+        UUID deviceId = deviceIds.get(0);
+        bulkLookup();
+        QuarkusTransaction.requiringNew().run(() -> ruleService.findRuleByDeviceId(deviceId));
+
+        assertTrue(deviceService.deleteDevice(deviceId));
+
+        assertTrue(QuarkusTransaction.requiringNew().call(() -> deviceService.findDevicesWithRules(List.of(deviceId))).isEmpty());
+        assertTrue(QuarkusTransaction.requiringNew().call(() -> ruleService.findRuleByDeviceId(deviceId)).isEmpty());
+    }
+
+    @Test
+    public void testGenerateDeviceResponse_ReusesFragmentsUntilRuleChanges() throws Exception {
+        UUID deviceId = deviceIds.get(0);
+        Statistics statistics = sessionFactory.getStatistics();
+        JsonNode first = metadataResponse("batch-1");
+        assertEquals("batch-1", first.get("batchId").asText());
+        assertEquals(DEVICES, first.get("metadata").size());
+        assertEquals(RULES_PER_DEVICE, first.get("metadata").get(deviceId.toString()).get("rules").size());
+
+        // Every device is served from its fragment without touching Hibernate
+        statistics.clear();
+        JsonNode cached = metadataResponse("batch-2");
+        assertEquals(0, statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount());
+        assertEquals(first.get("metadata"), cached.get("metadata"));
+
+        UUID ruleId = QuarkusTransaction.requiringNew().call(() -> ruleService.findRuleByDeviceId(deviceId)).get(0).id;
+        assertTrue(ruleService.deleteRule(ruleId));
+
+        JsonNode changed = metadataResponse("batch-3");
+        assertEquals(RULES_PER_DEVICE - 1, changed.get("metadata").get(deviceId.toString()).get("rules").size());
+        assertEquals(RULES_PER_DEVICE, changed.get("metadata").get(deviceIds.get(1).toString()).get("rules").size());
+    }
+
+    @Test
+    public void testDeviceChangeEvent_EvictsDeviceChangedByAnotherInstance() throws Exception {
+        UUID deviceId = deviceIds.get(0);
+        metadataResponse("batch-1");
+
+        // Written past Hibernate, as another instance would, so none of the caches of this one notice
+        UUID ruleId = QuarkusTransaction.requiringNew().call(() -> ruleService.findRuleByDeviceId(deviceId)).get(0).id;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement update = connection.prepareStatement("UPDATE rules SET to_value = 50 WHERE id = ?")) {
+            update.setObject(1, ruleId);
+            assertEquals(1, update.executeUpdate());
+        }
+        assertFalse(ruleTargets(metadataResponse("batch-2"), deviceId).contains(50.0));
+
+        changeListener.onDeviceChange(objectMapper.writeValueAsString(Map.of(
+                "eventId", 1,
+                "entityType", "RULE",
+                "entityId", ruleId,
+                "deviceId", deviceId,
+                "changeType", "UPDATED")));
+
+        assertTrue(ruleTargets(metadataResponse("batch-3"), deviceId).contains(50.0));
+        Device device = QuarkusTransaction.requiringNew().call(() -> deviceService.findDevicesWithRules(List.of(deviceId)).get(0));
+        assertTrue(device.rules.stream().anyMatch(rule -> rule.toValue == 50));
+    }
+
+    @Test
+    public void testFragmentCache_RejectsFragmentsLoadedBeforeChange() {
+        UUID deviceId = UUID.randomUUID();
+        byte[] json = "{}".getBytes();
+
+        long generation = fragmentCache.generation(deviceId);
+        fragmentCache.invalidate(deviceId);
+        fragmentCache.put(deviceId, json, generation);
+        assertNull(fragmentCache.get(deviceId));
+
+        fragmentCache.put(deviceId, json, fragmentCache.generation(deviceId));
+        assertArrayEquals(json, fragmentCache.get(deviceId));
+    }
+
+    @Test
+    public void testOnMetadataRequests_LooksUpDevicesOfAllRequestsOnce() throws Exception {
+        // Overlapping requests and one without a batch ID, which is skipped
+        List<String> messages = List.of(
+                metadataRequest("batch-a", deviceIds.subList(0, 60)),
+                metadataRequest("batch-b", deviceIds.subList(40, DEVICES)),
+                objectMapper.writeValueAsString(Map.of("deviceIds", deviceIds.subList(0, 10))));
+        Statistics statistics = sessionFactory.getStatistics();
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+
+        metadataHandler.onMetadataRequests(messages);
+
+        assertEquals(1L, statistics.getPrepareStatementCount());
+
+        // The fragments of all devices were encoded on the way
+        statistics.clear();
+        JsonNode cached = metadataResponse("batch-c");
+        assertEquals(DEVICES, cached.get("metadata").size());
+        assertEquals(0L, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testBulkLookup_NeedsOneStatementInsteadOfTwoPerDevice() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        // Database round trips only, the second-level cache is emptied before every lookup
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+        perDeviceLookup();
+        assertEquals(2L * DEVICES, statistics.getPrepareStatementCount());
+
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+        bulkLookup();
+        assertEquals(1L, statistics.getPrepareStatementCount());
+
+        // Repeated lookups of the same devices are served by the second-level cache
+        statistics.clear();
+        bulkLookup();
+        assertEquals(0L, statistics.getPrepareStatementCount());
+    }
+
+    private void perDeviceLookup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (UUID id : deviceIds) {
+                deviceService.findDeviceById(id);
+                ruleService.findRuleByDeviceId(id);
+            }
+        });
+    }
+
+    private JsonNode metadataResponse(String batchId) throws Exception {
+        byte[] response = QuarkusTransaction.requiringNew().call(() -> metadataHandler.generateDeviceResponse(batchId, deviceIds));
+        return objectMapper.readTree(response);
+    }
+
+    private List<Double> ruleTargets(JsonNode response, UUID deviceId) {
+        List<Double> targets = new ArrayList<>();
+        response.get("metadata").get(deviceId.toString()).get("rules").forEach(rule -> targets.add(rule.get("to").asDouble()));
+        return targets;
+    }
+
+    private String metadataRequest(String batchId, List<UUID> ids) throws Exception {
+        return objectMapper.writeValueAsString(Map.of("batchId", batchId, "deviceIds", ids));
+    }
+
+    private void bulkLookup() {
+        QuarkusTransaction.requiringNew().run(() -> deviceService.findDevicesWithRules(deviceIds));
+    }
+}
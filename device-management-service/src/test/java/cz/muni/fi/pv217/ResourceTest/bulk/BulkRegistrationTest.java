@@ -0,0 +1,144 @@
+package cz.muni.fi.pv217.ResourceTest.bulk;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.OutboxEvent;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+public class BulkRegistrationTest {
+
+    private static final String THERMOSTAT_ID = "1a1b1c1d-2e2f-3a3b-4c4d-5e5f5a5b5c5d";
+    private static final String NAME_PREFIX = "Bulk Device ";
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @AfterEach
+    public void deleteBulkDevices() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Rule.delete("ruleName like ?1", "bulk-%");
+            Rule.delete("device.id in (select d.id from Device d where d.name like ?1)", NAME_PREFIX + "%");
+            Device.delete("name like ?1", NAME_PREFIX + "%");
+            OutboxEvent.deleteAll();
+        });
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    @Test
+    public void testBulkCreateDevicesReportsInvalidItems() {
+        Map<String, Object> missingName = device(1);
+        missingName.remove("name");
+        Map<String, Object> missingLatitude = device(2);
+        missingLatitude.remove("latitude");
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(List.of(device(0), missingName, missingLatitude, device(3)))
+                .when()
+                .post("/devices/bulk")
+                .then()
+                .statusCode(207)
+                .body("requested", equalTo(4))
+                .body("created", equalTo(2))
+                .body("ids[0]", notNullValue())
+                .body("ids[1]", nullValue())
+                .body("ids[2]", nullValue())
+                .body("ids[3]", notNullValue())
+                .body("failures.index", contains(1, 2))
+                .body("failures[0].message", containsString("name"));
+    }
+
+    @Test
+    public void testBulkCreateDevicesAllValid() {
+        String id = given()
+                .contentType(ContentType.JSON)
+                .body(List.of(device(0), device(1)))
+                .when()
+                .post("/devices/bulk")
+                .then()
+                .statusCode(201)
+                .body("created", equalTo(2))
+                .body("failures", empty())
+                .extract().path("ids[1]");
+
+        given()
+                .pathParam("id", id)
+                .when()
+                .get("/devices/{id}")
+                .then()
+                .statusCode(200)
+                .body("name", equalTo(NAME_PREFIX + 1));
+    }
+
+    @Test
+    public void testBulkCreateDevicesEmpty() {
+        given()
+                .contentType(ContentType.JSON)
+                .body(List.of())
+                .when()
+                .post("/devices/bulk")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testBulkCreateRulesReportsUnknownDevices() {
+        Map<String, Object> invalidRange = rule(THERMOSTAT_ID, 2);
+        invalidRange.remove("fromValue");
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(List.of(rule(THERMOSTAT_ID, 0), rule(UUID.randomUUID().toString(), 1), invalidRange))
+                .when()
+                .post("/rules/bulk")
+                .then()
+                .statusCode(207)
+                .body("created", equalTo(1))
+                .body("ids[0]", notNullValue())
+                .body("failures.index", contains(1, 2))
+                .body("failures[0].message", containsString("not found"));
+
+        // The new rule is part of the device right away
+        given()
+                .pathParam("device_id", THERMOSTAT_ID)
+                .when()
+                .get("/rules/device/{device_id}")
+                .then()
+                .statusCode(200)
+                .body("ruleName", hasItem("bulk-0"));
+    }
+
+    private static Map<String, Object> device(int i) {
+        Map<String, Object> device = new HashMap<>();
+        device.put("name", NAME_PREFIX + i);
+        device.put("type", "TEMP_SENSOR");
+        device.put("status", "ACTIVE");
+        device.put("longitude", 16.6);
+        device.put("latitude", 49.2);
+        return device;
+    }
+
+    private static Map<String, Object> rule(String deviceId, int i) {
+        Map<String, Object> rule = new HashMap<>();
+        rule.put("ruleName", "bulk-" + i);
+        rule.put("fromValue", 0);
+        rule.put("toValue", 100);
+        rule.put("deviceId", deviceId);
+        return rule;
+    }
+}
@@ -4,17 +4,22 @@ import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
 import io.quarkus.test.TestTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class DeviceResourceTest {
@@ -42,7 +47,127 @@ public class DeviceResourceTest {
                 // Verify we have at least the 3 seeded devices
                 .body("size()", greaterThanOrEqualTo(2))
                 // Verify specific names exist in the list
-                .body("name", hasItems("Living Room Thermostat", "Hallway Smart Light"));
+                .body("name", hasItems("Living Room Thermostat", "Hallway Smart Light"))
+                // Without a limit the default page of at most 100 devices is returned
+                .body("size()", lessThanOrEqualTo(100));
+    }
+
+    @Test
+    public void testGetDevicesByPage() {
+        String cursor = given()
+                .queryParam("limit", 1)
+                .when()
+                .get("/devices")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .header("X-Next-Cursor", notNullValue())
+                .extract().header("X-Next-Cursor");
+
+        // The next page starts after the cursor
+        given()
+                .queryParam("limit", 1)
+                .queryParam("after", cursor)
+                .when()
+                .get("/devices")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .body("[0].id", not(equalTo(cursor)));
+    }
+
+    @Test
+    public void testGetDevicesFilteredByType() {
+        given()
+                .queryParam("type", "temp_sensor")
+                .when()
+                .get("/devices")
+                .then()
+                .statusCode(200)
+                .body("type", everyItem(equalTo("TEMP_SENSOR")))
+                .body("id", hasItem(THERMOSTAT_ID));
+    }
+
+    @Test
+    public void testCreatedDeviceTypeIsFilteredCaseInsensitively() {
+        String id = given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("name", "Balcony Sensor", "type", "temp_sensor", "status", "ACTIVE"))
+                .when()
+                .post("/devices")
+                .then()
+                .statusCode(201)
+                .body("type", equalTo("TEMP_SENSOR"))
+                .extract().path("id");
+
+        given()
+                .queryParam("type", "temp_sensor")
+                .when()
+                .get("/devices")
+                .then()
+                .statusCode(200)
+                .body("id", hasItems(THERMOSTAT_ID, id));
+
+        given()
+                .pathParam("id", id)
+                .when()
+                .delete("/devices/{id}")
+                .then()
+                .statusCode(204);
+    }
+
+    @Test
+    public void testGetDevicesInvalidLimit() {
+        given()
+                .queryParam("limit", 0)
+                .when()
+                .get("/devices")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testStreamDevices() {
+        String body = given()
+                .when()
+                .get("/devices/stream")
+                .then()
+                .statusCode(200)
+                .contentType("application/x-ndjson")
+                .extract().asString();
+
+        // One JSON document per line
+        List<String> ids = Arrays.stream(body.split("\n"))
+                .map(line -> JsonPath.from(line).getString("id"))
+                .toList();
+        assertTrue(ids.size() >= 2);
+        assertTrue(ids.contains(THERMOSTAT_ID));
+    }
+
+    @Test
+    public void testDevicesExist() {
+        // Bits 0 and 2 of the little-endian bitmap, the random id in between is not registered
+        given()
+                .contentType(ContentType.JSON)
+                .body(List.of(THERMOSTAT_ID, UUID.randomUUID().toString(), SMART_LIGHT_ID))
+                .when()
+                .post("/devices/exists")
+                .then()
+                .statusCode(200)
+                .body("requested", equalTo(3))
+                .body("registered", equalTo(2))
+                .body("bitmap", equalTo(Base64.getEncoder().encodeToString(new byte[]{0b101})));
+    }
+
+    @Test
+    public void testDevicesExistEmptyRequest() {
+        given()
+                .contentType(ContentType.JSON)
+                .body("[]")
+                .when()
+                .post("/devices/exists")
+                .then()
+                .statusCode(400);
     }
 
     @Test
@@ -63,6 +188,102 @@ public class DeviceResourceTest {
                 .body("latitude", equalTo(PRAGUE_LATITUDE.floatValue()));
     }
 
+    @Test
+    public void testGetThermostatNotModified() {
+        String etag = given()
+                .pathParam("id", THERMOSTAT_ID)
+                .when()
+                .get("/devices/{id}")
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .extract().header("ETag");
+
+        given()
+                .pathParam("id", THERMOSTAT_ID)
+                .header("If-None-Match", etag)
+                .when()
+                .get("/devices/{id}")
+                .then()
+                .statusCode(304)
+                .header("ETag", equalTo(etag));
+    }
+
+    @Test
+    public void testGetDevicesNear() {
+        given()
+                .queryParam("latitude", 14.4378)
+                .queryParam("longitude", 50.0755)
+                .queryParam("radiusKm", 1)
+                .when()
+                .get("/devices/near")
+                .then()
+                .statusCode(200)
+                .body("[0].id", equalTo(THERMOSTAT_ID))
+                .body("name", not(hasItem("Niger Solar Meter")));
+    }
+
+    @Test
+    public void testGetDevicesNearAcrossAntimeridian() {
+        String id = given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("name", "Fiji Buoy", "type", "BUOY", "status", "ACTIVE",
+                        "latitude", -16.5, "longitude", 179.99))
+                .when()
+                .post("/devices")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        // About 2 km away, on the other side of the antimeridian
+        given()
+                .queryParam("latitude", -16.5)
+                .queryParam("longitude", -179.99)
+                .queryParam("radiusKm", 10)
+                .when()
+                .get("/devices/near")
+                .then()
+                .statusCode(200)
+                .header("X-Truncated", nullValue())
+                .body("id", hasItem(id));
+
+        given()
+                .pathParam("id", id)
+                .when()
+                .delete("/devices/{id}")
+                .then()
+                .statusCode(204);
+    }
+
+    @Test
+    public void testGetDevicesWithin() {
+        given()
+                .queryParam("minLatitude", 14.43)
+                .queryParam("minLongitude", 50.07)
+                .queryParam("maxLatitude", 14.44)
+                .queryParam("maxLongitude", 50.08)
+                .queryParam("status", "ACTIVE")
+                .when()
+                .get("/devices/within")
+                .then()
+                .statusCode(200)
+                .body("id", hasItem(THERMOSTAT_ID))
+                .body("name", not(hasItem("Niger Solar Meter")));
+    }
+
+    @Test
+    public void testGetDevicesWithinInvalidBox() {
+        given()
+                .queryParam("minLatitude", 15)
+                .queryParam("minLongitude", 50)
+                .queryParam("maxLatitude", 14)
+                .queryParam("maxLongitude", 51)
+                .when()
+                .get("/devices/within")
+                .then()
+                .statusCode(400);
+    }
+
     @Test
     public void testGetDeviceNotFound() {
         given()
@@ -286,6 +507,63 @@ public class DeviceResourceTest {
                 .statusCode(404);
     }
 
+    @Test
+    public void testUpdateDeviceWithStaleIfMatch() {
+        String id = given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("name", "Cellar Humidity Sensor", "type", "HUMIDITY_SENSOR", "status", "ACTIVE"))
+                .when()
+                .post("/devices")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+        String etag = given()
+                .pathParam("id", id)
+                .when()
+                .get("/devices/{id}")
+                .then()
+                .statusCode(200)
+                .extract().header("ETag");
+        var updateBody = Map.of(
+                "id", id,
+                "name", "Cellar Humidity Sensor",
+                "type", "HUMIDITY_SENSOR",
+                "status", DeviceStatus.INACTIVE.name()
+        );
+
+        // The first update is based on the current version
+        String updatedEtag = given()
+                .contentType(ContentType.JSON)
+                .header("If-Match", etag)
+                .body(updateBody)
+                .when()
+                .put("/devices")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(etag)))
+                .extract().header("ETag");
+
+        // The second one still sends the version the first one replaced
+        given()
+                .contentType(ContentType.JSON)
+                .header("If-Match", etag)
+                .body(updateBody)
+                .when()
+                .put("/devices")
+                .then()
+                .statusCode(412);
+
+        given()
+                .pathParam("id", id)
+                .when()
+                .get("/devices/{id}")
+                .then()
+                .statusCode(200)
+                .header("ETag", equalTo(updatedEtag));
+
+        given().pathParam("id", id).when().delete("/devices/{id}").then().statusCode(204);
+    }
+
     @Test
     @TestTransaction
     public void testUpdateDeviceInvalidId() {
@@ -3,6 +3,7 @@ package cz.muni.fi.pv217.ResourceTest.rule;
 import io.quarkus.test.TestTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -13,6 +14,8 @@ import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -44,6 +47,63 @@ public class RuleResourceTest {
                 .body("ruleName", hasItems("temperature", "brightness"));
     }
 
+    @Test
+    @Order(1)
+    public void testGetRulesByPage() {
+        String cursor = given()
+                .queryParam("limit", 1)
+                .when()
+                .get("/rules")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .header("X-Next-Cursor", notNullValue())
+                .extract().header("X-Next-Cursor");
+
+        given()
+                .queryParam("limit", 1)
+                .queryParam("after", cursor)
+                .when()
+                .get("/rules")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .body("[0].id", not(equalTo(cursor)))
+                .body("[0].device.id", notNullValue());
+    }
+
+    @Test
+    @Order(1)
+    public void testGetRulesFilteredByDevice() {
+        given()
+                .queryParam("deviceId", THERMOSTAT_ID)
+                .when()
+                .get("/rules")
+                .then()
+                .statusCode(200)
+                .body("device.id", everyItem(equalTo(THERMOSTAT_ID)))
+                .body("id", hasItem(TEMP_RULE_ID));
+    }
+
+    @Test
+    @Order(1)
+    public void testStreamRules() {
+        String body = given()
+                .queryParam("deviceId", THERMOSTAT_ID)
+                .when()
+                .get("/rules/stream")
+                .then()
+                .statusCode(200)
+                .contentType("application/x-ndjson")
+                .extract().asString();
+
+        // One JSON document per line, each with its device
+        for (String line : body.split("\n")) {
+            assertEquals(THERMOSTAT_ID, JsonPath.from(line).getString("device.id"));
+        }
+        assertTrue(body.contains(TEMP_RULE_ID));
+    }
+
     @Test
     @Order(2)
     public void testGetRuleById() {
@@ -121,6 +181,46 @@ public class RuleResourceTest {
                 .statusCode(404);
     }
 
+    @Test
+    @Order(62)
+    public void testGetRulesByDeviceIdNotModifiedUntilRuleChanges() {
+        String etag = given()
+                .pathParam("device_id", SMART_LIGHT_ID)
+                .when()
+                .get("/rules/device/{device_id}")
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .extract().header("ETag");
+
+        given()
+                .pathParam("device_id", SMART_LIGHT_ID)
+                .header("If-None-Match", etag)
+                .when()
+                .get("/rules/device/{device_id}")
+                .then()
+                .statusCode(304);
+
+        // A new rule of the device changes its version
+        given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("ruleName", "lux", "fromValue", 1, "toValue", 2, "deviceId", SMART_LIGHT_ID))
+                .when()
+                .post("/rules")
+                .then()
+                .statusCode(201);
+
+        given()
+                .pathParam("device_id", SMART_LIGHT_ID)
+                .header("If-None-Match", etag)
+                .when()
+                .get("/rules/device/{device_id}")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(etag)))
+                .body("ruleName", hasItems("brightness", "lux"));
+    }
+
     // ------------------------------------ CREATE TESTS ------------------------------------
 
     @Test
@@ -168,6 +268,28 @@ public class RuleResourceTest {
                 .body("violations.field", hasItems("create.request.fromValue", "create.request.toValue", "create.request.deviceId"));
     }
 
+    @Test
+    @Order(8)
+    public void testCreateWindowedRuleWithoutWindow() {
+        var requestBody = Map.of(
+                "ruleName", "Windowed rule",
+                "fromValue", 10,
+                "toValue", 30,
+                "deviceId", THERMOSTAT_ID,
+                "ruleType", "WINDOWED",
+                "violationCount", 3
+        );
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(requestBody)
+                .when()
+                .post("/rules")
+                .then()
+                .statusCode(400)
+                .body("title", equalTo("Constraint Violation"));
+    }
+
     // --- Custom Validation Test (Assuming a Rule must have BOTH a Trigger and an Action) ---
     @Test
     @Order(9)
@@ -338,6 +460,34 @@ public class RuleResourceTest {
                 .body("description", equalTo(originalDescription));
     }
 
+    @Test
+    @Order(15)
+    public void testUpdateRuleToWindowedWithoutWindow() {
+        // Only the type changes, the rule has no window parameters to go with it
+        var updateBody = Map.of(
+                "id", TEMP_RULE_ID,
+                "ruleName", "Windowed Temperature Rule",
+                "ruleType", "WINDOWED"
+        );
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(updateBody)
+                .when()
+                .put("/rules")
+                .then()
+                .statusCode(400)
+                .body("error", containsString("WINDOWED"));
+
+        given()
+                .pathParam("id", TEMP_RULE_ID)
+                .when()
+                .get("/rules/{id}")
+                .then()
+                .statusCode(200)
+                .body("ruleType", equalTo("RANGE"));
+    }
+
     @Test
     @Order(15)
     public void testUpdateRuleWithNonExistingDeviceId() {
@@ -0,0 +1,12 @@
+package cz.muni.fi.pv217.benchmark;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+
+/**
+ * {@link ReadPathBenchmark} with the read paths on Hibernate ORM and worker threads.
+ */
+@QuarkusTest
+@TestProfile(BlockingReadPathBenchmarkProfile.class)
+public class BlockingReadPathBenchmark extends ReadPathBenchmark {
+}
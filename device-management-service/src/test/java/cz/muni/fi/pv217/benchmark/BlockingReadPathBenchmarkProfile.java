@@ -0,0 +1,17 @@
+package cz.muni.fi.pv217.benchmark;
+
+import java.util.Map;
+
+/**
+ * The read path benchmark profile with the read paths on Hibernate ORM and worker threads,
+ * the baseline for comparing both persistence modes.
+ */
+public class BlockingReadPathBenchmarkProfile extends ReadPathBenchmarkProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> config = super.getConfigOverrides();
+        config.put("device.persistence.reactive-reads", "false");
+        return config;
+    }
+}
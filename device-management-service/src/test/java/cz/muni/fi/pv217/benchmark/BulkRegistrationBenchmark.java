@@ -0,0 +1,95 @@
+package cz.muni.fi.pv217.benchmark;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.OutboxEvent;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Registers devices one request at a time and with one POST /devices/bulk request, and checks that
+ * the bulk path sends its inserts in JDBC batches instead of one statement per device.
+ * Not part of the regular test run, start it with
+ * {@code mvn test -Pread-benchmark -pl device-management-service}.
+ */
+@QuarkusTest
+public class BulkRegistrationBenchmark {
+
+    private static final String NAME_PREFIX = "Bulk Benchmark Device ";
+    private static final int BULK_DEVICES = Integer.getInteger("bulk.benchmark.devices", 100_000);
+    private static final int SINGLE_DEVICES = 1_000;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @AfterEach
+    public void deleteBenchmarkDevices() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Device.delete("name like ?1", NAME_PREFIX + "%");
+            OutboxEvent.deleteAll();
+        });
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    @Test
+    public void benchmarkBulkCreateAgainstSingleCreates() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        // Baseline: one request, transaction and insert per device
+        statistics.clear();
+        for (int i = 0; i < SINGLE_DEVICES; i++) {
+            given()
+                    .contentType(ContentType.JSON)
+                    .body(device(i))
+                    .when()
+                    .post("/devices")
+                    .then()
+                    .statusCode(201);
+        }
+        double singleStatementsPerDevice = (double) statistics.getPrepareStatementCount() / SINGLE_DEVICES;
+
+        List<Map<String, Object>> devices = new ArrayList<>(BULK_DEVICES);
+        for (int i = 0; i < BULK_DEVICES; i++) {
+            devices.add(device(i));
+        }
+        statistics.clear();
+        given()
+                .contentType(ContentType.JSON)
+                .body(devices)
+                .when()
+                .post("/devices/bulk")
+                .then()
+                .statusCode(201)
+                .body("created", equalTo(BULK_DEVICES));
+        double bulkStatementsPerDevice = (double) statistics.getPrepareStatementCount() / BULK_DEVICES;
+
+        // Batches of quarkus.hibernate-orm.jdbc.statement-batch-size inserts share one statement
+        assertTrue(bulkStatementsPerDevice * 10 < singleStatementsPerDevice,
+                "Bulk registration should need a fraction of the statements per device, bulk "
+                        + bulkStatementsPerDevice + " single " + singleStatementsPerDevice);
+    }
+
+    private static Map<String, Object> device(int i) {
+        Map<String, Object> device = new HashMap<>();
+        device.put("name", NAME_PREFIX + i);
+        device.put("type", "TEMP_SENSOR");
+        device.put("status", "ACTIVE");
+        device.put("longitude", 16.6);
+        device.put("latitude", 49.2);
+        return device;
+    }
+}
@@ -0,0 +1,196 @@
+package cz.muni.fi.pv217.benchmark;
+
+import cz.muni.fi.pv217.devicemanagementservice.domain.Device;
+import cz.muni.fi.pv217.devicemanagementservice.domain.DeviceStatus;
+import cz.muni.fi.pv217.devicemanagementservice.domain.Rule;
+import cz.muni.fi.pv217.devicemanagementservice.service.DeviceReadService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput and latency of the read paths under concurrent load: GET /devices/{id},
+ * GET /rules/device/{device_id} and metadata batch resolution of DeviceMetadataHandler.
+ * Runs with the reactive read paths, {@link BlockingReadPathBenchmark} runs the same load on
+ * Hibernate ORM. Not part of the regular test run, start it with
+ * {@code mvn test -Pread-benchmark -pl device-management-service}.
+ */
+@QuarkusTest
+@TestProfile(ReadPathBenchmarkProfile.class)
+public class ReadPathBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadPathBenchmark.class);
+
+    private static final int DEVICES = 1_000;
+    private static final int RULES_PER_DEVICE = 5;
+    private static final int[] CONCURRENCY = {16, 64, 256};
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 20_000);
+    private static final int METADATA_BATCHES = Integer.getInteger("benchmark.metadata-batches", 2_000);
+    private static final int DEVICES_PER_BATCH = 50;
+
+    @TestHTTPResource("/")
+    URL baseUrl;
+
+    @Inject
+    DeviceReadService readService;
+
+    private final List<UUID> deviceIds = new ArrayList<>();
+
+    @BeforeEach
+    public void createDevices() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int i = 0; i < DEVICES; i++) {
+                Device device = new Device();
+                device.name = "Benchmark Device " + i;
+                device.type = "TEMP_SENSOR";
+                device.status = DeviceStatus.ACTIVE;
+                device.persist();
+                for (int r = 0; r < RULES_PER_DEVICE; r++) {
+                    Rule rule = new Rule();
+                    rule.ruleName = "metric-" + r;
+                    rule.fromValue = 0;
+                    rule.toValue = 100;
+                    rule.updatedAt = Instant.now();
+                    rule.device = device;
+                    rule.persist();
+                }
+                deviceIds.add(device.id);
+            }
+        });
+    }
+
+    @AfterEach
+    public void deleteDevices() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Rule.delete("device.id in ?1", deviceIds);
+            Device.delete("id in ?1", deviceIds);
+        });
+        deviceIds.clear();
+    }
+
+    @Test
+    public void measureReadPaths() throws Exception {
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+        // Warm up the JIT and both connection pools
+        runRequests(client, 16, REQUESTS / 4);
+        runMetadata(16, METADATA_BATCHES / 4);
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-10s %12s %12s %10s %10s", "path", "concurrency", "ops/s", "p50 ms", "p99 ms"));
+        for (int concurrency : CONCURRENCY) {
+            report.add(runRequests(client, concurrency, REQUESTS).format("http", concurrency));
+            report.add(runMetadata(concurrency, METADATA_BATCHES).format("metadata", concurrency));
+        }
+        LOG.info("{}{}{}", getClass().getSimpleName(), System.lineSeparator(), String.join(System.lineSeparator(), report));
+    }
+
+    /**
+     * Alternates GET /devices/{id} and GET /rules/device/{device_id} of random devices,
+     * keeping the given number of requests in flight.
+     */
+    private Result runRequests(HttpClient client, int concurrency, int requests) throws Exception {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            UUID deviceId = deviceIds.get(ThreadLocalRandom.current().nextInt(deviceIds.size()));
+            String path = i % 2 == 0 ? "devices/" + deviceId : "rules/device/" + deviceId;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+            int index = i;
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (failure != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(0, failures.get(), "All requests should succeed");
+        return Result.of(requests, elapsed, latencies);
+    }
+
+    /**
+     * Resolves batches of random devices with their rules from the given number of virtual threads,
+     * the way DeviceMetadataHandler does for every metadata request.
+     */
+    private Result runMetadata(int concurrency, int batches) throws Exception {
+        long[] latencies = new long[batches];
+        AtomicInteger next = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> workers = new ArrayList<>(concurrency);
+            for (int w = 0; w < concurrency; w++) {
+                workers.add(executor.submit(() -> {
+                    int batch;
+                    while ((batch = next.getAndIncrement()) < batches) {
+                        List<UUID> ids = new ArrayList<>(DEVICES_PER_BATCH);
+                        for (int d = 0; d < DEVICES_PER_BATCH; d++) {
+                            ids.add(deviceIds.get(ThreadLocalRandom.current().nextInt(deviceIds.size())));
+                        }
+                        long sent = System.nanoTime();
+                        readService.findDevicesWithRules(ids);
+                        latencies[batch] = System.nanoTime() - sent;
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        return Result.of(batches, System.nanoTime() - start, latencies);
+    }
+
+    private record Result(double opsPerSecond, double p50Millis, double p99Millis) {
+
+        static Result of(int operations, long elapsedNanos, long[] latencies) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return new Result(
+                    operations / (elapsedNanos / 1e9),
+                    sorted[(int) (sorted.length * 0.50)] / 1e6,
+                    sorted[(int) (sorted.length * 0.99)] / 1e6);
+        }
+
+        String format(String path, int concurrency) {
+            return String.format("%-10s %12d %12.0f %10.2f %10.2f", path, concurrency, opsPerSecond, p50Millis, p99Millis);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package cz.muni.fi.pv217.benchmark;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the service against a PostgreSQL dev service instead of H2, with the read paths on the
+ * reactive client and every Kafka channel on the in-memory connector.
+ */
+public class ReadPathBenchmarkProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> config = new HashMap<>();
+        config.put("%test.quarkus.datasource.db-kind", "postgresql");
+        // Empty values count as unset, which starts the PostgreSQL dev service
+        config.put("%test.quarkus.datasource.jdbc.url", "");
+        config.put("%test.quarkus.datasource.username", "");
+        config.put("%test.quarkus.datasource.password", "");
+        config.put("quarkus.datasource.jdbc.url", "");
+        config.put("quarkus.datasource.reactive.url", "");
+        config.put("%test.quarkus.datasource.reactive", "true");
+        config.put("%test.mp.messaging.incoming.metadata-batch-requests.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.outgoing.metadata-batch-responses.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.outgoing.device-change-events.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.incoming.device-change-evictions.connector", "smallrye-in-memory");
+        config.put("quarkus.kafka.devservices.enabled", "false");
+        config.put("device.persistence.reactive-reads", "true");
+        config.put("quarkus.log.category.\"cz.muni.fi.pv217\".level", "WARN");
+        config.put("quarkus.log.category.\"cz.muni.fi.pv217.benchmark\".level", "INFO");
+        return config;
+    }
+}
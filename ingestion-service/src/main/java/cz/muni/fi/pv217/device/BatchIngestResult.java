@@ -0,0 +1,14 @@
+package cz.muni.fi.pv217.device;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of POST /ingest/batch.
+ *
+ * @param accepted       Payloads sent for processing
+ * @param rejected       Payloads dropped because their device is not registered or could not be checked
+ * @param unknownDevices Devices of the rejected payloads that are not registered
+ * @param failedDevices  Devices of the rejected payloads that could not be checked, their payloads can be sent again
+ */
+public record BatchIngestResult(int accepted, int rejected, List<UUID> unknownDevices, List<UUID> failedDevices) {}
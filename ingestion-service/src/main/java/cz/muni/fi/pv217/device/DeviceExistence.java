@@ -0,0 +1,18 @@
+package cz.muni.fi.pv217.device;
+
+import java.util.Base64;
+import java.util.BitSet;
+
+/**
+ * Response of device-management-service to POST /devices/exists.
+ *
+ * @param requested  Number of requested ids
+ * @param registered Number of registered devices among them
+ * @param bitmap     Base64 of a little-endian bitmap, bit i is set when the i-th requested id is registered
+ */
+public record DeviceExistence(int requested, int registered, String bitmap) {
+
+    public BitSet registeredIndexes() {
+        return bitmap == null ? new BitSet() : BitSet.valueOf(Base64.getDecoder().decode(bitmap));
+    }
+}
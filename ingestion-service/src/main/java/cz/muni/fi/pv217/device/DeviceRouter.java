@@ -10,6 +10,7 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
@@ -17,6 +18,14 @@ import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
 @Path("/ingest")
 public class DeviceRouter {
 
@@ -33,6 +42,10 @@ public class DeviceRouter {
     @RestClient
     ManagementServiceClient deviceClient;
 
+    // Most ids device-management accepts in one existence check, see device.exists.max-ids there
+    @ConfigProperty(name = "ingest.exists.max-ids", defaultValue = "10000")
+    int existsMaxIds;
+
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.TEXT_PLAIN)
@@ -53,4 +66,63 @@ public class DeviceRouter {
         sensorEmitter.send(data);
         return "ok";
     }
+
+    /**
+     * Ingests a batch of payloads, checking all their devices with one call to device-management
+     * per ingest.exists.max-ids devices instead of one lookup per payload. Payloads of unregistered
+     * devices are dropped. Payloads of devices that could not be checked are dropped as well and
+     * reported apart, the request is answered with 503 when none of its payloads was accepted
+     * because of that, so the client sends it again.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Timed("ingest_batch_request_processing_time")
+    @Counted("ingest_batch_request_count")
+    public Response ingestBatch(@RequestBody List<DevicePayload> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return Response.ok(new BatchIngestResult(0, 0, List.of(), List.of())).build();
+        }
+
+        List<UUID> deviceIds = new ArrayList<>(new LinkedHashSet<>(batch.stream()
+                .map(DevicePayload::getDeviceId)
+                .filter(id -> id != null)
+                .toList()));
+        Set<UUID> registered = new HashSet<>();
+        Set<UUID> failed = new LinkedHashSet<>();
+        for (int from = 0; from < deviceIds.size(); from += existsMaxIds) {
+            List<UUID> chunk = deviceIds.subList(from, Math.min(from + existsMaxIds, deviceIds.size()));
+            try {
+                BitSet bitmap = deviceClient.devicesExist(chunk).registeredIndexes();
+                bitmap.stream().filter(i -> i < chunk.size()).forEach(i -> registered.add(chunk.get(i)));
+            } catch (Exception e) {
+                LOG.error("Error checking {} devices of the batch `{}`", chunk.size(), e.getMessage());
+                failed.addAll(chunk);
+            }
+        }
+
+        int accepted = 0;
+        int dropped = 0;
+        Set<UUID> unknown = new LinkedHashSet<>();
+        for (DevicePayload data : batch) {
+            if (registered.contains(data.getDeviceId())) {
+                sensorEmitter.send(data);
+                accepted++;
+            } else if (!failed.contains(data.getDeviceId())) {
+                unknown.add(data.getDeviceId());
+                dropped++;
+            }
+        }
+        if (!unknown.isEmpty()) {
+            LOG.error("Dropped {} payloads of devices not found in device-manager: {}", dropped, unknown);
+        }
+
+        BatchIngestResult result = new BatchIngestResult(accepted, batch.size() - accepted,
+                new ArrayList<>(unknown), new ArrayList<>(failed));
+        if (accepted == 0 && !failed.isEmpty()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(result).build();
+        }
+        return Response.ok(result).build();
+    }
 }
@@ -1,7 +1,9 @@
 package cz.muni.fi.pv217.device;
 
 import io.quarkus.rest.client.reactive.ClientExceptionMapper;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
@@ -9,6 +11,9 @@ import jakarta.ws.rs.core.MediaType;
 
 import jakarta.ws.rs.core.Response;
 
+import java.util.List;
+import java.util.UUID;
+
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 @Path("/devices")
@@ -20,4 +25,10 @@ public interface ManagementServiceClient {
     @Produces(MediaType.APPLICATION_JSON)
     Response getDeviceByUuid(@PathParam("id") String uuid);
 
+    @POST
+    @Path("/exists")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    DeviceExistence devicesExist(List<UUID> ids);
+
 }
@@ -1,13 +1,20 @@
 package cz.muni.fi.pv217.deviceRouter;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import cz.muni.fi.pv217.device.DeviceExistence;
 import cz.muni.fi.pv217.device.DevicePayload;
 import cz.muni.fi.pv217.device.ManagementServiceClient;
 import io.quarkus.test.InjectMock;
@@ -17,6 +24,9 @@ import io.smallrye.reactive.messaging.memory.InMemoryConnector;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Response;
 import java.time.Instant;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import org.eclipse.microprofile.reactive.messaging.spi.Connector;
@@ -246,4 +256,125 @@ class DeviceRouterTest {
         assertNotNull(payload.getReadings(), "Readings should not be null");
         assertEquals(2, payload.getReadings().size(), "Should have 2 readings");
     }
+
+    @Test
+    @DisplayName("Should check all devices of a batch with one call and drop payloads of unknown devices")
+    void testIngestBatchEndpoint_UnknownDevices() {
+        // Given: A batch with two payloads of a registered device and one of an unknown device
+        UUID registered = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        String json = """
+            [
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 22.5 } ] },
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 30.0 } ] },
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 23.0 } ] }
+            ]
+            """.formatted(registered, now, unknown, now, registered, now);
+
+        // Mock the device management service to report only the first requested device as registered
+        BitSet bitmap = new BitSet();
+        bitmap.set(0);
+        when(managementServiceClient.devicesExist(List.of(registered, unknown)))
+            .thenReturn(new DeviceExistence(2, 1, Base64.getEncoder().encodeToString(bitmap.toByteArray())));
+
+        // When: Calling the /ingest/batch endpoint
+        given()
+            .contentType(ContentType.JSON)
+            .body(json)
+            .when()
+            .post("/ingest/batch")
+            .then()
+            .statusCode(200)
+            .body("accepted", is(2))
+            .body("rejected", is(1))
+            .body("unknownDevices", contains(unknown.toString()));
+
+        // Then: Verify the devices were checked once, without single device lookups
+        verify(managementServiceClient).devicesExist(List.of(registered, unknown));
+        verify(managementServiceClient, never()).getDeviceByUuid(anyString());
+
+        // And: Verify only the payloads of the registered device were sent to Kafka topic
+        var sink = connector.sink("sensor-ingest");
+        assertEquals(2, sink.received().size(), "Expected 2 messages in the Kafka sink");
+        for (var message : sink.received()) {
+            assertEquals(registered, ((DevicePayload) message.getPayload()).getDeviceId(), "Device ID should match");
+        }
+    }
+
+    @Test
+    @DisplayName("Should split the existence check of a batch into calls of at most the configured number of devices")
+    void testIngestBatchEndpoint_ChunksExistenceCheck() {
+        // Given: A batch of three devices while one check accepts two (ingest.exists.max-ids in the test profile)
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        String json = """
+            [
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 22.5 } ] },
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 30.0 } ] },
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 23.0 } ] }
+            ]
+            """.formatted(first, now, second, now, third, now);
+
+        when(managementServiceClient.devicesExist(List.of(first, second))).thenReturn(allRegistered(2));
+        when(managementServiceClient.devicesExist(List.of(third))).thenReturn(allRegistered(1));
+
+        // When: Calling the /ingest/batch endpoint
+        given()
+            .contentType(ContentType.JSON)
+            .body(json)
+            .when()
+            .post("/ingest/batch")
+            .then()
+            .statusCode(200)
+            .body("accepted", is(3))
+            .body("rejected", is(0));
+
+        // Then: Verify the devices were checked in two calls
+        verify(managementServiceClient, times(2)).devicesExist(any());
+        assertEquals(3, connector.sink("sensor-ingest").received().size(), "Expected 3 messages in the Kafka sink");
+    }
+
+    @Test
+    @DisplayName("Should answer 503 and report the devices apart when their existence could not be checked")
+    void testIngestBatchEndpoint_ExistenceCheckFails() {
+        // Given: A batch whose device check fails
+        UUID deviceId = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        String json = """
+            [
+              { "deviceId": "%s", "timestamp": "%s", "readings": [ { "temperature": 22.5 } ] }
+            ]
+            """.formatted(deviceId, now);
+
+        when(managementServiceClient.devicesExist(any())).thenThrow(new RuntimeException("Connection refused"));
+
+        // When: Calling the /ingest/batch endpoint
+        given()
+            .contentType(ContentType.JSON)
+            .body(json)
+            .when()
+            .post("/ingest/batch")
+            .then()
+            .statusCode(503)
+            .body("accepted", is(0))
+            .body("rejected", is(1))
+            .body("unknownDevices", empty())
+            .body("failedDevices", contains(deviceId.toString()));
+
+        // Then: Verify NO message was sent to Kafka topic
+        assertEquals(0, connector.sink("sensor-ingest").received().size(),
+            "Expected 0 messages in the Kafka sink when the devices could not be checked");
+    }
+
+    private static DeviceExistence allRegistered(int count) {
+        BitSet bitmap = new BitSet();
+        bitmap.set(0, count);
+        return new DeviceExistence(count, count, Base64.getEncoder().encodeToString(bitmap.toByteArray()));
+    }
 }
@@ -1,11 +1,17 @@
 package utils;
 
+import cz.muni.fi.pv217.device.DeviceExistence;
 import cz.muni.fi.pv217.device.ManagementServiceClient;
 import jakarta.annotation.Priority;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Alternative;
 import jakarta.ws.rs.core.Response;
 
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
 @ApplicationScoped
 @Alternative
 @Priority(1) // ensure it overrides the real client
@@ -22,4 +28,12 @@ public class ManagementServiceClientMock implements ManagementServiceClient {
                 .entity(dummyJson)          // JSON payload
                 .build();
     }
+
+    @Override
+    public DeviceExistence devicesExist(List<UUID> ids) {
+        // Every requested device is registered
+        BitSet bitmap = new BitSet(ids.size());
+        bitmap.set(0, ids.size());
+        return new DeviceExistence(ids.size(), ids.size(), Base64.getEncoder().encodeToString(bitmap.toByteArray()));
+    }
 }
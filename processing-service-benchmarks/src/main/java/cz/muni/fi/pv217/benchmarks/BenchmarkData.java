@@ -0,0 +1,106 @@
+package cz.muni.fi.pv217.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.to.InputEventTo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds the synthetic events and device metadata shared by the benchmarks.
+ * Metric names are "metric-0", "metric-1", ... so the first readings of an event
+ * always have a rule when the device has at least as many rules as the event has readings.
+ * Values are drawn from a fixed seed and stay inside the rule range: every violation is logged
+ * at WARN level by MetricEvaluator and the logging would dominate the measured time. For the same
+ * reason rate-of-change rules span [-RANGE_TO, RANGE_TO]: it holds the values as well as the zero
+ * rate of the unchanged values a device sends from one event to the next.
+ */
+final class BenchmarkData {
+
+    static final UUID DEVICE_ID = UUID.fromString("6f1c2a4e-3b8d-4c7e-9a15-2d0e8f4b7c61");
+    static final double RANGE_FROM = 10.0;
+    static final double RANGE_TO = 30.0;
+
+    /**
+     * How reading values are represented in the incoming JSON.
+     * Devices send both plain numbers and numeric strings, and the mappers handle them differently.
+     */
+    enum ValueType {
+        DOUBLE,
+        STRING
+    }
+
+    private BenchmarkData() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    static String metricName(int i) {
+        return "metric-" + i;
+    }
+
+    static DeviceMetadataResTo metadata(int rulesPerDevice, String ruleType) {
+        List<DeviceMetadataResTo.Rule> rules = new ArrayList<>(rulesPerDevice);
+        boolean rate = "RATE_OF_CHANGE".equals(ruleType);
+        double from = rate ? -RANGE_TO : RANGE_FROM;
+        for (int i = 0; i < rulesPerDevice; i++) {
+            rules.add(new DeviceMetadataResTo.Rule(metricName(i), from, RANGE_TO, ruleType, 1.0, 60, 3));
+        }
+        return new DeviceMetadataResTo(
+            Map.of("latitude", 49.2, "longitude", 16.6),
+            "benchmark-device",
+            "SENSOR",
+            "ACTIVE",
+            rules);
+    }
+
+    static InputEventTo inputEvent(int readingsPerEvent, ValueType valueType, Instant timestamp, Random random) {
+        List<Map<String, Object>> readings = new ArrayList<>(readingsPerEvent);
+        for (int i = 0; i < readingsPerEvent; i++) {
+            Map<String, Object> reading = new HashMap<>(2);
+            double value = value(random);
+            reading.put(metricName(i), valueType == ValueType.DOUBLE ? value : Double.toString(value));
+            readings.add(reading);
+        }
+        return new InputEventTo(DEVICE_ID, timestamp, readings);
+    }
+
+    static byte[] rawEvent(int readingsPerEvent, ValueType valueType, Instant timestamp, Random random) {
+        StringBuilder json = new StringBuilder(64 + readingsPerEvent * 24);
+        json.append("{\"deviceId\":\"").append(DEVICE_ID)
+            .append("\",\"timestamp\":\"").append(timestamp)
+            .append("\",\"readings\":[");
+        for (int i = 0; i < readingsPerEvent; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double value = value(random);
+            json.append("{\"").append(metricName(i)).append("\":");
+            if (valueType == ValueType.DOUBLE) {
+                json.append(value);
+            } else {
+                json.append('"').append(value).append('"');
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double value(Random random) {
+        return RANGE_FROM + random.nextDouble() * (RANGE_TO - RANGE_FROM);
+    }
+}
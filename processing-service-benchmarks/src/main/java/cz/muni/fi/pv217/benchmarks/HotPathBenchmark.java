@@ -0,0 +1,89 @@
+package cz.muni.fi.pv217.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import cz.muni.fi.pv217.entity.mappers.InputEventVoMapper;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventToMapper;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventVoMapper;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.to.ProcessedEventTo;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.MetricEvaluator;
+import cz.muni.fi.pv217.service.hotpath.EventCarrier;
+import cz.muni.fi.pv217.service.hotpath.ProcessedEventEncoder;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways an enriched event becomes a published JSON message:
+ * the object chain (ProcessedEventVo, evaluation, ProcessedEventTo, ObjectMapper) and the
+ * hot path (EventCarrier, evaluation, ProcessedEventEncoder with the cached metadata fragment).
+ * Run with the GC profiler to compare the allocation rate per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class HotPathBenchmark {
+
+    @Param({"1", "10", "50"})
+    int readingsPerEvent;
+
+    @Param({"1", "100", "500"})
+    int rulesPerDevice;
+
+    private InputEventVo input;
+    private DeviceMetadataResTo metadata;
+    private DeviceRuleIndex index;
+    private MetricEvaluator evaluator;
+    private ObjectWriter eventWriter;
+    private ProcessedEventEncoder encoder;
+    private EventCarrier carrier;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        input = InputEventVoMapper.MapFrom(BenchmarkData.inputEvent(
+            readingsPerEvent, BenchmarkData.ValueType.DOUBLE, Instant.parse("2024-05-01T12:00:00Z"), random));
+        metadata = BenchmarkData.metadata(rulesPerDevice, null);
+        index = DeviceRuleIndex.compile(metadata.rules());
+        evaluator = new MetricEvaluator();
+
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        eventWriter = objectMapper.writerFor(ProcessedEventTo.class);
+        encoder = new ProcessedEventEncoder(objectMapper, 1000);
+        carrier = new EventCarrier();
+    }
+
+    @Benchmark
+    public String objectChain() throws IOException {
+        ProcessedEventVo event = ProcessedEventVoMapper.MapFrom(input, metadata, index);
+        evaluator.process(event, index);
+        return eventWriter.writeValueAsString(ProcessedEventToMapper.MapFrom(event));
+    }
+
+    @Benchmark
+    public byte[] hotPath() throws IOException {
+        carrier.load(input, index);
+        evaluator.process(carrier, index);
+        return encoder.encode(carrier, metadata, index);
+    }
+}
@@ -0,0 +1,90 @@
+package cz.muni.fi.pv217.benchmarks;
+
+import cz.muni.fi.pv217.entity.mappers.InputEventVoMapper;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventToMapper;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventVoMapper;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.to.InputEventTo;
+import cz.muni.fi.pv217.entity.to.ProcessedEventTo;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-event mapping chain: InputEventTo to InputEventVo, InputEventVo plus metadata
+ * to ProcessedEventVo (rebuilding the rule index per event and with a cached index), and
+ * ProcessedEventVo to the published ProcessedEventTo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MapperBenchmark {
+
+    @Param({"1", "10", "50"})
+    int readingsPerEvent;
+
+    @Param({"1", "100", "500"})
+    int rulesPerDevice;
+
+    @Param({"DOUBLE", "STRING"})
+    BenchmarkData.ValueType valueType;
+
+    private InputEventTo inputEvent;
+    private InputEventVo inputEventVo;
+    private DeviceMetadataResTo metadata;
+    private DeviceRuleIndex index;
+    private ProcessedEventVo processedEvent;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        inputEvent = BenchmarkData.inputEvent(readingsPerEvent, valueType, Instant.parse("2024-05-01T12:00:00Z"), random);
+        inputEventVo = InputEventVoMapper.MapFrom(inputEvent);
+        metadata = BenchmarkData.metadata(rulesPerDevice, null);
+        index = DeviceRuleIndex.compile(metadata.rules());
+        processedEvent = ProcessedEventVoMapper.MapFrom(inputEventVo, metadata, index);
+    }
+
+    @Benchmark
+    public InputEventVo inputEventVoMapper() {
+        return InputEventVoMapper.MapFrom(inputEvent);
+    }
+
+    @Benchmark
+    public ProcessedEventVo processedEventVoMapper() {
+        return ProcessedEventVoMapper.MapFrom(inputEventVo, metadata);
+    }
+
+    @Benchmark
+    public ProcessedEventVo processedEventVoMapperWithIndex() {
+        return ProcessedEventVoMapper.MapFrom(inputEventVo, metadata, index);
+    }
+
+    @Benchmark
+    public ProcessedEventTo processedEventToMapper() {
+        return ProcessedEventToMapper.MapFrom(processedEvent);
+    }
+
+    @Benchmark
+    public DeviceRuleIndex ruleIndexCompile() {
+        return DeviceRuleIndex.compile(metadata.rules());
+    }
+}
@@ -0,0 +1,96 @@
+package cz.muni.fi.pv217.benchmarks;
+
+import cz.muni.fi.pv217.entity.mappers.InputEventVoMapper;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventVoMapper;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.MetricEvaluator;
+import cz.muni.fi.pv217.service.hotpath.EventCarrier;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures MetricEvaluator on one device: the legacy per-metric range check, evaluation through the
+ * compiled rule evaluators and evaluation of a hot path carrier. Stateful rule types keep their state
+ * between invocations like they do for a device that keeps sending readings, and every invocation
+ * is one second after the previous one, so rate and window rules evaluate instead of skipping the
+ * readings as not newer than the last one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MetricEvaluatorBenchmark {
+
+    @Param({"1", "10", "50"})
+    int readingsPerEvent;
+
+    @Param({"1", "100", "500"})
+    int rulesPerDevice;
+
+    @Param({"RANGE", "RATE_OF_CHANGE", "HYSTERESIS", "WINDOWED"})
+    String ruleType;
+
+    private MetricEvaluator evaluator;
+    private DeviceRuleIndex index;
+    private ProcessedEventVo event;
+    private EventCarrier carrier;
+    private long timestampMillis;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        InputEventVo input = InputEventVoMapper.MapFrom(BenchmarkData.inputEvent(
+            readingsPerEvent, BenchmarkData.ValueType.DOUBLE, Instant.parse("2024-05-01T12:00:00Z"), random));
+        DeviceMetadataResTo metadata = BenchmarkData.metadata(rulesPerDevice, ruleType);
+
+        evaluator = new MetricEvaluator();
+        index = DeviceRuleIndex.compile(metadata.rules());
+        event = ProcessedEventVoMapper.MapFrom(input, metadata, index);
+        carrier = new EventCarrier();
+        carrier.load(input, index);
+        timestampMillis = input.getTimestamp().toEpochMilli();
+    }
+
+    @Benchmark
+    public ProcessedEventVo processRanges() {
+        evaluator.process(event);
+        return event;
+    }
+
+    @Benchmark
+    public ProcessedEventVo processWithIndex() {
+        event.setTimestamp(nextTimestamp());
+        evaluator.process(event, index);
+        return event;
+    }
+
+    @Benchmark
+    public EventCarrier processCarrier() {
+        carrier.setTimestamp(nextTimestamp());
+        evaluator.process(carrier, index);
+        return carrier;
+    }
+
+    private Instant nextTimestamp() {
+        timestampMillis += 1000;
+        return Instant.ofEpochMilli(timestampMillis);
+    }
+}
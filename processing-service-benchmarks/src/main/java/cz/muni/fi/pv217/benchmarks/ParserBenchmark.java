@@ -0,0 +1,64 @@
+package cz.muni.fi.pv217.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import cz.muni.fi.pv217.entity.mappers.InputEventParser;
+import cz.muni.fi.pv217.entity.mappers.InputEventVoMapper;
+import cz.muni.fi.pv217.entity.to.InputEventTo;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding one raw telemetry message through data binding into InputEventTo followed by
+ * InputEventVoMapper against the streaming InputEventParser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ParserBenchmark {
+
+    @Param({"1", "10", "50"})
+    int readingsPerEvent;
+
+    @Param({"DOUBLE", "STRING"})
+    BenchmarkData.ValueType valueType;
+
+    private ObjectReader eventReader;
+    private byte[] message;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        eventReader = objectMapper.readerFor(InputEventTo.class);
+        message = BenchmarkData.rawEvent(readingsPerEvent, valueType, Instant.parse("2024-05-01T12:00:00Z"), new Random(42));
+    }
+
+    @Benchmark
+    public InputEventVo dataBinding() throws IOException {
+        InputEventTo event = eventReader.readValue(message);
+        return InputEventVoMapper.MapFrom(event);
+    }
+
+    @Benchmark
+    public InputEventVo streamingParser() throws IOException {
+        return InputEventParser.Parse(message);
+    }
+}
@@ -0,0 +1,98 @@
+package cz.muni.fi.pv217.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures BatchDecoder on whole batches, sequentially and split across the decoder pool.
+ * Used to pick processing.decode.parallel-threshold: the threshold belongs where the parallel
+ * variant starts to beat the sequential one on the target hardware.
+ * Lives in the controller package to configure the decoder the way the unit tests do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class BatchDecoderBenchmark {
+
+    @Param({"64", "256", "512", "2048"})
+    int batchSize;
+
+    @Param({"10"})
+    int readingsPerEvent;
+
+    private BatchDecoder sequential;
+    private BatchDecoder parallel;
+    private List<byte[]> batch;
+
+    @Setup
+    public void setUp() {
+        sequential = decoder(Integer.MAX_VALUE);
+        parallel = decoder(1);
+
+        Instant timestamp = Instant.parse("2024-05-01T12:00:00Z");
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(rawEvent(UUID.randomUUID(), timestamp.plusSeconds(i), i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sequential.shutdown();
+        parallel.shutdown();
+    }
+
+    @Benchmark
+    public BatchDecoder.DecodedBatch sequential() {
+        return sequential.decode(batch);
+    }
+
+    @Benchmark
+    public BatchDecoder.DecodedBatch parallel() {
+        return parallel.decode(batch);
+    }
+
+    private static BatchDecoder decoder(int parallelThreshold) {
+        BatchDecoder decoder = new BatchDecoder();
+        decoder.parallelThreshold = parallelThreshold;
+        decoder.threads = Optional.empty();
+        decoder.init();
+        return decoder;
+    }
+
+    private byte[] rawEvent(UUID deviceId, Instant timestamp, int seed) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"deviceId\":\"").append(deviceId)
+            .append("\",\"timestamp\":\"").append(timestamp)
+            .append("\",\"readings\":[");
+        for (int i = 0; i < readingsPerEvent; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"metric-").append(i).append("\":").append(10.0 + (seed + i) % 20).append('}');
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
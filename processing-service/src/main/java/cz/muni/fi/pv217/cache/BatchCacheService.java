@@ -7,17 +7,30 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import cz.muni.fi.pv217.entity.vo.InputEventVo;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.value.ValueCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for caching batch data in Redis.
  * Stores the list of InputEventVo objects associated with a batch ID.
+ * <p>
+ * With processing.batch-store.local the batches are kept in memory of this instance instead.
+ * That is only correct when metadata responses are routed back to the instance that sent the
+ * request (processing.metadata.reply-topic), otherwise another instance cannot find the batch.
+ * Batches whose response never arrived are pruned every minute once they reach the Redis TTL.
  */
 @ApplicationScoped
 public class BatchCacheService {
@@ -25,9 +38,20 @@ public class BatchCacheService {
     private static final Logger LOG = LoggerFactory.getLogger(BatchCacheService.class);
     private static final Duration CACHE_TTL = Duration.ofMinutes(10);
     private static final String KEY_PREFIX = "batch:";
+    private static final int MAX_LOCAL_BATCHES = 10_000;
+    private static final long PRUNE_INTERVAL_SECONDS = 60;
 
     private final ValueCommands<String, String> commands;
     private final ObjectMapper objectMapper;
+    private final ConcurrentMap<String, LocalBatch> localBatches = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "processing.batch-store.local", defaultValue = "false")
+    boolean local;
+
+    private ScheduledExecutorService pruner;
+
+    private record LocalBatch(List<InputEventVo> events, long storedAt) {
+    }
 
     @Inject
     public BatchCacheService(RedisDataSource redisDataSource, ObjectMapper objectMapper) {
@@ -37,6 +61,27 @@ public class BatchCacheService {
         this.objectMapper.registerModule(new JavaTimeModule());
     }
 
+    @PostConstruct
+    void init() {
+        if (!local) {
+            return;
+        }
+        pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-store-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pruner.scheduleWithFixedDelay(() -> pruneLocalBatches(System.nanoTime()),
+            PRUNE_INTERVAL_SECONDS, PRUNE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (pruner != null) {
+            pruner.shutdownNow();
+        }
+    }
+
     /**
      * Stores a batch of events in Redis cache with the given batch ID.
      *
@@ -52,6 +97,11 @@ public class BatchCacheService {
             LOG.warn("Storing empty batch for batch ID: {}", batchId);
         }
 
+        if (local) {
+            storeLocally(batchId, events);
+            return;
+        }
+
         try {
             String key = KEY_PREFIX + batchId;
             String jsonValue = objectMapper.writeValueAsString(events);
@@ -76,6 +126,15 @@ public class BatchCacheService {
             return null;
         }
 
+        if (local) {
+            LocalBatch batch = localBatches.get(batchId);
+            if (batch == null) {
+                LOG.warn("No batch found in local store for batch ID: {}", batchId);
+                return null;
+            }
+            return batch.events();
+        }
+
         try {
             String key = KEY_PREFIX + batchId;
             String jsonValue = commands.get(key);
@@ -111,6 +170,11 @@ public class BatchCacheService {
             return;
         }
 
+        if (local) {
+            localBatches.remove(batchId);
+            return;
+        }
+
         try {
             String key = KEY_PREFIX + batchId;
             commands.getdel(key);
@@ -119,5 +183,27 @@ public class BatchCacheService {
             LOG.error("Failed to remove batch {} from Redis. Error: {}", batchId, e.getMessage(), e);
         }
     }
-}
 
+    private void storeLocally(String batchId, List<InputEventVo> events) {
+        long now = System.nanoTime();
+        if (localBatches.size() >= MAX_LOCAL_BATCHES) {
+            pruneLocalBatches(now);
+        }
+        localBatches.put(batchId, new LocalBatch(events != null ? events : List.of(), now));
+        LOG.debug("Stored batch {} with {} events in local store", batchId, events != null ? events.size() : 0);
+    }
+
+    /**
+     * Drops the locally stored batches older than the Redis TTL, their responses never arrived.
+     *
+     * @param now The current System.nanoTime()
+     */
+    void pruneLocalBatches(long now) {
+        int before = localBatches.size();
+        localBatches.values().removeIf(batch -> now - batch.storedAt() > CACHE_TTL.toNanos());
+        int pruned = before - localBatches.size();
+        if (pruned > 0) {
+            LOG.warn("Pruned {} locally stored batches whose metadata response never arrived", pruned);
+        }
+    }
+}
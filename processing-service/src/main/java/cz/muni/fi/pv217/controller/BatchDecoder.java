@@ -0,0 +1,171 @@
+package cz.muni.fi.pv217.controller;
+
+import cz.muni.fi.pv217.entity.mappers.InputEventParser;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes batches of raw telemetry messages.
+ * Small batches are parsed on the calling thread. Batches at or above the threshold are split
+ * into contiguous chunks parsed in parallel on a bounded pool sized to the available cores;
+ * the calling thread parses the first chunk itself and the chunks are joined in order,
+ * so the events keep the offset order of the batch. The threshold never exceeds the poll size,
+ * and chunks that do not fit the bounded queue of the pool are parsed on the calling thread.
+ */
+@ApplicationScoped
+public class BatchDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchDecoder.class);
+
+    @ConfigProperty(name = "processing.decode.parallel-threshold", defaultValue = "256")
+    int parallelThreshold;
+
+    @ConfigProperty(name = "mp.messaging.incoming.sensor-ingest.max.poll.records", defaultValue = "500")
+    int maxPollRecords;
+
+    @ConfigProperty(name = "processing.decode.threads")
+    Optional<Integer> threads;
+
+    ThreadPoolExecutor pool;
+    private int parallelism;
+
+    /**
+     * Parsed events of a batch in offset order and the number of messages that failed to parse.
+     */
+    public record DecodedBatch(List<InputEventVo> events, int failed) {
+    }
+
+    @PostConstruct
+    void init() {
+        parallelism = threads.orElse(Runtime.getRuntime().availableProcessors());
+        if (parallelThreshold > maxPollRecords) {
+            // A larger threshold would never be reached, no poll holds more records
+            LOG.warn("processing.decode.parallel-threshold {} exceeds max.poll.records {}, using {}",
+                    parallelThreshold, maxPollRecords, maxPollRecords);
+            parallelThreshold = maxPollRecords;
+        }
+        if (parallelism > 1) {
+            // One poll at a time is decoded, its chunks always fit the queue unless the pool is stuck
+            pool = new ThreadPoolExecutor(parallelism - 1, parallelism - 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(parallelism * 2), new DecoderThreadFactory());
+        }
+        LOG.info("BatchDecoder uses {} threads for batches of at least {} messages", parallelism, parallelThreshold);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Parses a batch of raw messages, in parallel when the batch is large enough.
+     *
+     * @param messages The raw JSON messages in offset order
+     * @return The parsed events in offset order
+     */
+    public DecodedBatch decode(List<byte[]> messages) {
+        if (pool == null || messages.size() < parallelThreshold) {
+            return decodeChunk(messages, 0, messages.size());
+        }
+
+        int chunks = Math.min(parallelism, messages.size());
+        int chunkSize = (messages.size() + chunks - 1) / chunks;
+        List<Future<DecodedBatch>> pending = new ArrayList<>(chunks - 1);
+        try {
+            for (int start = chunkSize; start < messages.size(); start += chunkSize) {
+                int from = start;
+                int to = Math.min(start + chunkSize, messages.size());
+                pending.add(pool.submit(() -> decodeChunk(messages, from, to)));
+            }
+        } catch (RuntimeException e) {
+            // Pool is shutting down or saturated, decode the rest on this thread
+            LOG.warn("Could not submit decode chunks, decoding batch on the consumer thread. Error: {}", e.getMessage());
+            pending.forEach(future -> future.cancel(true));
+            return decodeChunk(messages, 0, messages.size());
+        }
+
+        DecodedBatch first = decodeChunk(messages, 0, Math.min(chunkSize, messages.size()));
+        List<InputEventVo> events = new ArrayList<>(messages.size());
+        events.addAll(first.events());
+        int failed = first.failed();
+
+        int start = chunkSize;
+        for (Future<DecodedBatch> future : pending) {
+            DecodedBatch chunk;
+            try {
+                chunk = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                chunk = decodeChunk(messages, start, Math.min(start + chunkSize, messages.size()));
+            } catch (ExecutionException e) {
+                LOG.error("Decoding chunk failed, decoding it on the consumer thread. Error: {}", e.getMessage(), e);
+                chunk = decodeChunk(messages, start, Math.min(start + chunkSize, messages.size()));
+            }
+            events.addAll(chunk.events());
+            failed += chunk.failed();
+            start += chunkSize;
+        }
+        return new DecodedBatch(events, failed);
+    }
+
+    private static DecodedBatch decodeChunk(List<byte[]> messages, int from, int to) {
+        List<InputEventVo> events = new ArrayList<>(to - from);
+        int failed = 0;
+        for (int i = from; i < to; i++) {
+            byte[] message = messages.get(i);
+            try {
+                events.add(InputEventParser.Parse(message));
+            } catch (IOException e) {
+                LOG.error("Failed to deserialize message: {}. Error: {}", asText(message), e.getMessage(), e);
+                failed++;
+            } catch (Exception e) {
+                LOG.error("Invalid message: {}. Error: {}", asText(message), e.getMessage());
+                failed++;
+            }
+        }
+        return new DecodedBatch(events, failed);
+    }
+
+    private static String asText(byte[] message) {
+        return message != null ? new String(message, StandardCharsets.UTF_8) : null;
+    }
+
+    private static final class DecoderThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "batch-decoder-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
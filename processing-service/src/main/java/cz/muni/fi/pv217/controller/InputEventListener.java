@@ -1,25 +1,30 @@
 package cz.muni.fi.pv217.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import cz.muni.fi.pv217.entity.to.InputEventTo;
-import cz.muni.fi.pv217.service.ProcessingOrchestrator;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.service.batching.AdaptiveBatchController;
+import cz.muni.fi.pv217.service.batching.BatchAcknowledgement;
+import cz.muni.fi.pv217.service.batching.MicroBatchAccumulator;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.annotation.Blocking;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Acknowledgment;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * This class is responsible for listening to the "raw-telemetry" topic and processing incoming events in batches.
- * It consumes batches of messages from Kafka, deserializes them, and passes them to the ProcessingOrchestrator.
+ * It consumes batches of raw messages from Kafka, parses them, and passes them to the MicroBatchAccumulator,
+ * which forms enrichment batches for the ProcessingOrchestrator.
  * Batch processing helps reduce the load on the DeviceService by making batched API calls.
  */
 @ApplicationScoped
@@ -28,10 +33,13 @@ public class InputEventListener {
     private static final Logger LOG = LoggerFactory.getLogger(InputEventListener.class);
 
     @Inject
-    ProcessingOrchestrator orchestrator;
+    BatchDecoder decoder;
 
     @Inject
-    ObjectMapper objectMapper;
+    MicroBatchAccumulator accumulator;
+
+    @Inject
+    AdaptiveBatchController batchController;
 
     void onStart(@Observes StartupEvent ev) {
         LOG.info("InputEventListener is starting up and ready to consume batches from raw-telemetry topic.");
@@ -39,52 +47,61 @@ public class InputEventListener {
 
     /**
      * Consumes batches of messages from the "sensor-ingest" channel (raw-telemetry topic).
-     * Messages are expected to be JSON strings that can be deserialized to InputEventTo.
+     * Messages are raw UTF-8 JSON bytes parsed by a streaming parser straight into InputEventVo,
+     * validation happens in the same pass. Large batches are split and parsed in parallel.
      * Processing in batches allows for more efficient calls to external services like DeviceService.
+     * <p>
+     * The method returns as soon as the events are handed over, the records are acknowledged
+     * only after their enrichment batch has been processed and published, so offsets are never
+     * committed for events that are still in flight. Polls that cannot be handed over, and batches
+     * that fail later on, are negatively acknowledged.
+     * <p>
+     * Runs on the worker pool as an ordered blocking method, one poll at a time in offset order.
+     * Virtual threads are not used here, their concurrency is not limited per channel.
      *
-     * @param messages The batch of JSON messages from Kafka
+     * @param batch The batch of raw JSON messages from Kafka
+     * @return Completed stage, acknowledgement happens when the enrichment completes or fails
      */
     @Timed("input_event_batch_processing_time")
     @Counted("input_event_batch_count")
     @Incoming("sensor-ingest")
-    public void onInputEventBatch(List<String> messages) {
+    @Acknowledgment(Acknowledgment.Strategy.MANUAL)
+    @Blocking
+    public CompletionStage<Void> onInputEventBatch(Message<List<byte[]>> batch) {
+        List<byte[]> messages = batch.getPayload();
         if (messages == null || messages.isEmpty()) {
             LOG.debug("Received empty batch, skipping processing");
-            return;
+            return batch.ack();
         }
 
         LOG.info("Received batch of {} messages from Kafka", messages.size());
+        // Taken on receipt, so the commit lag of the records includes decoding and accumulation
+        BatchAcknowledgement acknowledgement = BatchAcknowledgement.of(batch);
+        batchController.onPoll(messages.size());
 
-        List<InputEventTo> events = new ArrayList<>();
-        List<String> failedMessages = new ArrayList<>();
+        // Parse all messages in the batch, large batches are parsed in parallel
+        BatchDecoder.DecodedBatch decoded = decoder.decode(messages);
+        List<InputEventVo> events = decoded.events();
+        int failedMessages = decoded.failed();
 
-        // Deserialize all messages in the batch
-        for (String message : messages) {
-            try {
-                InputEventTo event = objectMapper.readValue(message, InputEventTo.class);
-                events.add(event);
-            } catch (JsonProcessingException e) {
-                LOG.error("Failed to deserialize message: {}. Error: {}", message, e.getMessage(), e);
-                failedMessages.add(message);
-            } catch (Exception e) {
-                LOG.error("Error deserializing message: {}. Error: {}", message, e.getMessage(), e);
-                failedMessages.add(message);
-            }
+        if (failedMessages > 0) {
+            LOG.warn("Failed to deserialize {} out of {} messages in batch",
+                    failedMessages, messages.size());
         }
 
-        // Process the batch of successfully deserialized events
-        if (!events.isEmpty()) {
-            try {
-                orchestrator.processBatch(events);
-                LOG.info("Successfully processed batch of {} events", events.size());
-            } catch (Exception e) {
-                LOG.error("Error processing batch of {} events. Error: {}", events.size(), e.getMessage(), e);
-            }
+        // Nothing to process, the invalid records are skipped
+        if (events.isEmpty()) {
+            return batch.ack();
         }
 
-        if (!failedMessages.isEmpty()) {
-            LOG.warn("Failed to deserialize {} out of {} messages in batch",
-                    failedMessages.size(), messages.size());
+        // Hand the parsed events to the accumulator, which forms enrichment batches of the adaptive size
+        try {
+            accumulator.add(events, acknowledgement);
+            LOG.info("Successfully accumulated batch of {} events", events.size());
+        } catch (Exception e) {
+            LOG.error("Error processing batch of {} events. Error: {}", events.size(), e.getMessage(), e);
+            acknowledgement.nack(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
 }
@@ -2,10 +2,16 @@ package cz.muni.fi.pv217.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import cz.muni.fi.pv217.entity.to.ProcessedEventTo;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
@@ -14,9 +20,21 @@ import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
 /**
  * This class is responsible for publishing processed events to the "processing-data" Kafka topic.
- * It serializes ProcessedEventTo objects to JSON and sends them to the Kafka stream.
+ * It serializes ProcessedEventTo objects to UTF-8 JSON bytes and sends them to the Kafka stream.
+ * <p>
+ * Batched publishes do not block, they return a stage completed once the broker has acknowledged
+ * or rejected every record of the batch. How long that takes is bounded by the producer's
+ * delivery.timeout.ms, so the reported count is final and a record is never counted as failed
+ * while it may still be delivered.
  */
 @ApplicationScoped
 public class ProcessedEventPublisher {
@@ -25,11 +43,35 @@ public class ProcessedEventPublisher {
 
     @Inject
     @Channel("processed-data-stream")
-    Emitter<String> emitter;
+    Emitter<byte[]> emitter;
 
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    MeterRegistry registry;
+
+    private ObjectWriter eventWriter;
+    private Timer batchAckTimer;
+    private Counter publishedEvents;
+    private Counter failedEvents;
+    private DistributionSummary batchSize;
+
+    @PostConstruct
+    void init() {
+        // Resolve the serializer once instead of on every write
+        eventWriter = objectMapper.writerFor(ProcessedEventTo.class);
+        batchAckTimer = Timer.builder("processed_event_batch_ack_time")
+            .description("Time from the first send of a batch until all records are acknowledged")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        publishedEvents = registry.counter("processed_event_batch_published_events");
+        failedEvents = registry.counter("processed_event_batch_failed_events");
+        batchSize = DistributionSummary.builder("processed_event_batch_size")
+            .description("Number of processed events sent per batch")
+            .register(registry);
+    }
+
     void onStart(@Observes StartupEvent ev) {
         LOG.info("ProcessedEventPublisher is starting up and ready to publish to processing-data topic.");
     }
@@ -48,8 +90,7 @@ public class ProcessedEventPublisher {
         }
 
         try {
-            String message = objectMapper.writeValueAsString(event);
-            emitter.send(message);
+            emitter.send(eventWriter.writeValueAsBytes(event));
             LOG.debug("Successfully published processed event for device: {} at timestamp: {}",
                      event.getDeviceId(), event.getTimestamp());
         } catch (JsonProcessingException e) {
@@ -60,4 +101,100 @@ public class ProcessedEventPublisher {
                      event.getDeviceId(), e.getMessage(), e);
         }
     }
+
+    /**
+     * Publishes a whole batch of processed events to the Kafka topic.
+     * Events are serialized straight to bytes and sent back to back without waiting for
+     * individual acknowledgements. Events that fail to serialize are skipped and logged,
+     * the rest of the batch is still sent.
+     *
+     * @param events The processed events to publish
+     * @return Stage completed with the number of events acknowledged by the broker
+     */
+    @Timed("processed_event_batch_publishing_time")
+    @Counted("processed_event_batch_publish_count")
+    public CompletionStage<Integer> publishBatch(List<ProcessedEventTo> events) {
+        if (events == null || events.isEmpty()) {
+            LOG.debug("Attempted to publish null or empty batch, skipping");
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<byte[]> messages = new ArrayList<>(events.size());
+        for (ProcessedEventTo event : events) {
+            if (event == null) {
+                LOG.warn("Skipping null event in batch");
+                continue;
+            }
+            try {
+                messages.add(eventWriter.writeValueAsBytes(event));
+            } catch (IOException e) {
+                failedEvents.increment();
+                LOG.error("Failed to serialize processed event for device: {}. Error: {}",
+                         event.getDeviceId(), e.getMessage(), e);
+            }
+        }
+
+        return sendAll(messages);
+    }
+
+    /**
+     * Publishes processed events that were already serialized to JSON, e.g. by the hot path encoder.
+     *
+     * @param messages The UTF-8 JSON messages to publish
+     * @return Stage completed with the number of events acknowledged by the broker
+     */
+    @Timed("processed_event_batch_publishing_time")
+    @Counted("processed_event_batch_publish_count")
+    public CompletionStage<Integer> publishSerialized(List<byte[]> messages) {
+        if (messages == null || messages.isEmpty()) {
+            LOG.debug("Attempted to publish null or empty batch, skipping");
+            return CompletableFuture.completedFuture(0);
+        }
+        return sendAll(messages);
+    }
+
+    /**
+     * Sends already serialized messages and collects their acknowledgements without blocking.
+     *
+     * @param messages The messages to send
+     * @return Stage completed with the number of messages acknowledged by the broker
+     */
+    CompletionStage<Integer> sendAll(List<byte[]> messages) {
+        if (messages.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> acks = new ArrayList<>(messages.size());
+        for (byte[] message : messages) {
+            try {
+                acks.add(emitter.send(message).toCompletableFuture()
+                    .handle((ignored, failure) -> failure == null));
+            } catch (Exception e) {
+                failedEvents.increment();
+                LOG.error("Error sending processed event to Kafka. Error: {}", e.getMessage(), e);
+            }
+        }
+        batchSize.record(messages.size());
+
+        // The individual stages never fail, a rejected record only counts as not acknowledged
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> {
+                int acknowledged = 0;
+                for (CompletableFuture<Boolean> ack : acks) {
+                    if (ack.join()) {
+                        acknowledged++;
+                    }
+                }
+                batchAckTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                publishedEvents.increment(acknowledged);
+                failedEvents.increment(acks.size() - acknowledged);
+                if (acknowledged < acks.size()) {
+                    LOG.error("Failed to publish {} out of a batch of {} processed events",
+                              acks.size() - acknowledged, messages.size());
+                }
+                LOG.debug("Published batch of {} processed events, {} acknowledged", messages.size(), acknowledged);
+                return acknowledged;
+            });
+    }
 }
@@ -0,0 +1,154 @@
+package cz.muni.fi.pv217.entity.mappers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import cz.muni.fi.pv217.entity.vo.InputEventReading;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streaming parser of raw telemetry messages.
+ * Builds the {@link InputEventVo} straight from the Kafka record bytes in a single pass,
+ * applying the same validation as {@link InputEventVoMapper} without the intermediate
+ * String, {@code InputEventTo} and reading maps.
+ */
+public class InputEventParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Parses a raw telemetry message.
+     * The timestamp is accepted as an ISO-8601 string or as epoch seconds, reading values
+     * as JSON numbers or numeric strings.
+     *
+     * @param message UTF-8 encoded JSON message
+     * @return The parsed event
+     * @throws IllegalArgumentException if the event is missing required data
+     * @throws IOException if the message is not valid JSON
+     */
+    public static InputEventVo Parse(byte[] message) throws IOException {
+        if (message == null || message.length == 0) {
+            throw new IllegalArgumentException("Event cannot be null");
+        }
+
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                throw new IllegalArgumentException("Event cannot be null");
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Event must be a JSON object");
+            }
+
+            UUID deviceId = null;
+            Instant timestamp = null;
+            List<InputEventReading> readings = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "deviceId" -> deviceId = parseDeviceId(parser);
+                    case "timestamp" -> timestamp = parseTimestamp(parser);
+                    case "readings" -> readings = parseReadings(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (deviceId == null) {
+                throw new IllegalArgumentException("Device ID cannot be null");
+            }
+            if (timestamp == null) {
+                throw new IllegalArgumentException("Timestamp cannot be null");
+            }
+            if (readings == null || readings.isEmpty()) {
+                throw new IllegalArgumentException("Readings cannot be null");
+            }
+
+            return InputEventVo.builder()
+                .deviceId(deviceId)
+                .timestamp(timestamp)
+                .readings(readings)
+                .build();
+        }
+    }
+
+    private static UUID parseDeviceId(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("Device ID must be a string");
+        }
+        return UUID.fromString(parser.getText());
+    }
+
+    private static Instant parseTimestamp(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                try {
+                    return Instant.parse(parser.getText());
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid timestamp: " + parser.getText());
+                }
+            case VALUE_NUMBER_INT:
+                return Instant.ofEpochSecond(parser.getLongValue());
+            case VALUE_NUMBER_FLOAT:
+                // Fractional epoch seconds, same as the default Instant deserializer
+                BigDecimal seconds = parser.getDecimalValue();
+                long wholeSeconds = seconds.longValue();
+                int nanos = seconds.subtract(BigDecimal.valueOf(wholeSeconds)).movePointRight(9).intValue();
+                return Instant.ofEpochSecond(wholeSeconds, nanos);
+            default:
+                throw new IllegalArgumentException("Invalid timestamp");
+        }
+    }
+
+    private static List<InputEventReading> parseReadings(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Readings must be an array");
+        }
+
+        List<InputEventReading> readings = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Reading cannot be null");
+            }
+            int before = readings.size();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String metricName = parser.currentName();
+                parser.nextToken();
+                readings.add(InputEventReading.builder()
+                    .metricName(metricName)
+                    .value(parseValue(parser))
+                    .build());
+            }
+            if (readings.size() == before) {
+                throw new IllegalArgumentException("Reading cannot be null");
+            }
+        }
+        return readings;
+    }
+
+    private static Double parseValue(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_STRING -> Double.parseDouble(parser.getText());
+            case VALUE_NULL -> throw new IllegalArgumentException("Reading value cannot be null");
+            default -> throw new IllegalArgumentException("Reading value must be a number");
+        };
+    }
+}
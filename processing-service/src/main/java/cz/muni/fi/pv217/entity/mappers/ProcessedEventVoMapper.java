@@ -5,6 +5,7 @@ import cz.muni.fi.pv217.entity.vo.InputEventReading;
 import cz.muni.fi.pv217.entity.vo.InputEventVo;
 import cz.muni.fi.pv217.entity.vo.ProcessedEventMetric;
 import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,25 +26,38 @@ public class ProcessedEventVoMapper {
             throw new IllegalArgumentException("Readings list cannot be null");
         }
 
+        return MapFrom(event, metadata, DeviceRuleIndex.compile(metadata.rules()));
+    }
+
+    /**
+     * Maps the event using an already compiled rule index of the device.
+     * The index is shared by all events of the same device, so rules are neither
+     * scanned nor rebuilt per event.
+     */
+    public static ProcessedEventVo MapFrom(InputEventVo event, DeviceMetadataResTo metadata, DeviceRuleIndex index) {
+        // Validate inputs
+        if (event == null) {
+            throw new IllegalArgumentException("Event cannot be null");
+        }
+        if (metadata == null) {
+            throw new IllegalArgumentException("Metadata cannot be null");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("Rule index cannot be null");
+        }
+        if (event.getReadings() == null) {
+            throw new IllegalArgumentException("Readings list cannot be null");
+        }
+
         // Process each reading
-        List<ProcessedEventMetric> metrics = new ArrayList<>();
+        List<ProcessedEventMetric> metrics = new ArrayList<>(event.getReadings().size());
         for (InputEventReading reading : event.getReadings()) {
             if (reading == null) {
                 throw new IllegalArgumentException("Reading cannot be null");
             }
-            ProcessedEventMetric metric = createMetric(reading, metadata.rules());
-            metrics.add(metric);
+            metrics.add(createMetric(reading, index));
         }
 
-        // Map rules from metadata
-        List<ProcessedEventVo.DeviceRule> deviceRules = metadata.rules().stream()
-                .map(rule -> ProcessedEventVo.DeviceRule.builder()
-                        .ruleName(rule.rule_name())
-                        .from(rule.from())
-                        .to(rule.to())
-                        .build())
-                .toList();
-
         // Build and return result with metadata
         return ProcessedEventVo.builder()
                 .deviceId(event.getDeviceId())
@@ -53,36 +67,26 @@ public class ProcessedEventVoMapper {
                 .deviceName(metadata.deviceName())
                 .deviceType(metadata.deviceType())
                 .deviceStatus(metadata.deviceStatus())
-                .rules(deviceRules)
+                .rules(index.deviceRules())
                 .build();
     }
 
-    private static ProcessedEventMetric createMetric(InputEventReading reading, List<DeviceMetadataResTo.Rule> rules) {
+    private static ProcessedEventMetric createMetric(InputEventReading reading, DeviceRuleIndex index) {
         // Find matching rule
-        DeviceMetadataResTo.Rule rule = findMatchingRule(reading.getMetricName(), rules);
+        int slot = index.slotOf(reading.getMetricName());
 
         // Build metric with rule data if available
         ProcessedEventMetric.ProcessedEventMetricBuilder builder = ProcessedEventMetric.builder()
                 .metricName(reading.getMetricName())
-                .value(reading.getValue());
+                .value(reading.getValue())
+                .ruleSlot(slot);
 
-        if (rule != null) {
+        if (slot != DeviceRuleIndex.NO_RULE) {
+            DeviceMetadataResTo.Rule rule = index.rule(slot);
             builder.from(rule.from())
                    .to(rule.to());
         }
 
         return builder.build();
     }
-
-    private static DeviceMetadataResTo.Rule findMatchingRule(String metricName, List<DeviceMetadataResTo.Rule> rules) {
-        for (DeviceMetadataResTo.Rule rule : rules) {
-            if (rule == null) {
-                throw new IllegalArgumentException("Rule cannot be null");
-            }
-            if (metricName != null && metricName.equals(rule.rule_name())) {
-                return rule;
-            }
-        }
-        return null;
-    }
 }
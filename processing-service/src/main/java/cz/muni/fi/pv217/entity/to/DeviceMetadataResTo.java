@@ -1,5 +1,6 @@
 package cz.muni.fi.pv217.entity.to;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import java.util.List;
 import java.util.Map;
 
@@ -8,12 +9,35 @@ public record DeviceMetadataResTo(
     String deviceName,
     String deviceType,
     String deviceStatus,
-    List<Rule> rules
+    List<Rule> rules,
+    // Version of the device in device-management-service, changes with the device and its rules
+    Long version
 ) {
+    @JsonCreator
+    public DeviceMetadataResTo {
+    }
+
+    public DeviceMetadataResTo(Map<String, Double> location, String deviceName, String deviceType,
+                               String deviceStatus, List<Rule> rules) {
+        this(location, deviceName, deviceType, deviceStatus, rules, null);
+    }
+
     public record Rule(
         String rule_name,
         Double from,
-        Double to
+        Double to,
+        // Evaluation type and its parameters, a missing type means a static range rule
+        String rule_type,
+        Double hysteresis,
+        Integer window_seconds,
+        Integer violation_count
     ) {
+        @JsonCreator
+        public Rule {
+        }
+
+        public Rule(String rule_name, Double from, Double to) {
+            this(rule_name, from, to, null, null, null, null);
+        }
     }
 }
@@ -0,0 +1,30 @@
+package cz.muni.fi.pv217.entity.to;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Aggregate of the readings of one metric of a device over a closed event-time window.
+ */
+@Builder
+@Getter
+@Setter
+public class MetricAggregateTo {
+    UUID deviceId;
+    // Latest known location of the device
+    Map<String, Double> location;
+    String metricName;
+    // TUMBLING or SLIDING
+    String windowType;
+    Instant windowStart;
+    Instant windowEnd;
+    long count;
+    long violationCount;
+    double min;
+    double max;
+    double avg;
+}
@@ -13,4 +13,8 @@ public class ProcessedEventMetric {
     private Double from;
     private Double to;
     private boolean isViolatingSafety;
+
+    // Slot of the matching rule in the device rule index, -1 when not resolved through an index
+    @Builder.Default
+    private int ruleSlot = -1;
 }
@@ -0,0 +1,68 @@
+package cz.muni.fi.pv217.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.muni.fi.pv217.kafka.dto.DeviceChangeMessage;
+import cz.muni.fi.pv217.service.MetricEvaluator;
+import cz.muni.fi.pv217.service.hotpath.ProcessedEventEncoder;
+import cz.muni.fi.pv217.service.rules.RuleIndexCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener for device change events from Kafka.
+ * Drops what this instance derived from the metadata of a changed device: the encoded metadata
+ * fragment on any change, the compiled rule index when a rule changed and the rule state as well
+ * when the device was deleted. Every instance reads all events, see the channel configuration.
+ */
+@ApplicationScoped
+public class DeviceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceChangeListener.class);
+
+    @Inject
+    RuleIndexCache ruleIndexCache;
+
+    @Inject
+    ProcessedEventEncoder encoder;
+
+    @Inject
+    MetricEvaluator evaluator;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    /**
+     * Consumes a device change event, only in-memory caches are touched so it runs on the consumer thread.
+     *
+     * @param message The JSON message from Kafka
+     */
+    @Incoming("device-change-events")
+    public void onDeviceChange(String message) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+        try {
+            DeviceChangeMessage change = objectMapper.readValue(message, DeviceChangeMessage.class);
+            if (change.deviceId() == null) {
+                LOG.warn("Received device change event without device ID, skipping");
+                return;
+            }
+
+            encoder.invalidate(change.deviceId());
+            if (change.isRuleChange() || change.isDeviceDeletion()) {
+                ruleIndexCache.invalidate(change.deviceId());
+            }
+            if (change.isDeviceDeletion()) {
+                evaluator.resetState(change.deviceId());
+            }
+            LOG.debug("Invalidated cached metadata of device {} after {} {}",
+                      change.deviceId(), change.entityType(), change.changeType());
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to deserialize device change event: {}. Error: {}", message, e.getMessage(), e);
+        }
+    }
+}
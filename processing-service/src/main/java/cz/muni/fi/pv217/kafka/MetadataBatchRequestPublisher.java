@@ -9,14 +9,18 @@ import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Optional;
+
 /**
  * Publisher for sending metadata batch requests to Kafka.
- * Publishes requests to the "metadata-batch-requests" topic.
+ * Publishes requests to the "metadata-batch-requests" topic, stamped with the reply topic
+ * of this instance so that the responses come back to the instance holding the batches.
  */
 @ApplicationScoped
 public class MetadataBatchRequestPublisher {
@@ -30,6 +34,9 @@ public class MetadataBatchRequestPublisher {
     @Inject
     ObjectMapper objectMapper;
 
+    @ConfigProperty(name = "processing.metadata.reply-topic")
+    Optional<String> replyTopic;
+
     void onStart(@Observes StartupEvent ev) {
         LOG.info("MetadataBatchRequestPublisher is starting up and ready to publish to metadata-batch-requests topic.");
     }
@@ -52,6 +59,10 @@ public class MetadataBatchRequestPublisher {
             return;
         }
 
+        if (request.replyTopic() == null && replyTopic.isPresent()) {
+            request = new MetadataBatchRequest(request.batchId(), request.deviceIds(), replyTopic.get());
+        }
+
         try {
             String message = objectMapper.writeValueAsString(request);
             emitter.send(message);
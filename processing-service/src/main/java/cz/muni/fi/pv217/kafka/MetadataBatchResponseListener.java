@@ -7,6 +7,7 @@ import cz.muni.fi.pv217.service.EventDataEnricher;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
@@ -35,12 +36,15 @@ public class MetadataBatchResponseListener {
 
     /**
      * Consumes metadata batch responses from Kafka and passes them to the enricher.
+     * Completing a batch reads the cache and publishes to Kafka, so responses are handled on virtual
+     * threads, up to smallrye.messaging.worker.&lt;virtual-thread&gt;.max-concurrency at once.
      *
      * @param message The JSON message from Kafka
      */
     @Timed("metadata_batch_response_processing_time")
     @Counted("metadata_batch_response_count")
     @Incoming("metadata-batch-responses")
+    @RunOnVirtualThread
     public void onMetadataBatchResponse(String message) {
         if (message == null || message.isEmpty()) {
             LOG.debug("Received empty message, skipping processing");
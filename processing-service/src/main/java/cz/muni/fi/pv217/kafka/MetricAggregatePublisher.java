@@ -0,0 +1,116 @@
+package cz.muni.fi.pv217.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import cz.muni.fi.pv217.entity.to.MetricAggregateTo;
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Publisher for sending closed window aggregates to Kafka.
+ * Publishes aggregates to the "metric-aggregates" topic keyed by device id, so the aggregates
+ * of a device stay in order on one partition. Rejected sends are counted and logged.
+ */
+@ApplicationScoped
+public class MetricAggregatePublisher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricAggregatePublisher.class);
+
+    @Inject
+    @Channel("metric-aggregates")
+    Emitter<String> emitter;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    private ObjectWriter aggregateWriter;
+    private Counter failedAggregates;
+
+    @PostConstruct
+    void init() {
+        aggregateWriter = objectMapper.writerFor(MetricAggregateTo.class);
+        failedAggregates = registry.counter("metric_aggregate_failed_count");
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        LOG.info("MetricAggregatePublisher is starting up and ready to publish to metric-aggregates topic.");
+    }
+
+    /**
+     * Publishes closed window aggregates to Kafka.
+     *
+     * @param aggregates The aggregates to publish
+     * @return Stage completed with the number of aggregates acknowledged by the broker
+     */
+    @Timed("metric_aggregate_publishing_time")
+    @Counted("metric_aggregate_publish_count")
+    public CompletionStage<Integer> publishAll(List<MetricAggregateTo> aggregates) {
+        if (aggregates == null || aggregates.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<CompletableFuture<Boolean>> acks = new ArrayList<>(aggregates.size());
+        for (MetricAggregateTo aggregate : aggregates) {
+            try {
+                acks.add(send(aggregate).handle((ignored, failure) -> {
+                    if (failure != null) {
+                        failedAggregates.increment();
+                        LOG.error("Kafka rejected {} aggregate of metric '{}' for device: {}. Error: {}",
+                                 aggregate.getWindowType(), aggregate.getMetricName(), aggregate.getDeviceId(),
+                                 failure.getMessage());
+                    }
+                    return failure == null;
+                }));
+            } catch (Exception e) {
+                failedAggregates.increment();
+                LOG.error("Error publishing {} aggregate of metric '{}' for device: {}. Error: {}",
+                         aggregate.getWindowType(), aggregate.getMetricName(), aggregate.getDeviceId(),
+                         e.getMessage(), e);
+            }
+        }
+        LOG.debug("Published {} metric aggregates", aggregates.size());
+
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> (int) acks.stream().filter(CompletableFuture::join).count());
+    }
+
+    private CompletableFuture<Void> send(MetricAggregateTo aggregate) throws JsonProcessingException {
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        OutgoingKafkaRecordMetadata<String> metadata = OutgoingKafkaRecordMetadata.<String>builder()
+            .withKey(aggregate.getDeviceId() != null ? aggregate.getDeviceId().toString() : null)
+            .build();
+        emitter.send(Message.of(aggregateWriter.writeValueAsString(aggregate))
+            .addMetadata(metadata)
+            .withAck(() -> {
+                ack.complete(null);
+                return CompletableFuture.completedFuture(null);
+            })
+            .withNack(failure -> {
+                ack.completeExceptionally(failure);
+                return CompletableFuture.completedFuture(null);
+            }));
+        return ack;
+    }
+}
@@ -0,0 +1,22 @@
+package cz.muni.fi.pv217.kafka.dto;
+
+import java.util.UUID;
+
+/**
+ * Change event of device-management-service received from the device-change-events topic.
+ * Carries no state, only which device changed and whether the device itself or one of its rules did.
+ */
+public record DeviceChangeMessage(
+    String entityType,
+    UUID entityId,
+    UUID deviceId,
+    String changeType
+) {
+    public boolean isRuleChange() {
+        return "RULE".equals(entityType);
+    }
+
+    public boolean isDeviceDeletion() {
+        return "DEVICE".equals(entityType) && "DELETED".equals(changeType);
+    }
+}
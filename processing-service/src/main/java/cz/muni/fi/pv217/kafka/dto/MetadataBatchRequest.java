@@ -4,11 +4,16 @@ import java.util.List;
 import java.util.UUID;
 
 /**
- * DTO for metadata batch request sent to Kafka topic "metadata-batch-requests"
+ * DTO for metadata batch request sent to Kafka topic "metadata-batch-requests".
+ * The reply topic names the topic of the requesting instance, when it is missing
+ * the response goes to the shared "metadata-batch-responses" topic.
  */
 public record MetadataBatchRequest(
     String batchId,
-    List<UUID> deviceIds
+    List<UUID> deviceIds,
+    String replyTopic
 ) {
+    public MetadataBatchRequest(String batchId, List<UUID> deviceIds) {
+        this(batchId, deviceIds, null);
+    }
 }
-
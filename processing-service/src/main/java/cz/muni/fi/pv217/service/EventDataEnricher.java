@@ -4,19 +4,40 @@ import cz.muni.fi.pv217.cache.BatchCacheService;
 import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
 import cz.muni.fi.pv217.controller.ProcessedEventPublisher;
 import cz.muni.fi.pv217.entity.mappers.ProcessedEventToMapper;
+import cz.muni.fi.pv217.entity.to.MetricAggregateTo;
 import cz.muni.fi.pv217.entity.to.ProcessedEventTo;
 import cz.muni.fi.pv217.entity.vo.InputEventVo;
 import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
 import cz.muni.fi.pv217.entity.mappers.ProcessedEventVoMapper;
 import cz.muni.fi.pv217.kafka.MetadataBatchRequestPublisher;
+import cz.muni.fi.pv217.kafka.MetricAggregatePublisher;
 import cz.muni.fi.pv217.kafka.dto.MetadataBatchRequest;
 import cz.muni.fi.pv217.kafka.dto.MetadataBatchResponse;
+import cz.muni.fi.pv217.service.aggregation.WindowAggregator;
+import cz.muni.fi.pv217.service.batching.AdaptiveBatchController;
+import cz.muni.fi.pv217.service.batching.BatchAcknowledgement;
+import cz.muni.fi.pv217.service.batching.BatchCompletionTracker;
+import cz.muni.fi.pv217.service.hotpath.BoundedPool;
+import cz.muni.fi.pv217.service.hotpath.EventCarrier;
+import cz.muni.fi.pv217.service.hotpath.ProcessedEventEncoder;
+import cz.muni.fi.pv217.service.metadata.MetadataRequestCoalescer;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import cz.muni.fi.pv217.service.rules.RuleIndexCache;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,19 +47,97 @@ public class EventDataEnricher {
 
     private static final Logger LOG = LoggerFactory.getLogger(EventDataEnricher.class);
 
+    // Reusable carriers for the hot path, one is borrowed for every batch
+    private static final int POOLED_CARRIERS = 64;
+
+    private static final long STALE_REQUEST_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long PRUNE_INTERVAL_SECONDS = 60;
+
+    /**
+     * Which processed events are published on processed-data-stream. With aggregation on, the window
+     * aggregates carry the readings, so only the events that violate a rule need to go out one by one.
+     */
+    public enum PublishedEvents {
+        ALL,
+        VIOLATIONS,
+        NONE
+    }
+
     private final BatchCacheService cacheService;
     private final MetadataBatchRequestPublisher requestPublisher;
     private final MetricEvaluator processor;
     private final ProcessedEventPublisher eventPublisher;
+    private final RuleIndexCache ruleIndexCache;
+    private final WindowAggregator aggregator;
+    private final MetricAggregatePublisher aggregatePublisher;
+    private final boolean aggregationEnabled;
+    private final PublishedEvents publishedEvents;
+    private final ProcessedEventEncoder encoder;
+    private final BoundedPool<EventCarrier> carriers = new BoundedPool<>(EventCarrier::new, POOLED_CARRIERS);
+    private final boolean hotPathEnabled;
+    private final AdaptiveBatchController batchController;
+    private final BatchCompletionTracker completionTracker;
+    private final MetadataRequestCoalescer coalescer;
+    private final boolean coalescingEnabled;
+    // Enriches batches whose coalesced metadata arrived, off the thread that completed the metadata,
+    // and prunes round trips of responses that never arrived
+    private final ScheduledExecutorService completionExecutor;
+    // Publish time of in-flight metadata requests, used to measure their round trip
+    private final ConcurrentMap<String, Long> requestedAt = new ConcurrentHashMap<>();
 
     public EventDataEnricher(BatchCacheService cacheService,
                              MetadataBatchRequestPublisher requestPublisher,
                              MetricEvaluator processor,
-                             ProcessedEventPublisher eventPublisher) {
+                             ProcessedEventPublisher eventPublisher,
+                             RuleIndexCache ruleIndexCache,
+                             WindowAggregator aggregator,
+                             MetricAggregatePublisher aggregatePublisher,
+                             @ConfigProperty(name = "processing.aggregation.enabled", defaultValue = "true")
+                             boolean aggregationEnabled,
+                             @ConfigProperty(name = "processing.publish.processed-events", defaultValue = "all")
+                             PublishedEvents publishedEvents,
+                             ProcessedEventEncoder encoder,
+                             @ConfigProperty(name = "processing.hot-path.enabled", defaultValue = "false")
+                             boolean hotPathEnabled,
+                             AdaptiveBatchController batchController,
+                             BatchCompletionTracker completionTracker,
+                             MetadataRequestCoalescer coalescer,
+                             @ConfigProperty(name = "processing.metadata.coalescing.enabled", defaultValue = "false")
+                             boolean coalescingEnabled,
+                             @ConfigProperty(name = "processing.metadata.completion-threads", defaultValue = "8")
+                             int completionThreads) {
         this.cacheService = cacheService;
         this.requestPublisher = requestPublisher;
         this.processor = processor;
         this.eventPublisher = eventPublisher;
+        this.ruleIndexCache = ruleIndexCache;
+        this.aggregator = aggregator;
+        this.aggregatePublisher = aggregatePublisher;
+        this.aggregationEnabled = aggregationEnabled;
+        if (!aggregationEnabled && publishedEvents != PublishedEvents.ALL) {
+            throw new IllegalArgumentException(
+                "processing.publish.processed-events=" + publishedEvents + " needs processing.aggregation.enabled");
+        }
+        this.publishedEvents = publishedEvents;
+        this.encoder = encoder;
+        this.hotPathEnabled = hotPathEnabled;
+        this.batchController = batchController;
+        this.completionTracker = completionTracker;
+        this.coalescer = coalescer;
+        this.coalescingEnabled = coalescingEnabled;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.completionExecutor = Executors.newScheduledThreadPool(completionThreads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-completion-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        completionExecutor.scheduleWithFixedDelay(this::pruneStaleRequests,
+            PRUNE_INTERVAL_SECONDS, PRUNE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        completionExecutor.shutdown();
     }
 
     /**
@@ -48,8 +147,23 @@ public class EventDataEnricher {
      * @param events The list of input events to enrich
      */
     public void enrichBatch(List<InputEventVo> events) {
+        enrichBatch(events, null);
+    }
+
+    /**
+     * Initiates batch enrichment and acknowledges the Kafka records of the batch once
+     * {@link #completeEnrichment(MetadataBatchResponse)} has published it. Records of a batch
+     * that cannot be published are negatively acknowledged.
+     *
+     * @param events The list of input events to enrich
+     * @param ack    Settles the Kafka records of the batch, may be null
+     */
+    public void enrichBatch(List<InputEventVo> events, BatchAcknowledgement ack) {
         if (events == null || events.isEmpty()) {
             LOG.warn("Received null or empty batch for enrichment");
+            if (ack != null) {
+                ack.ack();
+            }
             return;
         }
 
@@ -66,6 +180,20 @@ public class EventDataEnricher {
             .map(InputEventVo::getDeviceId)
             .collect(Collectors.toSet());
 
+        requestedAt.put(batchId, System.nanoTime());
+        // Register before the request goes out, the response may arrive on another thread right away
+        completionTracker.register(batchId, ack);
+
+        if (coalescingEnabled) {
+            // Devices already requested by other batches are not requested again
+            LOG.info("Requesting metadata for batch {} with {} unique devices through the coalescer",
+                     batchId, uniqueDeviceIds.size());
+            // One response completes many batches, each of them is enriched on the completion pool
+            coalescer.request(uniqueDeviceIds).whenCompleteAsync((metadataMap, failure) ->
+                onCoalescedMetadata(batchId, metadataMap, failure), completionExecutor);
+            return;
+        }
+
         LOG.info("Publishing metadata request for batch {} with {} unique devices",
                  batchId, uniqueDeviceIds.size());
 
@@ -79,6 +207,21 @@ public class EventDataEnricher {
         LOG.debug("Metadata request published for batch {}", batchId);
     }
 
+    /**
+     * Continues a batch whose metadata was requested through the coalescer.
+     * A batch whose request timed out or got no metadata is failed, so its records are rejected instead
+     * of left pending or committed as unknown devices.
+     */
+    private void onCoalescedMetadata(String batchId, Map<UUID, DeviceMetadataResTo> metadataMap, Throwable failure) {
+        if (failure != null) {
+            LOG.error("Metadata for batch {} did not arrive, failing the batch. Error: {}",
+                      batchId, failure.getMessage());
+            failBatch(batchId, failure);
+            return;
+        }
+        completeEnrichment(batchId, metadataMap);
+    }
+
     /**
      * Completes the enrichment process when metadata response is received from Kafka.
      * Retrieves cached events from Redis, enriches them with metadata, and continues processing.
@@ -91,28 +234,69 @@ public class EventDataEnricher {
             return;
         }
 
-        String batchId = response.batchId();
+        // Responses to coalesced requests complete the batches waiting for their devices
+        if (coalescingEnabled && coalescer.complete(response)) {
+            return;
+        }
+
+        completeEnrichment(response.batchId(), response.metadata());
+    }
+
+    /**
+     * Enriches and publishes a cached batch once the metadata of its devices is known.
+     * The records of the batch are acknowledged once every enriched event has been published.
+     * Events of devices without metadata are skipped; a batch that cannot be read from the cache,
+     * has no metadata at all or is not fully published is failed and its records are rejected.
+     *
+     * @param batchId     The batch id the events were cached under
+     * @param metadataMap The metadata of the devices of the batch
+     */
+    public void completeEnrichment(String batchId, Map<UUID, DeviceMetadataResTo> metadataMap) {
+        try {
+            enrichAndPublish(batchId, metadataMap);
+        } catch (Exception e) {
+            // Runs on a listener or completion thread, nobody else would see the failure
+            LOG.error("Failed to complete enrichment of batch {}. Error: {}", batchId, e.getMessage(), e);
+            failBatch(batchId, e);
+        }
+    }
+
+    private void enrichAndPublish(String batchId, Map<UUID, DeviceMetadataResTo> metadataMap) {
         LOG.info("Completing enrichment for batch {}", batchId);
+        Long requestTime = batchId != null ? requestedAt.remove(batchId) : null;
+        if (requestTime != null) {
+            batchController.onMetadataRoundTrip(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestTime));
+        }
 
         // Retrieve cached events from Redis
         List<InputEventVo> events = cacheService.retrieveBatch(batchId);
         if (events == null || events.isEmpty()) {
             LOG.error("No cached events found for batch {}", batchId);
+            failBatch(batchId, new IllegalStateException("No cached events found for batch " + batchId));
             return;
         }
 
-        // Get metadata map from response
-        Map<UUID, DeviceMetadataResTo> metadataMap = response.metadata();
         if (metadataMap == null) {
             LOG.error("No metadata in response for batch {}", batchId);
-            cacheService.removeBatch(batchId);
+            failBatch(batchId, new IllegalStateException("No metadata in response for batch " + batchId));
             return;
         }
 
         LOG.info("Enriching {} events with {} metadata entries for batch {}",
                  events.size(), metadataMap.size(), batchId);
 
-        // Enrich each event using the metadata
+        List<MetricAggregateTo> closedWindows = new ArrayList<>();
+        if (hotPathEnabled) {
+            List<byte[]> messages = encodeOnHotPath(events, metadataMap, closedWindows);
+            eventPublisher.publishSerialized(messages).whenComplete((published, failure) ->
+                finishBatch(batchId, events, messages.size(), published, failure));
+            // Publish the window aggregates closed by this batch
+            aggregatePublisher.publishAll(closedWindows);
+            return;
+        }
+
+        // Enrich each event using the metadata, rule indexes are resolved once per device
+        Map<UUID, DeviceRuleIndex> ruleIndexes = new HashMap<>();
         List<ProcessedEventVo> processedEvents = new ArrayList<>();
         for (InputEventVo event : events) {
             try {
@@ -122,7 +306,9 @@ public class EventDataEnricher {
                         event.getDeviceId());
                     continue;
                 }
-                ProcessedEventVo vo = ProcessedEventVoMapper.MapFrom(event, metadata);
+                DeviceRuleIndex index = ruleIndexes.computeIfAbsent(event.getDeviceId(),
+                    deviceId -> ruleIndexCache.indexFor(deviceId, metadata));
+                ProcessedEventVo vo = ProcessedEventVoMapper.MapFrom(event, metadata, index);
                 processedEvents.add(vo);
             } catch (Exception e) {
                 LOG.error("Failed to enrich event from device: {}. Error: {}",
@@ -133,28 +319,163 @@ public class EventDataEnricher {
         LOG.info("Successfully enriched {} out of {} events for batch {}",
                  processedEvents.size(), events.size(), batchId);
 
-        // Process and publish each enriched event
+        // Evaluate each enriched event and collect the results for a single batched publish
+        List<ProcessedEventTo> processedEventTos = new ArrayList<>(processedEvents.size());
         for (ProcessedEventVo processedEvent : processedEvents) {
             try {
-                processor.process(processedEvent);
-
-                // Map to ProcessedEventTo
-                ProcessedEventTo processedEventTo = ProcessedEventToMapper.MapFrom(processedEvent);
-
-                // Publish to Kafka
-                eventPublisher.publish(processedEventTo);
+                processor.process(processedEvent, ruleIndexes.get(processedEvent.getDeviceId()));
+                if (aggregationEnabled) {
+                    aggregator.aggregate(processedEvent, closedWindows);
+                }
 
-                LOG.debug("Successfully processed and published event from device: {}",
-                         processedEvent.getDeviceId());
+                // Map to ProcessedEventTo, unless the aggregates carry the event
+                if (isPublished(processedEvent)) {
+                    processedEventTos.add(ProcessedEventToMapper.MapFrom(processedEvent));
+                }
             } catch (Exception e) {
                 LOG.error("Failed to process event from device: {}. Error: {}",
                          processedEvent.getDeviceId(), e.getMessage(), e);
             }
         }
 
+        // Publish the whole batch to Kafka, the batch completes once the broker acknowledged it
+        eventPublisher.publishBatch(processedEventTos).whenComplete((published, failure) ->
+            finishBatch(batchId, events, processedEventTos.size(), published, failure));
+
+        // Publish the window aggregates closed by this batch
+        aggregatePublisher.publishAll(closedWindows);
+    }
+
+    private boolean isPublished(ProcessedEventVo event) {
+        return switch (publishedEvents) {
+            case ALL -> true;
+            case NONE -> false;
+            case VIOLATIONS -> event.getMetrics() != null && event.getMetrics().stream()
+                .anyMatch(metric -> metric != null && metric.isViolatingSafety());
+        };
+    }
+
+    private boolean isPublished(EventCarrier carrier) {
+        return switch (publishedEvents) {
+            case ALL -> true;
+            case NONE -> false;
+            case VIOLATIONS -> {
+                for (int i = 0; i < carrier.size(); i++) {
+                    if (carrier.isViolating(i)) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+        };
+    }
+
+    /**
+     * Settles a batch once the broker has acknowledged or rejected all of its events.
+     * Its records are committed only if every sent event was published.
+     */
+    private void finishBatch(String batchId, List<InputEventVo> events, int sent, Integer published, Throwable failure) {
+        LOG.debug("Published {} out of {} processed events for batch {}", published, sent, batchId);
+        if (failure != null || published == null || published < sent) {
+            LOG.error("Published only {} out of {} processed events for batch {}, failing the batch",
+                      published, sent, batchId);
+            failBatch(batchId, failure != null ? failure : new IllegalStateException(
+                "Published only " + published + " out of " + sent + " processed events of batch " + batchId));
+            return;
+        }
+
+        recordEndToEndLatency(events);
+
         // Clean up: remove batch from cache (batch ID no longer needed)
         cacheService.removeBatch(batchId);
 
+        // The batch is published, its records can be committed
+        completionTracker.complete(batchId);
+
         LOG.info("Completed enrichment and processing for batch {}", batchId);
     }
+
+    /**
+     * Drops a batch that cannot be published and rejects its records.
+     */
+    private void failBatch(String batchId, Throwable reason) {
+        if (batchId == null) {
+            return;
+        }
+        requestedAt.remove(batchId);
+        cacheService.removeBatch(batchId);
+        completionTracker.fail(batchId, reason);
+    }
+
+    /**
+     * Enriches, evaluates and serializes the batch through a reusable carrier.
+     * Readings go from the cached input events straight into primitive arrays and from there
+     * to JSON, skipping the intermediate value and transfer objects of the regular path.
+     *
+     * @return The serialized processed events
+     */
+    private List<byte[]> encodeOnHotPath(List<InputEventVo> events, Map<UUID, DeviceMetadataResTo> metadataMap,
+                                         List<MetricAggregateTo> closedWindows) {
+        EventCarrier carrier = carriers.acquire();
+        try {
+            return encodeOnHotPath(events, metadataMap, closedWindows, carrier);
+        } finally {
+            carriers.release(carrier);
+        }
+    }
+
+    private List<byte[]> encodeOnHotPath(List<InputEventVo> events, Map<UUID, DeviceMetadataResTo> metadataMap,
+                                         List<MetricAggregateTo> closedWindows, EventCarrier carrier) {
+        Map<UUID, DeviceRuleIndex> ruleIndexes = new HashMap<>();
+        List<byte[]> messages = new ArrayList<>(events.size());
+
+        for (InputEventVo event : events) {
+            try {
+                DeviceMetadataResTo metadata = metadataMap.get(event.getDeviceId());
+                if (metadata == null) {
+                    LOG.error("No metadata found for device: {}, skipping event",
+                        event.getDeviceId());
+                    continue;
+                }
+                DeviceRuleIndex index = ruleIndexes.computeIfAbsent(event.getDeviceId(),
+                    deviceId -> ruleIndexCache.indexFor(deviceId, metadata));
+
+                carrier.load(event, index);
+                processor.process(carrier, index);
+                if (aggregationEnabled) {
+                    aggregator.aggregate(carrier, metadata.location(), closedWindows);
+                }
+                if (isPublished(carrier)) {
+                    messages.add(encoder.encode(carrier, metadata, index));
+                }
+            } catch (Exception e) {
+                LOG.error("Failed to process event from device: {}. Error: {}",
+                    event.getDeviceId(), e.getMessage(), e);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Forgets the request times of responses that never arrived, so they do not pile up.
+     */
+    void pruneStaleRequests() {
+        long now = System.nanoTime();
+        requestedAt.values().removeIf(sent -> now - sent > STALE_REQUEST_NANOS);
+    }
+
+    /**
+     * Reports the age of the oldest event of a published batch to the adaptive batch controller.
+     */
+    private void recordEndToEndLatency(List<InputEventVo> events) {
+        long oldest = Long.MAX_VALUE;
+        for (InputEventVo event : events) {
+            if (event.getTimestamp() != null) {
+                oldest = Math.min(oldest, event.getTimestamp().toEpochMilli());
+            }
+        }
+        if (oldest != Long.MAX_VALUE) {
+            batchController.onBatchCompleted(System.currentTimeMillis() - oldest);
+        }
+    }
 }
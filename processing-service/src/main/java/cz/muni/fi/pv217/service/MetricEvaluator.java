@@ -1,15 +1,47 @@
 package cz.muni.fi.pv217.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import cz.muni.fi.pv217.entity.vo.ProcessedEventMetric;
 import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.hotpath.EventCarrier;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import cz.muni.fi.pv217.service.rules.DeviceRuleState;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.UUID;
+
 @ApplicationScoped
 public class MetricEvaluator {
     private static final Logger LOG = LoggerFactory.getLogger(MetricEvaluator.class);
 
+    private static final long DEFAULT_MAX_DEVICES = 100_000;
+    private static final Duration DEFAULT_STATE_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    // Rule states of devices that stopped sending are dropped after the idle timeout and the least
+    // recently used ones beyond the maximum; a device that comes back starts with a fresh state
+    private final Cache<UUID, DeviceRuleState> ruleStates;
+
+    public MetricEvaluator() {
+        this(DEFAULT_MAX_DEVICES, DEFAULT_STATE_IDLE_TIMEOUT);
+    }
+
+    @Inject
+    public MetricEvaluator(@ConfigProperty(name = "processing.rules.max-devices", defaultValue = "100000")
+                           long maxDevices,
+                           @ConfigProperty(name = "processing.rules.state-idle-timeout", defaultValue = "10m")
+                           Duration stateIdleTimeout) {
+        this.ruleStates = Caffeine.newBuilder()
+            .maximumSize(maxDevices)
+            .expireAfterAccess(stateIdleTimeout)
+            .build();
+    }
+
     /**
      * Processes the event by evaluating each metric against its healthy range.
      * Sets isViolatingSafety flag if the value is outside the healthy range (from-to).
@@ -35,6 +67,105 @@ public class MetricEvaluator {
         }
     }
 
+    /**
+     * Processes the event using the compiled rule index of its device.
+     * Metrics mapped through the same index are evaluated by the compiled evaluator of their rule,
+     * which keeps its state (previous value, alert flag, violation window) per device.
+     * Metrics without a resolved slot fall back to their own boundaries.
+     *
+     * @param event The processed event containing metrics to evaluate
+     * @param index The rule index the event was mapped with
+     */
+    public void process(ProcessedEventVo event, DeviceRuleIndex index) {
+        if (index == null) {
+            process(event);
+            return;
+        }
+        if (event == null) {
+            LOG.warn("Received null event, skipping processing");
+            return;
+        }
+
+        if (event.getMetrics() == null || event.getMetrics().isEmpty()) {
+            LOG.warn("Event from device {} has no metrics to process", event.getDeviceId());
+            return;
+        }
+
+        DeviceRuleState state = stateFor(event.getDeviceId(), index);
+        long timestampMillis = event.getTimestamp() != null ? event.getTimestamp().toEpochMilli() : 0L;
+
+        // Stateful rules depend on the order of readings, events of one device are evaluated one at a time
+        synchronized (state) {
+            for (ProcessedEventMetric metric : event.getMetrics()) {
+                if (metric == null) {
+                    LOG.warn("Encountered null metric, skipping");
+                    continue;
+                }
+                int slot = metric.getRuleSlot();
+                if (slot == DeviceRuleIndex.NO_RULE || slot >= index.size()) {
+                    processMetric(metric);
+                    continue;
+                }
+
+                Double value = metric.getValue();
+                boolean violatesSafety = value != null
+                        && index.evaluator(slot).evaluate(value, timestampMillis, state, slot);
+                metric.setViolatingSafety(violatesSafety);
+
+                if (violatesSafety) {
+                    LOG.warn("Safety violation detected for metric '{}': value={}, rule range=[{}, {}]",
+                             metric.getMetricName(), value, index.from(slot), index.to(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the readings held by a hot path carrier, same as {@link #process(ProcessedEventVo, DeviceRuleIndex)}
+     * but without the intermediate metric objects. Readings without a rule never violate safety.
+     *
+     * @param carrier The event carrier with resolved rule slots
+     * @param index   The rule index the carrier was loaded with
+     */
+    public void process(EventCarrier carrier, DeviceRuleIndex index) {
+        DeviceRuleState state = stateFor(carrier.deviceId(), index);
+        long timestampMillis = carrier.timestamp() != null ? carrier.timestamp().toEpochMilli() : 0L;
+
+        synchronized (state) {
+            for (int i = 0; i < carrier.size(); i++) {
+                int slot = carrier.slot(i);
+                boolean violatesSafety = slot != DeviceRuleIndex.NO_RULE && carrier.hasValue(i)
+                        && index.evaluator(slot).evaluate(carrier.value(i), timestampMillis, state, slot);
+                carrier.setViolating(i, violatesSafety);
+
+                if (violatesSafety) {
+                    LOG.warn("Safety violation detected for metric '{}': value={}, rule range=[{}, {}]",
+                             carrier.metricName(i), carrier.value(i), index.from(slot), index.to(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the rule state of the device, starting a new one when the rules of the device changed.
+     */
+    private DeviceRuleState stateFor(UUID deviceId, DeviceRuleIndex index) {
+        if (deviceId == null) {
+            return index.newState();
+        }
+        return ruleStates.asMap().compute(deviceId, (id, current) ->
+            current != null && current.belongsTo(index) ? current : index.newState());
+    }
+
+    /**
+     * Drops the rule state of a device.
+     *
+     * @param deviceId The device id
+     */
+    public void resetState(UUID deviceId) {
+        ruleStates.invalidate(deviceId);
+    }
+
     /**
      * Processes a single metric by evaluating safety violations.
      *
@@ -3,6 +3,7 @@ package cz.muni.fi.pv217.service;
 import cz.muni.fi.pv217.entity.to.InputEventTo;
 import cz.muni.fi.pv217.entity.vo.InputEventVo;
 import cz.muni.fi.pv217.entity.mappers.InputEventVoMapper;
+import cz.muni.fi.pv217.service.batching.BatchAcknowledgement;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,4 +63,35 @@ public class ProcessingOrchestrator {
 
         LOG.info("Initiated async enrichment for batch of {} events", inputEventVos.size());
     }
+
+    /**
+     * Processes a batch of telemetry events that were already parsed and validated by the listener.
+     *
+     * @param events The list of parsed input events to process
+     */
+    public void processParsedBatch(List<InputEventVo> events) {
+        processParsedBatch(events, null);
+    }
+
+    /**
+     * Processes a batch of parsed telemetry events whose Kafka records are acknowledged
+     * only after the enrichment of the batch has completed.
+     *
+     * @param events The list of parsed input events to process
+     * @param ack    Settles the Kafka records of the batch, may be null
+     */
+    public void processParsedBatch(List<InputEventVo> events, BatchAcknowledgement ack) {
+        if (events == null || events.isEmpty()) {
+            LOG.warn("Received null or empty batch, skipping processing");
+            if (ack != null) {
+                ack.ack();
+            }
+            return;
+        }
+
+        // Initiate async batch enrichment (will be completed when Kafka response arrives)
+        enricher.enrichBatch(events, ack);
+
+        LOG.info("Initiated async enrichment for batch of {} events", events.size());
+    }
 }
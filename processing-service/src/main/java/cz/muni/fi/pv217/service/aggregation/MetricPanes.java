@@ -0,0 +1,79 @@
+package cz.muni.fi.pv217.service.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Fixed ring of tumbling panes of one metric of a device.
+ * Pane statistics are kept in primitive arrays indexed by pane number modulo the ring size,
+ * a slot is reset when a newer pane claims it.
+ */
+final class MetricPanes {
+
+    static final long EMPTY = Long.MIN_VALUE;
+
+    final long[] pane;
+    final long[] count;
+    final long[] violations;
+    final double[] min;
+    final double[] max;
+    final double[] sum;
+
+    MetricPanes(int ringSize) {
+        this.pane = new long[ringSize];
+        this.count = new long[ringSize];
+        this.violations = new long[ringSize];
+        this.min = new double[ringSize];
+        this.max = new double[ringSize];
+        this.sum = new double[ringSize];
+        Arrays.fill(pane, EMPTY);
+    }
+
+    int slotOf(long paneIndex) {
+        return (int) Math.floorMod(paneIndex, (long) pane.length);
+    }
+
+    void add(long paneIndex, double value, boolean violating) {
+        int slot = slotOf(paneIndex);
+        if (pane[slot] != paneIndex) {
+            pane[slot] = paneIndex;
+            count[slot] = 0;
+            violations[slot] = 0;
+            min[slot] = Double.POSITIVE_INFINITY;
+            max[slot] = Double.NEGATIVE_INFINITY;
+            sum[slot] = 0.0;
+        }
+        count[slot]++;
+        if (violating) {
+            violations[slot]++;
+        }
+        if (value < min[slot]) {
+            min[slot] = value;
+        }
+        if (value > max[slot]) {
+            max[slot] = value;
+        }
+        sum[slot] += value;
+    }
+
+    /**
+     * @return The ring slot holding data of the pane, or -1 if the pane has no readings
+     */
+    int slotWithData(long paneIndex) {
+        int slot = slotOf(paneIndex);
+        return pane[slot] == paneIndex && count[slot] > 0 ? slot : -1;
+    }
+
+    /**
+     * @return The oldest pane with readings in (after, upTo], or {@link #EMPTY} if there is none
+     */
+    long oldestPaneBetween(long after, long upTo) {
+        long oldest = EMPTY;
+        for (int slot = 0; slot < pane.length; slot++) {
+            long p = pane[slot];
+            if (p != EMPTY && count[slot] > 0 && p > after && p <= upTo && (oldest == EMPTY || p < oldest)) {
+                oldest = p;
+            }
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,376 @@
+package cz.muni.fi.pv217.service.aggregation;
+
+import cz.muni.fi.pv217.entity.to.MetricAggregateTo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventMetric;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.kafka.MetricAggregatePublisher;
+import cz.muni.fi.pv217.service.hotpath.EventCarrier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental per-device window aggregation of evaluated events.
+ * Readings are folded into tumbling panes per (device, metric). Every device tracks an
+ * event-time watermark (highest seen timestamp minus the allowed lateness); once the
+ * watermark passes the end of a pane, the pane is emitted as a tumbling aggregate together
+ * with the sliding aggregate of the last panes ending with it. Readings for panes that were
+ * already emitted are dropped as late.
+ * <p>
+ * The watermark only moves with new readings of the device, so a scheduled sweep closes the
+ * remaining panes of devices that went quiet for the idle timeout, publishes them and forgets
+ * the device. The same sweep evicts the least recently active devices once more than the
+ * maximum number of devices is tracked.
+ * <p>
+ * Aggregates carry the latest known location of the device, so consumers reading only the
+ * aggregates still see where the device is.
+ */
+@ApplicationScoped
+public class WindowAggregator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WindowAggregator.class);
+
+    public static final String TUMBLING = "TUMBLING";
+    public static final String SLIDING = "SLIDING";
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "processing.aggregation.pane-size", defaultValue = "60s")
+    Duration paneSize;
+
+    @ConfigProperty(name = "processing.aggregation.sliding-panes", defaultValue = "5")
+    int slidingPanes;
+
+    @ConfigProperty(name = "processing.aggregation.allowed-lateness", defaultValue = "10s")
+    Duration allowedLateness;
+
+    @ConfigProperty(name = "processing.aggregation.idle-timeout", defaultValue = "2m")
+    Duration idleTimeout;
+
+    @ConfigProperty(name = "processing.aggregation.max-devices", defaultValue = "100000")
+    int maxDevices;
+
+    @Inject
+    MetricAggregatePublisher publisher;
+
+    private final ConcurrentMap<UUID, DeviceWindows> devices = new ConcurrentHashMap<>();
+
+    private long paneMillis;
+    private long latenessMillis;
+    private int ringSize;
+    private Counter lateReadings;
+    private Counter emittedAggregates;
+    private Counter evictedDevices;
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    void init() {
+        if (paneSize.toMillis() <= 0 || slidingPanes <= 0 || allowedLateness.isNegative()
+                || !idleTimeout.isPositive() || maxDevices <= 0) {
+            throw new IllegalArgumentException("Invalid aggregation window configuration");
+        }
+        paneMillis = paneSize.toMillis();
+        latenessMillis = allowedLateness.toMillis();
+        // Keep every pane that can still receive readings plus the panes of one sliding window
+        long latenessPanes = (latenessMillis + paneMillis - 1) / paneMillis;
+        ringSize = (int) (slidingPanes + latenessPanes + 1);
+        lateReadings = registry.counter("processing_aggregation_late_readings");
+        emittedAggregates = registry.counter("processing_aggregation_emitted_aggregates");
+        evictedDevices = registry.counter("processing_aggregation_evicted_devices");
+        Gauge.builder("processing_aggregation_tracked_devices", devices, Map::size)
+            .description("Number of devices with open aggregation windows")
+            .register(registry);
+
+        long sweepMillis = Math.max(1000, idleTimeout.toMillis() / 4);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "window-aggregator-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::flushIdleDevices, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Folds the readings of an evaluated event into the windows of its device and collects
+     * the aggregates of every window closed by the advanced watermark.
+     *
+     * @param event  The evaluated event
+     * @param closed Output list the closed window aggregates are appended to
+     */
+    public void aggregate(ProcessedEventVo event, List<MetricAggregateTo> closed) {
+        if (event == null || event.getDeviceId() == null || event.getTimestamp() == null
+                || event.getMetrics() == null) {
+            LOG.debug("Skipping aggregation of an event without device, timestamp or metrics");
+            return;
+        }
+
+        DeviceWindows windows = devices.computeIfAbsent(event.getDeviceId(), id -> new DeviceWindows());
+        long paneIndex = Math.floorDiv(event.getTimestamp().toEpochMilli(), paneMillis);
+        synchronized (windows) {
+            if (windows.evicted) {
+                // Evicted by the sweep in the meantime, start over with fresh windows
+                aggregate(event, closed);
+                return;
+            }
+            windows.lastActivity = System.nanoTime();
+            windows.location = event.getLocation();
+            if (!advance(event.getDeviceId(), windows, event.getTimestamp(), event.getMetrics().size(), closed)) {
+                return;
+            }
+            for (ProcessedEventMetric metric : event.getMetrics()) {
+                if (metric == null || metric.getMetricName() == null || metric.getValue() == null) {
+                    continue;
+                }
+                fold(windows, paneIndex, metric.getMetricName(), metric.getValue(), metric.isViolatingSafety());
+            }
+        }
+    }
+
+    /**
+     * Folds the readings held by a hot path carrier, same as {@link #aggregate(ProcessedEventVo, List)}.
+     *
+     * @param carrier  The evaluated event carrier
+     * @param location The location of the device from its metadata, may be null
+     * @param closed   Output list the closed window aggregates are appended to
+     */
+    public void aggregate(EventCarrier carrier, Map<String, Double> location, List<MetricAggregateTo> closed) {
+        if (carrier.deviceId() == null || carrier.timestamp() == null) {
+            LOG.debug("Skipping aggregation of an event without device or timestamp");
+            return;
+        }
+
+        DeviceWindows windows = devices.computeIfAbsent(carrier.deviceId(), id -> new DeviceWindows());
+        long paneIndex = Math.floorDiv(carrier.timestamp().toEpochMilli(), paneMillis);
+        synchronized (windows) {
+            if (windows.evicted) {
+                // Evicted by the sweep in the meantime, start over with fresh windows
+                aggregate(carrier, location, closed);
+                return;
+            }
+            windows.lastActivity = System.nanoTime();
+            windows.location = location;
+            if (!advance(carrier.deviceId(), windows, carrier.timestamp(), carrier.size(), closed)) {
+                return;
+            }
+            for (int i = 0; i < carrier.size(); i++) {
+                if (carrier.metricName(i) == null || !carrier.hasValue(i)) {
+                    continue;
+                }
+                fold(windows, paneIndex, carrier.metricName(i), carrier.value(i), carrier.isViolating(i));
+            }
+        }
+    }
+
+    /**
+     * Advances the watermark of the device and closes the panes it passed.
+     * Panes are closed before the event is folded in, so its pane never overwrites an open one.
+     * Callers hold the lock of the device windows.
+     *
+     * @return false if the event is late and has to be dropped
+     */
+    private boolean advance(UUID deviceId, DeviceWindows windows, Instant eventTime, int readings,
+                            List<MetricAggregateTo> closed) {
+        long timestamp = eventTime.toEpochMilli();
+        long paneIndex = Math.floorDiv(timestamp, paneMillis);
+        if (paneIndex <= windows.lastClosedPane) {
+            lateReadings.increment(readings);
+            LOG.debug("Dropping late readings of device {} at {}, watermark pane {}",
+                      deviceId, eventTime, windows.lastClosedPane);
+            return false;
+        }
+
+        if (timestamp > windows.maxTimestamp) {
+            windows.maxTimestamp = timestamp;
+            long closable = Math.floorDiv(timestamp - latenessMillis, paneMillis) - 1;
+            if (closable > windows.lastClosedPane) {
+                closePanes(deviceId, windows, closable, closed);
+            }
+        }
+        return true;
+    }
+
+    private void fold(DeviceWindows windows, long paneIndex, String metricName, double value, boolean violating) {
+        windows.metrics.computeIfAbsent(metricName, name -> new MetricPanes(ringSize))
+            .add(paneIndex, value, violating);
+    }
+
+    /**
+     * Drops the window state of a device.
+     *
+     * @param deviceId The device id
+     */
+    public void reset(UUID deviceId) {
+        devices.remove(deviceId);
+    }
+
+    void flushIdleDevices() {
+        try {
+            List<MetricAggregateTo> closed = flushIdle(System.nanoTime());
+            if (!closed.isEmpty()) {
+                publisher.publishAll(closed);
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to flush idle aggregation windows. Error: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes every pane of devices without readings for the idle timeout and forgets them,
+     * then evicts the least recently active devices above the maximum the same way.
+     *
+     * @param now Current {@link System#nanoTime()}
+     * @return The aggregates of the closed panes
+     */
+    List<MetricAggregateTo> flushIdle(long now) {
+        List<MetricAggregateTo> closed = new ArrayList<>();
+        long idleNanos = idleTimeout.toNanos();
+        for (Map.Entry<UUID, DeviceWindows> entry : devices.entrySet()) {
+            if (now - entry.getValue().lastActivity >= idleNanos) {
+                evict(entry.getKey(), entry.getValue(), closed);
+            }
+        }
+
+        int overflow = devices.size() - maxDevices;
+        if (overflow > 0) {
+            // Activity is snapshotted, it keeps changing while the devices are sorted
+            List<Activity> leastActive = devices.entrySet().stream()
+                .map(entry -> new Activity(entry.getKey(), entry.getValue(), entry.getValue().lastActivity))
+                .sorted(Comparator.comparingLong(Activity::lastActivity))
+                .limit(overflow)
+                .toList();
+            for (Activity activity : leastActive) {
+                evict(activity.deviceId(), activity.windows(), closed);
+            }
+        }
+        return closed;
+    }
+
+    private void evict(UUID deviceId, DeviceWindows windows, List<MetricAggregateTo> closed) {
+        synchronized (windows) {
+            if (windows.evicted) {
+                return;
+            }
+            if (windows.maxTimestamp != Long.MIN_VALUE) {
+                // Nothing more arrives for the device, the pane of its last reading is final as well
+                long closable = Math.floorDiv(windows.maxTimestamp, paneMillis);
+                if (closable > windows.lastClosedPane) {
+                    closePanes(deviceId, windows, closable, closed);
+                }
+            }
+            windows.evicted = true;
+            devices.remove(deviceId, windows);
+            evictedDevices.increment();
+        }
+    }
+
+    private void closePanes(UUID deviceId, DeviceWindows windows, long closable, List<MetricAggregateTo> closed) {
+        for (Map.Entry<String, MetricPanes> entry : windows.metrics.entrySet()) {
+            MetricPanes panes = entry.getValue();
+            long pane = panes.oldestPaneBetween(windows.lastClosedPane, closable);
+            while (pane != MetricPanes.EMPTY) {
+                closed.add(tumbling(deviceId, windows.location, entry.getKey(), panes, pane));
+                closed.add(sliding(deviceId, windows.location, entry.getKey(), panes, pane));
+                emittedAggregates.increment(2);
+                pane = panes.oldestPaneBetween(pane, closable);
+            }
+        }
+        windows.lastClosedPane = closable;
+    }
+
+    private MetricAggregateTo tumbling(UUID deviceId, Map<String, Double> location, String metricName,
+                                       MetricPanes panes, long pane) {
+        int slot = panes.slotWithData(pane);
+        return MetricAggregateTo.builder()
+            .deviceId(deviceId)
+            .location(location)
+            .metricName(metricName)
+            .windowType(TUMBLING)
+            .windowStart(Instant.ofEpochMilli(pane * paneMillis))
+            .windowEnd(Instant.ofEpochMilli((pane + 1) * paneMillis))
+            .count(panes.count[slot])
+            .violationCount(panes.violations[slot])
+            .min(panes.min[slot])
+            .max(panes.max[slot])
+            .avg(panes.sum[slot] / panes.count[slot])
+            .build();
+    }
+
+    private MetricAggregateTo sliding(UUID deviceId, Map<String, Double> location, String metricName,
+                                      MetricPanes panes, long lastPane) {
+        long count = 0;
+        long violations = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0.0;
+        long firstPane = lastPane - slidingPanes + 1;
+        for (long pane = firstPane; pane <= lastPane; pane++) {
+            int slot = panes.slotWithData(pane);
+            if (slot < 0) {
+                continue;
+            }
+            count += panes.count[slot];
+            violations += panes.violations[slot];
+            min = Math.min(min, panes.min[slot]);
+            max = Math.max(max, panes.max[slot]);
+            sum += panes.sum[slot];
+        }
+        return MetricAggregateTo.builder()
+            .deviceId(deviceId)
+            .location(location)
+            .metricName(metricName)
+            .windowType(SLIDING)
+            .windowStart(Instant.ofEpochMilli(firstPane * paneMillis))
+            .windowEnd(Instant.ofEpochMilli((lastPane + 1) * paneMillis))
+            .count(count)
+            .violationCount(violations)
+            .min(min)
+            .max(max)
+            .avg(sum / count)
+            .build();
+    }
+
+    private record Activity(UUID deviceId, DeviceWindows windows, long lastActivity) {
+    }
+
+    /**
+     * Window state of a single device.
+     */
+    private static final class DeviceWindows {
+        final Map<String, MetricPanes> metrics = new HashMap<>();
+        long maxTimestamp = Long.MIN_VALUE;
+        long lastClosedPane = Long.MIN_VALUE;
+        Map<String, Double> location;
+        // Processing time of the last reading, read by the sweep without the lock
+        volatile long lastActivity = System.nanoTime();
+        boolean evicted;
+    }
+}
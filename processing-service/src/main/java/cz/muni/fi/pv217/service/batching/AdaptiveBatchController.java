@@ -0,0 +1,166 @@
+package cz.muni.fi.pv217.service.batching;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the effective micro-batch size and linger of the sensor-ingest consumer at runtime.
+ * Kafka polls are kept small and fast; the controller decides how many polled events are
+ * accumulated into one enrichment batch and how long the accumulator may wait for more.
+ * <p>
+ * Inputs are consumer backlog, the end-to-end latency of completed batches and the metadata
+ * round-trip time, smoothed with an exponentially weighted average. Backlog is not the consumer lag
+ * of the partitions but its proxy on the polling thread: a poll returning max.poll.records means more
+ * records were waiting, a shorter poll means the consumer has caught up.
+ * <p>
+ * The batch size follows additive increase / multiplicative decrease against the latency SLO:
+ * it is halved whenever the SLO is missed, backlog or not, and otherwise grows while there is
+ * backlog or latency is comfortably below the SLO. Linger is whatever is left of the SLO after the
+ * metadata round trip, and drops to the minimum while there is backlog since full batches arrive
+ * without waiting.
+ */
+@ApplicationScoped
+public class AdaptiveBatchController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBatchController.class);
+    private static final double SMOOTHING = 0.2;
+    private static final double COMFORT_RATIO = 0.8;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "processing.batch.min-size", defaultValue = "50")
+    int minSize;
+
+    @ConfigProperty(name = "processing.batch.max-size", defaultValue = "2000")
+    int maxSize;
+
+    @ConfigProperty(name = "processing.batch.size-step", defaultValue = "50")
+    int sizeStep;
+
+    @ConfigProperty(name = "processing.batch.min-linger", defaultValue = "5ms")
+    Duration minLinger;
+
+    @ConfigProperty(name = "processing.batch.max-linger", defaultValue = "500ms")
+    Duration maxLinger;
+
+    @ConfigProperty(name = "processing.batch.latency-slo", defaultValue = "2s")
+    Duration latencySlo;
+
+    @ConfigProperty(name = "mp.messaging.incoming.sensor-ingest.max.poll.records", defaultValue = "500")
+    int maxPollRecords;
+
+    private volatile int targetSize;
+    private volatile long lingerMillis;
+    private volatile boolean backlogged;
+    private volatile double latencyMillis = Double.NaN;
+    private volatile double metadataRttMillis = Double.NaN;
+    private Timer metadataRoundTrip;
+    private Timer endToEndLatency;
+
+    @PostConstruct
+    void init() {
+        if (minSize <= 0 || maxSize < minSize || minLinger.compareTo(maxLinger) > 0) {
+            throw new IllegalArgumentException("Invalid adaptive batch configuration");
+        }
+        targetSize = minSize;
+        lingerMillis = maxLinger.toMillis();
+
+        Gauge.builder("processing_batch_target_size", this, c -> c.targetSize)
+            .description("Current target number of events per enrichment batch")
+            .register(registry);
+        Gauge.builder("processing_batch_linger_ms", this, c -> c.lingerMillis)
+            .description("Current maximum time an enrichment batch waits to fill up")
+            .register(registry);
+        metadataRoundTrip = Timer.builder("processing_batch_metadata_rtt")
+            .description("Time from publishing a metadata request until its response is processed")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        endToEndLatency = Timer.builder("processing_batch_end_to_end_latency")
+            .description("Age of the oldest event of a batch when its processed events are published")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+    }
+
+    public int targetSize() {
+        return targetSize;
+    }
+
+    public long lingerMillis() {
+        return lingerMillis;
+    }
+
+    /**
+     * Records the size of a Kafka poll, a poll returning max.poll.records means the consumer is behind.
+     *
+     * @param records Number of records in the poll
+     */
+    public synchronized void onPoll(int records) {
+        boolean full = records >= maxPollRecords;
+        if (full != backlogged) {
+            backlogged = full;
+            adjust();
+        }
+    }
+
+    /**
+     * Records the round trip of a metadata request.
+     *
+     * @param millis Time from publishing the request until the response arrived
+     */
+    public synchronized void onMetadataRoundTrip(long millis) {
+        metadataRoundTrip.record(millis, TimeUnit.MILLISECONDS);
+        metadataRttMillis = smooth(metadataRttMillis, millis);
+    }
+
+    /**
+     * Records the end-to-end latency of a completed batch and adapts the batch size and linger.
+     *
+     * @param millis Age of the oldest event of the batch when it was published
+     */
+    public synchronized void onBatchCompleted(long millis) {
+        endToEndLatency.record(Math.max(millis, 0), TimeUnit.MILLISECONDS);
+        latencyMillis = smooth(latencyMillis, Math.max(millis, 0));
+        adjust();
+    }
+
+    private void adjust() {
+        long slo = latencySlo.toMillis();
+        int previousSize = targetSize;
+        long previousLinger = lingerMillis;
+
+        // Larger batches only add latency once the SLO is missed, even while the consumer is behind
+        if (!Double.isNaN(latencyMillis) && latencyMillis > slo) {
+            targetSize = Math.max(minSize, targetSize / 2);
+        } else if (backlogged || (!Double.isNaN(latencyMillis) && latencyMillis < slo * COMFORT_RATIO)) {
+            targetSize = Math.min(maxSize, targetSize + sizeStep);
+        }
+
+        if (backlogged) {
+            lingerMillis = minLinger.toMillis();
+        } else {
+            double rtt = Double.isNaN(metadataRttMillis) ? 0.0 : metadataRttMillis;
+            long budget = (long) ((slo - rtt) / 2);
+            lingerMillis = Math.max(minLinger.toMillis(), Math.min(maxLinger.toMillis(), budget));
+        }
+
+        if (previousSize != targetSize || previousLinger != lingerMillis) {
+            LOG.debug("Adjusted batch target to {} events and linger to {} ms (latency={} ms, metadata rtt={} ms, backlogged={})",
+                      targetSize, lingerMillis, latencyMillis, metadataRttMillis, backlogged);
+        }
+    }
+
+    private static double smooth(double current, double sample) {
+        return Double.isNaN(current) ? sample : current + SMOOTHING * (sample - current);
+    }
+}
@@ -0,0 +1,96 @@
+package cz.muni.fi.pv217.service.batching;
+
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Settles the Kafka records behind an enrichment batch once the batch is done with.
+ * Acknowledged records are committed, negatively acknowledged records are handed to the failure
+ * strategy of the channel instead, so records of a batch that was not published are never
+ * committed as processed. Only the first call settles the records, later calls are ignored.
+ * <p>
+ * The acknowledgement is taken when the poll is received, before the events wait in the
+ * accumulator, so the commit lag and the batch timeout also cover that wait.
+ */
+public interface BatchAcknowledgement {
+
+    /**
+     * The batch was published, its records can be committed.
+     */
+    void ack();
+
+    /**
+     * The batch could not be published.
+     *
+     * @param reason Why the batch failed
+     */
+    void nack(Throwable reason);
+
+    /**
+     * @return When the records were received, in {@link System#nanoTime()}
+     */
+    long receivedAtNanos();
+
+    /**
+     * @param message The consumed Kafka message, a single record or a whole poll, received just now
+     * @return Acknowledgement settling the message once
+     */
+    static BatchAcknowledgement of(Message<?> message) {
+        AtomicBoolean settled = new AtomicBoolean();
+        long receivedAt = System.nanoTime();
+        return new BatchAcknowledgement() {
+            @Override
+            public void ack() {
+                if (settled.compareAndSet(false, true)) {
+                    message.ack();
+                }
+            }
+
+            @Override
+            public void nack(Throwable reason) {
+                if (settled.compareAndSet(false, true)) {
+                    message.nack(reason);
+                }
+            }
+
+            @Override
+            public long receivedAtNanos() {
+                return receivedAt;
+            }
+        };
+    }
+
+    /**
+     * @param acknowledgements Acknowledgements of the polls accumulated into one batch
+     * @return Acknowledgement settling all of them together, received with the earliest poll
+     */
+    static BatchAcknowledgement allOf(List<BatchAcknowledgement> acknowledgements) {
+        List<BatchAcknowledgement> all = List.copyOf(acknowledgements);
+        long receivedAt = all.get(0).receivedAtNanos();
+        for (BatchAcknowledgement acknowledgement : all) {
+            // nanoTime values may only be compared by their difference
+            if (acknowledgement.receivedAtNanos() - receivedAt < 0) {
+                receivedAt = acknowledgement.receivedAtNanos();
+            }
+        }
+        long earliest = receivedAt;
+        return new BatchAcknowledgement() {
+            @Override
+            public void ack() {
+                all.forEach(BatchAcknowledgement::ack);
+            }
+
+            @Override
+            public void nack(Throwable reason) {
+                all.forEach(acknowledgement -> acknowledgement.nack(reason));
+            }
+
+            @Override
+            public long receivedAtNanos() {
+                return earliest;
+            }
+        };
+    }
+}
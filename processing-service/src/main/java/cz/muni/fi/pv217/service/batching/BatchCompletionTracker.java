@@ -0,0 +1,179 @@
+package cz.muni.fi.pv217.service.batching;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks in-flight enrichment batches and acknowledges their Kafka records only once every event
+ * of the batch has been published. Acknowledged offsets are committed by the throttled commit
+ * strategy of the connector, which commits in bulk up to the lowest record that is still pending,
+ * so many batches can be in flight without losing at-least-once delivery.
+ * <p>
+ * Batches that fail, or are not completed within the timeout, are negatively acknowledged.
+ * Their records go to the failure strategy of the channel (the dead letter topic) and the
+ * throttled strategy can move on, instead of waiting for records that will never be acknowledged.
+ */
+@ApplicationScoped
+public class BatchCompletionTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchCompletionTracker.class);
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "processing.commit.batch-timeout", defaultValue = "60s")
+    Duration batchTimeout;
+
+    private final ConcurrentMap<String, PendingBatch> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+    private Timer commitLag;
+    private Counter expiredBatches;
+    private Counter failedBatches;
+
+    // Received when the poll of its records arrived, not when it was registered
+    private record PendingBatch(BatchAcknowledgement acknowledgement, long receivedAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        commitLag = Timer.builder("processing_commit_lag")
+            .description("Time from receiving the records of a batch until they are acknowledged for commit")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        expiredBatches = registry.counter("processing_commit_expired_batches");
+        failedBatches = registry.counter("processing_commit_failed_batches");
+        Gauge.builder("processing_commit_pending_batches", pending, Map::size)
+            .description("Number of consumed batches waiting for completion")
+            .register(registry);
+        Gauge.builder("processing_commit_oldest_pending_age_ms", this, BatchCompletionTracker::oldestPendingAgeMillis)
+            .description("Age of the oldest batch waiting for completion")
+            .register(registry);
+
+        long sweepMillis = Math.max(1000, batchTimeout.toMillis() / 4);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-completion-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::expire, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers a batch before its metadata request is published. The commit lag and the timeout
+     * of the batch count from when its records were received, see {@link BatchAcknowledgement#receivedAtNanos()}.
+     *
+     * @param batchId         The batch id
+     * @param acknowledgement Settles the Kafka records of the batch, may be null
+     */
+    public void register(String batchId, BatchAcknowledgement acknowledgement) {
+        if (acknowledgement == null) {
+            return;
+        }
+        pending.put(batchId, new PendingBatch(acknowledgement, acknowledgement.receivedAtNanos()));
+    }
+
+    /**
+     * Marks the batch as fully processed and acknowledges its records.
+     * Unknown or already completed batches are ignored.
+     *
+     * @param batchId The batch id
+     */
+    public void complete(String batchId) {
+        if (batchId == null) {
+            return;
+        }
+        PendingBatch batch = pending.remove(batchId);
+        if (batch == null) {
+            return;
+        }
+        try {
+            batch.acknowledgement().ack();
+            commitLag.record(System.nanoTime() - batch.receivedAt(), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            LOG.error("Failed to acknowledge records of batch {}. Error: {}", batchId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Marks the batch as failed and negatively acknowledges its records.
+     * Unknown or already completed batches are ignored.
+     *
+     * @param batchId The batch id
+     * @param reason  Why the batch could not be published
+     */
+    public void fail(String batchId, Throwable reason) {
+        if (batchId == null) {
+            return;
+        }
+        PendingBatch batch = pending.remove(batchId);
+        if (batch == null) {
+            return;
+        }
+        failedBatches.increment();
+        nack(batchId, batch, reason);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    void expire() {
+        long now = System.nanoTime();
+        long timeoutNanos = batchTimeout.toNanos();
+        Iterator<Map.Entry<String, PendingBatch>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingBatch> entry = iterator.next();
+            if (now - entry.getValue().receivedAt() > timeoutNanos) {
+                iterator.remove();
+                expiredBatches.increment();
+                LOG.error("Batch {} was not completed within {}, rejecting its records",
+                          entry.getKey(), batchTimeout);
+                nack(entry.getKey(), entry.getValue(),
+                     new TimeoutException("Batch " + entry.getKey() + " was not completed within " + batchTimeout));
+            }
+        }
+    }
+
+    private void nack(String batchId, PendingBatch batch, Throwable reason) {
+        try {
+            batch.acknowledgement().nack(reason);
+        } catch (Exception e) {
+            LOG.error("Failed to reject records of batch {}. Error: {}", batchId, e.getMessage(), e);
+        }
+    }
+
+    private double oldestPendingAgeMillis() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (PendingBatch batch : pending.values()) {
+            oldest = Math.max(oldest, now - batch.receivedAt());
+        }
+        return TimeUnit.NANOSECONDS.toMillis(oldest);
+    }
+}
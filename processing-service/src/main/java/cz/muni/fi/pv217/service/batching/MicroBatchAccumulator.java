@@ -0,0 +1,142 @@
+package cz.muni.fi.pv217.service.batching;
+
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.service.ProcessingOrchestrator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates parsed events of consecutive Kafka polls into enrichment batches.
+ * A batch is handed to the orchestrator once it reaches the target size of the
+ * {@link AdaptiveBatchController} or once its oldest poll has waited for the current linger.
+ * Whole polls are never split, so a batch may exceed the target by less than one poll,
+ * and the acknowledgements of all polls of a batch are passed on with it. A batch that cannot
+ * be handed over rejects the records of all its polls.
+ */
+@ApplicationScoped
+public class MicroBatchAccumulator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MicroBatchAccumulator.class);
+    private static final long LINGER_CHECK_MILLIS = 5;
+
+    @Inject
+    ProcessingOrchestrator orchestrator;
+
+    @Inject
+    AdaptiveBatchController controller;
+
+    @ConfigProperty(name = "processing.batch.adaptive.enabled", defaultValue = "true")
+    boolean enabled;
+
+    private final Object lock = new Object();
+    private List<InputEventVo> pending = new ArrayList<>();
+    private List<BatchAcknowledgement> pendingAcks = new ArrayList<>();
+    private long pendingSince;
+    private ScheduledExecutorService lingerTimer;
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "micro-batch-linger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            lingerTimer.scheduleWithFixedDelay(this::flushExpired, LINGER_CHECK_MILLIS, LINGER_CHECK_MILLIS,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (lingerTimer != null) {
+            lingerTimer.shutdownNow();
+        }
+        flush(takePending());
+    }
+
+    /**
+     * Adds the events of one poll, flushing the batch when it reached the target size.
+     *
+     * @param events The parsed events of a poll
+     * @param ack    Settles the records of the poll once its batch completed, may be null
+     */
+    public void add(List<InputEventVo> events, BatchAcknowledgement ack) {
+        if (!enabled) {
+            orchestrator.processParsedBatch(events, ack);
+            return;
+        }
+
+        Batch ready = null;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                pendingSince = System.nanoTime();
+            }
+            pending.addAll(events);
+            if (ack != null) {
+                pendingAcks.add(ack);
+            }
+            if (pending.size() >= controller.targetSize()) {
+                ready = takePendingLocked();
+            }
+        }
+        flush(ready);
+    }
+
+    void flushExpired() {
+        Batch ready = null;
+        synchronized (lock) {
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingSince);
+            if (!pending.isEmpty() && waitedMillis >= controller.lingerMillis()) {
+                ready = takePendingLocked();
+            }
+        }
+        flush(ready);
+    }
+
+    private Batch takePending() {
+        synchronized (lock) {
+            return takePendingLocked();
+        }
+    }
+
+    private Batch takePendingLocked() {
+        Batch ready = new Batch(pending, pendingAcks);
+        pending = new ArrayList<>(Math.max(ready.events().size(), controller.targetSize()));
+        pendingAcks = new ArrayList<>();
+        return ready;
+    }
+
+    private void flush(Batch ready) {
+        if (ready == null || ready.events().isEmpty()) {
+            return;
+        }
+        BatchAcknowledgement ack = ready.acks().isEmpty() ? null : BatchAcknowledgement.allOf(ready.acks());
+        try {
+            orchestrator.processParsedBatch(ready.events(), ack);
+        } catch (Exception e) {
+            // Rejected instead of left pending, so the commit of later polls is not held back
+            LOG.error("Error processing batch of {} events. Error: {}", ready.events().size(), e.getMessage(), e);
+            if (ack != null) {
+                ack.nack(e);
+            }
+        }
+    }
+
+    /**
+     * Events of the accumulated polls together with the acknowledgements of those polls.
+     */
+    private record Batch(List<InputEventVo> events, List<BatchAcknowledgement> acks) {
+    }
+}
@@ -0,0 +1,43 @@
+package cz.muni.fi.pv217.service.hotpath;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable hot path objects shared by all threads. Unlike a ThreadLocal it does not keep
+ * one instance per thread, which would never be reused on virtual threads and would pin memory
+ * on every pooled platform thread. A borrowed object is used by one thread until it is released;
+ * an empty pool creates a new object and a full pool drops the released one.
+ *
+ * @param <T> The pooled type
+ */
+public final class BoundedPool<T> {
+
+    private final BlockingQueue<T> idle;
+    private final Supplier<T> factory;
+
+    /**
+     * @param factory  Creates an object when the pool is empty
+     * @param capacity The most idle objects kept for reuse
+     */
+    public BoundedPool(Supplier<T> factory, int capacity) {
+        this.idle = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+    }
+
+    /**
+     * @return An idle object, or a new one if there is none
+     */
+    public T acquire() {
+        T object = idle.poll();
+        return object != null ? object : factory.get();
+    }
+
+    /**
+     * Returns a borrowed object for reuse, it must not be used by the caller afterwards.
+     */
+    public void release(T object) {
+        idle.offer(object);
+    }
+}
@@ -0,0 +1,113 @@
+package cz.muni.fi.pv217.service.hotpath;
+
+import cz.muni.fi.pv217.entity.vo.InputEventReading;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Mutable carrier of a single event on the hot path, reused for every event of a batch.
+ * Readings are held in primitive arrays that only grow, so once the arrays fit the largest event
+ * seen, loading, evaluating and encoding an event does not allocate per reading.
+ */
+public final class EventCarrier {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private UUID deviceId;
+    private Instant timestamp;
+    private int size;
+    private String[] metricNames = new String[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private boolean[] hasValue = new boolean[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private boolean[] violating = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Loads the event into the carrier and resolves the rule slot of every reading.
+     *
+     * @param event The input event
+     * @param index The rule index of the device
+     * @throws IllegalArgumentException if the readings are missing or contain a null reading
+     */
+    public void load(InputEventVo event, DeviceRuleIndex index) {
+        if (event.getReadings() == null) {
+            throw new IllegalArgumentException("Readings list cannot be null");
+        }
+        deviceId = event.getDeviceId();
+        timestamp = event.getTimestamp();
+        size = 0;
+        ensureCapacity(event.getReadings().size());
+
+        for (InputEventReading reading : event.getReadings()) {
+            if (reading == null) {
+                throw new IllegalArgumentException("Reading cannot be null");
+            }
+            Double value = reading.getValue();
+            metricNames[size] = reading.getMetricName();
+            hasValue[size] = value != null;
+            values[size] = value != null ? value : Double.NaN;
+            slots[size] = index.slotOf(reading.getMetricName());
+            violating[size] = false;
+            size++;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= metricNames.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, metricNames.length * 2);
+        metricNames = Arrays.copyOf(metricNames, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        hasValue = Arrays.copyOf(hasValue, newCapacity);
+        slots = Arrays.copyOf(slots, newCapacity);
+        violating = Arrays.copyOf(violating, newCapacity);
+    }
+
+    public UUID deviceId() {
+        return deviceId;
+    }
+
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Moves the loaded readings to another event time, e.g. to replay them as later readings.
+     */
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String metricName(int i) {
+        return metricNames[i];
+    }
+
+    public boolean hasValue(int i) {
+        return hasValue[i];
+    }
+
+    public double value(int i) {
+        return values[i];
+    }
+
+    public int slot(int i) {
+        return slots[i];
+    }
+
+    public boolean isViolating(int i) {
+        return violating[i];
+    }
+
+    public void setViolating(int i, boolean violatesSafety) {
+        violating[i] = violatesSafety;
+    }
+}
@@ -0,0 +1,155 @@
+package cz.muni.fi.pv217.service.hotpath;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventToMapper;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Writes processed events straight from an {@link EventCarrier} to the JSON produced for
+ * {@code ProcessedEventTo}. The device metadata part of the message is identical for every
+ * event of a device, so it is encoded once per metadata version and appended as a raw fragment.
+ * The fragments of at most processing.hot-path.max-fragments devices are kept, the least recently
+ * used ones are encoded again when their device comes back.
+ */
+@ApplicationScoped
+public class ProcessedEventEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int POOLED_BUFFERS = 64;
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final Cache<UUID, MetadataFragment> fragments;
+    private final BoundedPool<ByteArrayBuilder> buffers =
+        new BoundedPool<>(() -> new ByteArrayBuilder(INITIAL_BUFFER_SIZE), POOLED_BUFFERS);
+
+    public ProcessedEventEncoder(ObjectMapper objectMapper,
+                                 @ConfigProperty(name = "processing.hot-path.max-fragments", defaultValue = "100000")
+                                 long maxFragments) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        this.fragments = Caffeine.newBuilder().maximumSize(maxFragments).build();
+    }
+
+    /**
+     * Encodes the evaluated event held by the carrier.
+     *
+     * @param carrier  The evaluated event
+     * @param metadata The metadata of the device
+     * @param index    The rule index of the device
+     * @return The UTF-8 JSON message
+     * @throws IOException if the event cannot be written
+     */
+    public byte[] encode(EventCarrier carrier, DeviceMetadataResTo metadata, DeviceRuleIndex index) throws IOException {
+        String fragment = fragmentFor(carrier.deviceId(), metadata, index);
+        ByteArrayBuilder buffer = buffers.acquire();
+        buffer.reset();
+
+        try {
+            writeEvent(buffer, carrier, fragment);
+            return buffer.toByteArray();
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    /**
+     * Drops the cached metadata fragment of a device.
+     *
+     * @param deviceId The device id
+     */
+    public void invalidate(UUID deviceId) {
+        fragments.invalidate(deviceId);
+    }
+
+    private void writeEvent(ByteArrayBuilder buffer, EventCarrier carrier, String fragment) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+            generator.writeStartObject();
+            writeStringOrNull(generator, "deviceId", carrier.deviceId() != null ? carrier.deviceId().toString() : null);
+            writeStringOrNull(generator, "timestamp", carrier.timestamp() != null ? carrier.timestamp().toString() : null);
+            generator.writeArrayFieldStart("metrics");
+            for (int i = 0; i < carrier.size(); i++) {
+                generator.writeStartObject();
+                writeStringOrNull(generator, "metricName", carrier.metricName(i));
+                if (carrier.hasValue(i)) {
+                    generator.writeNumberField("value", carrier.value(i));
+                } else {
+                    generator.writeNullField("value");
+                }
+                generator.writeBooleanField("violatingSafety", carrier.isViolating(i));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            if (!fragment.isEmpty()) {
+                generator.writeRaw(',');
+                generator.writeRaw(fragment);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private String fragmentFor(UUID deviceId, DeviceMetadataResTo metadata, DeviceRuleIndex index) throws IOException {
+        MetadataFragment cached = deviceId != null ? fragments.getIfPresent(deviceId) : null;
+        if (cached != null && cached.matches(metadata, index)) {
+            return cached.json();
+        }
+
+        MetadataFragment fragment = new MetadataFragment(metadata, index, encodeMetadata(metadata, index));
+        if (deviceId != null) {
+            fragments.put(deviceId, fragment);
+        }
+        return fragment.json();
+    }
+
+    private String encodeMetadata(DeviceMetadataResTo metadata, DeviceRuleIndex index) throws IOException {
+        // Reuse the regular mapping so the fragment has exactly the shape of ProcessedEventTo
+        ProcessedEventVo metadataOnly = ProcessedEventVo.builder()
+            .metrics(Collections.emptyList())
+            .location(metadata.location())
+            .deviceName(metadata.deviceName())
+            .deviceType(metadata.deviceType())
+            .deviceStatus(metadata.deviceStatus())
+            .rules(index.deviceRules())
+            .build();
+        ObjectNode node = objectMapper.valueToTree(ProcessedEventToMapper.MapFrom(metadataOnly));
+        node.remove(List.of("deviceId", "timestamp", "metrics"));
+        String json = objectMapper.writeValueAsString(node);
+        return json.substring(1, json.length() - 1);
+    }
+
+    private static void writeStringOrNull(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        } else {
+            generator.writeNullField(field);
+        }
+    }
+
+    private record MetadataFragment(DeviceMetadataResTo metadata, DeviceRuleIndex index, String json) {
+
+        boolean matches(DeviceMetadataResTo other, DeviceRuleIndex otherIndex) {
+            return index == otherIndex
+                && (metadata == other
+                    || Objects.equals(metadata.location(), other.location())
+                    && Objects.equals(metadata.deviceName(), other.deviceName())
+                    && Objects.equals(metadata.deviceType(), other.deviceType())
+                    && Objects.equals(metadata.deviceStatus(), other.deviceStatus()));
+        }
+    }
+}
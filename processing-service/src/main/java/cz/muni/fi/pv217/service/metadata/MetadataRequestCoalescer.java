@@ -0,0 +1,254 @@
+package cz.muni.fi.pv217.service.metadata;
+
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.kafka.MetadataBatchRequestPublisher;
+import cz.muni.fi.pv217.kafka.dto.MetadataBatchRequest;
+import cz.muni.fi.pv217.kafka.dto.MetadataBatchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight metadata lookup shared by all batches of this instance.
+ * A device whose metadata is already requested is not requested again, its waiting batches
+ * share the pending result. Devices requested within the coalescing window are merged into
+ * one {@link MetadataBatchRequest}, which is sent early once it reaches the maximum size.
+ * <p>
+ * Responses to coalesced requests must come back to this instance, the request ids are only
+ * known here. Requests without a response are failed after the timeout so that waiting batches
+ * do not hang and the devices can be requested again.
+ */
+@ApplicationScoped
+public class MetadataRequestCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataRequestCoalescer.class);
+
+    @Inject
+    MetadataBatchRequestPublisher requestPublisher;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "processing.metadata.coalescing.window", defaultValue = "5ms")
+    Duration window;
+
+    @ConfigProperty(name = "processing.metadata.coalescing.max-devices", defaultValue = "500")
+    int maxDevices;
+
+    @ConfigProperty(name = "processing.metadata.coalescing.timeout", defaultValue = "30s")
+    Duration timeout;
+
+    // Pending result of every device that is requested or waiting to be requested
+    private final ConcurrentMap<UUID, CompletableFuture<DeviceMetadataResTo>> inFlight = new ConcurrentHashMap<>();
+    // Published requests by request id
+    private final ConcurrentMap<String, InFlightRequest> requests = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    // Devices collected in the current window, guarded by lock
+    private Map<UUID, CompletableFuture<DeviceMetadataResTo>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private ScheduledExecutorService scheduler;
+    private Counter requestedDevices;
+    private Counter coalescedDevices;
+    private Counter publishedRequests;
+    private Counter expiredRequests;
+
+    private record InFlightRequest(Map<UUID, CompletableFuture<DeviceMetadataResTo>> devices, long sentAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        requestedDevices = registry.counter("processing_metadata_requested_devices");
+        coalescedDevices = registry.counter("processing_metadata_coalesced_devices");
+        publishedRequests = registry.counter("processing_metadata_coalesced_requests");
+        expiredRequests = registry.counter("processing_metadata_expired_requests");
+        Gauge.builder("processing_metadata_in_flight_devices", inFlight, Map::size)
+            .description("Number of devices whose metadata is requested and not yet received")
+            .register(registry);
+
+        long sweepMillis = Math.max(1000, timeout.toMillis() / 4);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-request-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expire, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Requests the metadata of the given devices, reusing requests that are already in flight.
+     * The returned future completes once the metadata of every device has arrived. Devices unknown
+     * to device-management-service are missing from the resulting map.
+     *
+     * @param deviceIds The devices of a batch
+     * @return The metadata of the devices, completed exceptionally if a request timed out or its
+     *         response carried no metadata
+     */
+    public CompletableFuture<Map<UUID, DeviceMetadataResTo>> request(Collection<UUID> deviceIds) {
+        List<UUID> ids = new ArrayList<>(deviceIds.size());
+        List<CompletableFuture<DeviceMetadataResTo>> results = new ArrayList<>(deviceIds.size());
+        boolean flushNow = false;
+
+        synchronized (lock) {
+            for (UUID deviceId : deviceIds) {
+                if (deviceId == null) {
+                    continue;
+                }
+                CompletableFuture<DeviceMetadataResTo> result = inFlight.get(deviceId);
+                if (result == null) {
+                    result = new CompletableFuture<>();
+                    inFlight.put(deviceId, result);
+                    pending.put(deviceId, result);
+                    requestedDevices.increment();
+                } else {
+                    coalescedDevices.increment();
+                }
+                ids.add(deviceId);
+                results.add(result);
+            }
+
+            if (pending.size() >= maxDevices) {
+                flushNow = true;
+            } else if (!pending.isEmpty() && scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (flushNow) {
+            flush();
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> {
+                Map<UUID, DeviceMetadataResTo> metadata = new HashMap<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    DeviceMetadataResTo deviceMetadata = results.get(i).join();
+                    if (deviceMetadata != null) {
+                        metadata.put(ids.get(i), deviceMetadata);
+                    }
+                }
+                return metadata;
+            });
+    }
+
+    /**
+     * Completes the devices of a coalesced request with the received metadata. A response without
+     * metadata fails the waiting devices, as it fails the batch of a request that was not coalesced.
+     *
+     * @param response The metadata response
+     * @return true if the response belongs to a coalesced request, false if it is for someone else
+     */
+    public boolean complete(MetadataBatchResponse response) {
+        if (response == null || response.batchId() == null) {
+            return false;
+        }
+        InFlightRequest request = requests.remove(response.batchId());
+        if (request == null) {
+            return false;
+        }
+
+        Map<UUID, DeviceMetadataResTo> metadata = response.metadata();
+        IllegalStateException failure = metadata == null
+            ? new IllegalStateException("No metadata in response to request " + response.batchId())
+            : null;
+        if (failure != null) {
+            LOG.error("No metadata in response to coalesced request {}, failing {} devices",
+                      response.batchId(), request.devices().size());
+        }
+        for (Map.Entry<UUID, CompletableFuture<DeviceMetadataResTo>> device : request.devices().entrySet()) {
+            // A device re-requested after a timeout has a new result that must stay in flight
+            inFlight.remove(device.getKey(), device.getValue());
+            if (failure != null) {
+                device.getValue().completeExceptionally(failure);
+            } else {
+                device.getValue().complete(metadata.get(device.getKey()));
+            }
+        }
+        LOG.debug("Completed coalesced metadata request {} for {} devices",
+                  response.batchId(), request.devices().size());
+        return true;
+    }
+
+    /**
+     * Publishes one request for all devices collected in the current window.
+     */
+    void flush() {
+        Map<UUID, CompletableFuture<DeviceMetadataResTo>> devices;
+        synchronized (lock) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            devices = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        String requestId = UUID.randomUUID().toString();
+        // Registered before publishing, the response may arrive on another thread right away
+        requests.put(requestId, new InFlightRequest(devices, System.nanoTime()));
+        publishedRequests.increment();
+        LOG.debug("Publishing coalesced metadata request {} for {} devices", requestId, devices.size());
+        requestPublisher.publish(new MetadataBatchRequest(requestId, new ArrayList<>(devices.keySet())));
+    }
+
+    void expire() {
+        long now = System.nanoTime();
+        long timeoutNanos = timeout.toNanos();
+        Iterator<Map.Entry<String, InFlightRequest>> iterator = requests.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, InFlightRequest> entry = iterator.next();
+            InFlightRequest request = entry.getValue();
+            if (now - request.sentAt() <= timeoutNanos) {
+                continue;
+            }
+            iterator.remove();
+            expiredRequests.increment();
+            LOG.error("No metadata response for request {} within {}, failing {} devices",
+                      entry.getKey(), timeout, request.devices().size());
+            TimeoutException failure = new TimeoutException("Metadata request " + entry.getKey() + " timed out");
+            for (Map.Entry<UUID, CompletableFuture<DeviceMetadataResTo>> device : request.devices().entrySet()) {
+                inFlight.remove(device.getKey(), device.getValue());
+                device.getValue().completeExceptionally(failure);
+            }
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
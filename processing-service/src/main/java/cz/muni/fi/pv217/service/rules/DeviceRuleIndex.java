@@ -0,0 +1,155 @@
+package cz.muni.fi.pv217.service.rules;
+
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules of a single device compiled into a lookup structure.
+ * Metric ids are interned and mapped to a slot; the healthy range of every slot is kept
+ * in primitive arrays and every rule is compiled into a {@link RuleEvaluator} of its type,
+ * so evaluation does not touch the boxed values of the metadata.
+ * The index is immutable and built once per metadata version, so it can be shared
+ * by every event of the device.
+ */
+public final class DeviceRuleIndex {
+
+    public static final int NO_RULE = -1;
+
+    private final List<DeviceMetadataResTo.Rule> source;
+    private final Map<String, Integer> slots;
+    private final DeviceMetadataResTo.Rule[] rules;
+    private final String[] metricIds;
+    private final double[] from;
+    private final double[] to;
+    private final boolean[] bounded;
+    private final RuleEvaluator[] evaluators;
+    private final List<ProcessedEventVo.DeviceRule> deviceRules;
+
+    private DeviceRuleIndex(List<DeviceMetadataResTo.Rule> source) {
+        this.source = source;
+        int size = source.size();
+        this.slots = new HashMap<>(size * 2);
+        List<DeviceMetadataResTo.Rule> unique = new ArrayList<>(size);
+        List<ProcessedEventVo.DeviceRule> mappedRules = new ArrayList<>(size);
+
+        for (DeviceMetadataResTo.Rule rule : source) {
+            if (rule == null) {
+                throw new IllegalArgumentException("Rule cannot be null");
+            }
+            mappedRules.add(ProcessedEventVo.DeviceRule.builder()
+                .ruleName(rule.rule_name())
+                .from(rule.from())
+                .to(rule.to())
+                .build());
+
+            // The first rule with a given name wins, same as the previous linear scan
+            if (rule.rule_name() != null && !slots.containsKey(rule.rule_name())) {
+                slots.put(rule.rule_name().intern(), unique.size());
+                unique.add(rule);
+            }
+        }
+
+        int slotCount = unique.size();
+        this.rules = unique.toArray(new DeviceMetadataResTo.Rule[0]);
+        this.metricIds = new String[slotCount];
+        this.from = new double[slotCount];
+        this.to = new double[slotCount];
+        this.bounded = new boolean[slotCount];
+        this.evaluators = new RuleEvaluator[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            DeviceMetadataResTo.Rule rule = rules[slot];
+            metricIds[slot] = rule.rule_name().intern();
+            from[slot] = rule.from() != null ? rule.from() : Double.NaN;
+            to[slot] = rule.to() != null ? rule.to() : Double.NaN;
+            bounded[slot] = rule.from() != null && rule.to() != null;
+            evaluators[slot] = RuleCompiler.compile(rule);
+        }
+        this.deviceRules = Collections.unmodifiableList(mappedRules);
+    }
+
+    /**
+     * Compiles the rules of a device into an index.
+     *
+     * @param rules The rules received in the device metadata
+     * @return The compiled index
+     * @throws IllegalArgumentException if the rules are missing or contain a null rule
+     */
+    public static DeviceRuleIndex compile(List<DeviceMetadataResTo.Rule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            throw new IllegalArgumentException("Rules not found");
+        }
+        return new DeviceRuleIndex(rules);
+    }
+
+    /**
+     * @return true if this index was compiled from rules equal to the given ones
+     */
+    public boolean isCompiledFrom(List<DeviceMetadataResTo.Rule> rules) {
+        return source == rules || source.equals(rules);
+    }
+
+    /**
+     * @return The slot of the rule for the metric, or {@link #NO_RULE} if the device has no such rule
+     */
+    public int slotOf(String metricName) {
+        if (metricName == null) {
+            return NO_RULE;
+        }
+        Integer slot = slots.get(metricName);
+        return slot != null ? slot : NO_RULE;
+    }
+
+    public int size() {
+        return metricIds.length;
+    }
+
+    public String metricId(int slot) {
+        return metricIds[slot];
+    }
+
+    public DeviceMetadataResTo.Rule rule(int slot) {
+        return rules[slot];
+    }
+
+    public double from(int slot) {
+        return from[slot];
+    }
+
+    public double to(int slot) {
+        return to[slot];
+    }
+
+    /**
+     * @return true if the rule in the slot defines both boundaries of the healthy range
+     */
+    public boolean isBounded(int slot) {
+        return bounded[slot];
+    }
+
+    /**
+     * @return The compiled evaluator of the rule in the slot
+     */
+    public RuleEvaluator evaluator(int slot) {
+        return evaluators[slot];
+    }
+
+    /**
+     * @return A new empty evaluation state for the rules of this index
+     */
+    public DeviceRuleState newState() {
+        return new DeviceRuleState(this);
+    }
+
+    /**
+     * @return Immutable list of the device rules shared by every event of the device
+     */
+    public List<ProcessedEventVo.DeviceRule> deviceRules() {
+        return deviceRules;
+    }
+}
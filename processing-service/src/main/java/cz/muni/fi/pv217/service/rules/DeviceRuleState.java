@@ -0,0 +1,45 @@
+package cz.muni.fi.pv217.service.rules;
+
+import java.util.Arrays;
+
+/**
+ * Compact evaluation state of all rules of one device, one slot per rule of the rule index.
+ * Values are kept in primitive arrays sized once when the state is created; windowed rules
+ * get a fixed ring of violation timestamps.
+ * The state is not thread safe, callers serialize access per device.
+ */
+public final class DeviceRuleState {
+
+    private final DeviceRuleIndex index;
+    final double[] lastValue;
+    final long[] lastTimestamp;
+    final boolean[] alerting;
+    final long[][] violationRing;
+    final int[] ringHead;
+    final int[] ringSize;
+
+    DeviceRuleState(DeviceRuleIndex index) {
+        this.index = index;
+        int slots = index.size();
+        this.lastValue = new double[slots];
+        this.lastTimestamp = new long[slots];
+        this.alerting = new boolean[slots];
+        this.violationRing = new long[slots][];
+        this.ringHead = new int[slots];
+        this.ringSize = new int[slots];
+        Arrays.fill(lastValue, Double.NaN);
+        for (int slot = 0; slot < slots; slot++) {
+            int capacity = index.evaluator(slot).windowCapacity();
+            if (capacity > 0) {
+                violationRing[slot] = new long[capacity];
+            }
+        }
+    }
+
+    /**
+     * @return true if this state was created for the given rule index
+     */
+    public boolean belongsTo(DeviceRuleIndex other) {
+        return index == other;
+    }
+}
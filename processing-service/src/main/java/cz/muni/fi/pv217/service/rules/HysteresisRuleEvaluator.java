@@ -0,0 +1,38 @@
+package cz.muni.fi.pv217.service.rules;
+
+/**
+ * Healthy range with a hysteresis band to stop alerts from flapping around a boundary.
+ * An alert is raised when the value leaves [from, to] and is cleared only once the value
+ * is back inside [from + hysteresis, to - hysteresis]. Readings older than the newest reading
+ * seen do not change the alert, a newer reading already decided it.
+ */
+final class HysteresisRuleEvaluator implements RuleEvaluator {
+
+    private final double from;
+    private final double to;
+    private final double clearFrom;
+    private final double clearTo;
+
+    HysteresisRuleEvaluator(double from, double to, double hysteresis) {
+        this.from = from;
+        this.to = to;
+        this.clearFrom = from + hysteresis;
+        this.clearTo = to - hysteresis;
+    }
+
+    @Override
+    public boolean evaluate(double value, long timestampMillis, DeviceRuleState state, int slot) {
+        boolean alerting = state.alerting[slot];
+        if (timestampMillis < state.lastTimestamp[slot]) {
+            return alerting;
+        }
+        state.lastTimestamp[slot] = timestampMillis;
+        if (alerting) {
+            alerting = value < clearFrom || value > clearTo;
+        } else {
+            alerting = value < from || value > to;
+        }
+        state.alerting[slot] = alerting;
+        return alerting;
+    }
+}
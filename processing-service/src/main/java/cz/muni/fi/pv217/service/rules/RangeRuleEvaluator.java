@@ -0,0 +1,20 @@
+package cz.muni.fi.pv217.service.rules;
+
+/**
+ * Static healthy range: a reading violates the rule when it is outside [from, to].
+ */
+final class RangeRuleEvaluator implements RuleEvaluator {
+
+    private final double from;
+    private final double to;
+
+    RangeRuleEvaluator(double from, double to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean evaluate(double value, long timestampMillis, DeviceRuleState state, int slot) {
+        return value < from || value > to;
+    }
+}
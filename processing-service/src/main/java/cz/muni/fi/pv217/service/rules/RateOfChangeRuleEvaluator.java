@@ -0,0 +1,37 @@
+package cz.muni.fi.pv217.service.rules;
+
+/**
+ * Rate-of-change limit: the change of the value per second since the previous reading
+ * must stay within [from, to]. The first reading only initializes the state and readings
+ * that are not newer than the previous one are ignored.
+ */
+final class RateOfChangeRuleEvaluator implements RuleEvaluator {
+
+    private final double minRatePerSecond;
+    private final double maxRatePerSecond;
+
+    RateOfChangeRuleEvaluator(double minRatePerSecond, double maxRatePerSecond) {
+        this.minRatePerSecond = minRatePerSecond;
+        this.maxRatePerSecond = maxRatePerSecond;
+    }
+
+    @Override
+    public boolean evaluate(double value, long timestampMillis, DeviceRuleState state, int slot) {
+        double previous = state.lastValue[slot];
+        long previousTimestamp = state.lastTimestamp[slot];
+
+        if (Double.isNaN(previous)) {
+            state.lastValue[slot] = value;
+            state.lastTimestamp[slot] = timestampMillis;
+            return false;
+        }
+        if (timestampMillis <= previousTimestamp) {
+            return false;
+        }
+
+        double rate = (value - previous) * 1000.0 / (timestampMillis - previousTimestamp);
+        state.lastValue[slot] = value;
+        state.lastTimestamp[slot] = timestampMillis;
+        return rate < minRatePerSecond || rate > maxRatePerSecond;
+    }
+}
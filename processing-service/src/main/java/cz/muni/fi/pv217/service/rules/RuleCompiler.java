@@ -0,0 +1,68 @@
+package cz.muni.fi.pv217.service.rules;
+
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles rule definitions received from device-management-service into evaluators.
+ * New rule types are added by extending {@link RuleType} and mapping them here.
+ * Definitions of unknown types or with invalid parameters are rejected: they are logged and never
+ * report a violation, instead of being evaluated as a rule the device owner did not define.
+ * device-management-service validates the parameters, so only stale or foreign definitions end up here.
+ */
+public final class RuleCompiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RuleCompiler.class);
+
+    // Evaluator for rules without both range boundaries, it never reports a violation
+    static final RuleEvaluator UNBOUNDED = (value, timestampMillis, state, slot) -> false;
+
+    // Evaluator for rejected definitions, it never reports a violation either
+    static final RuleEvaluator REJECTED = (value, timestampMillis, state, slot) -> false;
+
+    private RuleCompiler() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public static RuleEvaluator compile(DeviceMetadataResTo.Rule rule) {
+        if (rule.from() == null || rule.to() == null) {
+            return UNBOUNDED;
+        }
+        double from = rule.from();
+        double to = rule.to();
+
+        RuleType type;
+        try {
+            type = RuleType.fromName(rule.rule_type());
+        } catch (IllegalArgumentException e) {
+            LOG.error("Unknown rule type '{}' of rule '{}', the rule is not evaluated",
+                      rule.rule_type(), rule.rule_name());
+            return REJECTED;
+        }
+
+        switch (type) {
+            case RATE_OF_CHANGE:
+                return new RateOfChangeRuleEvaluator(from, to);
+            case HYSTERESIS:
+                double hysteresis = rule.hysteresis() != null ? rule.hysteresis() : 0.0;
+                if (hysteresis < 0 || from + hysteresis > to - hysteresis) {
+                    LOG.error("Invalid hysteresis {} of rule '{}', the rule is not evaluated",
+                              hysteresis, rule.rule_name());
+                    return REJECTED;
+                }
+                return new HysteresisRuleEvaluator(from, to, hysteresis);
+            case WINDOWED:
+                if (rule.window_seconds() == null || rule.window_seconds() <= 0
+                        || rule.violation_count() == null || rule.violation_count() <= 0) {
+                    LOG.error("Missing window parameters of rule '{}', the rule is not evaluated",
+                              rule.rule_name());
+                    return REJECTED;
+                }
+                return new WindowedRuleEvaluator(from, to, rule.window_seconds() * 1000L, rule.violation_count());
+            case RANGE:
+            default:
+                return new RangeRuleEvaluator(from, to);
+        }
+    }
+}
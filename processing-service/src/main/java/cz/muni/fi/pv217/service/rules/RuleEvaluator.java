@@ -0,0 +1,28 @@
+package cz.muni.fi.pv217.service.rules;
+
+/**
+ * Compiled evaluator of a single device rule.
+ * Evaluators are immutable and hold only primitive parameters; anything that has to be
+ * remembered between readings lives in the {@link DeviceRuleState} slot of the rule,
+ * so evaluating a reading does not allocate.
+ */
+public interface RuleEvaluator {
+
+    /**
+     * Evaluates a reading of the metric the rule belongs to.
+     *
+     * @param value           The reading value
+     * @param timestampMillis Event time of the reading
+     * @param state           Per-device state of the rules
+     * @param slot            Slot of this rule in the device rule index and state
+     * @return true if the reading violates the rule
+     */
+    boolean evaluate(double value, long timestampMillis, DeviceRuleState state, int slot);
+
+    /**
+     * @return Number of violation timestamps the rule needs to remember, 0 for rules without a window
+     */
+    default int windowCapacity() {
+        return 0;
+    }
+}
@@ -0,0 +1,88 @@
+package cz.muni.fi.pv217.service.rules;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keeps the compiled rule index of the devices seen in metadata responses, at most
+ * processing.rules.max-devices of them, dropping the least recently used ones.
+ * An index is keyed by the device version of the metadata, so a response of an unchanged device
+ * is served without comparing its rules. Only when the version changed, or the metadata carries
+ * none, are the rules compared, and the index is recompiled only if they differ.
+ */
+@ApplicationScoped
+public class RuleIndexCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RuleIndexCache.class);
+
+    private static final long DEFAULT_MAX_DEVICES = 100_000;
+
+    private final Cache<UUID, VersionedIndex> indexes;
+
+    private record VersionedIndex(Long version, DeviceRuleIndex index) {
+    }
+
+    public RuleIndexCache() {
+        this(DEFAULT_MAX_DEVICES);
+    }
+
+    @Inject
+    public RuleIndexCache(@ConfigProperty(name = "processing.rules.max-devices", defaultValue = "100000")
+                          long maxDevices) {
+        this.indexes = Caffeine.newBuilder().maximumSize(maxDevices).build();
+    }
+
+    /**
+     * Returns the rule index for the device, compiling it if the metadata carries new rules.
+     *
+     * @param deviceId The device ID
+     * @param metadata The metadata received for the device
+     * @return The compiled rule index
+     * @throws IllegalArgumentException if the metadata has no rules or contains a null rule
+     */
+    public DeviceRuleIndex indexFor(UUID deviceId, DeviceMetadataResTo metadata) {
+        if (metadata == null) {
+            throw new IllegalArgumentException("Metadata cannot be null");
+        }
+        VersionedIndex current = deviceId != null ? indexes.getIfPresent(deviceId) : null;
+        if (current != null && metadata.version() != null && metadata.version().equals(current.version())) {
+            return current.index();
+        }
+
+        DeviceRuleIndex index;
+        if (current != null && current.index().isCompiledFrom(metadata.rules())) {
+            // Something else of the device changed, the index and the rule state built on it stay
+            index = current.index();
+        } else {
+            index = DeviceRuleIndex.compile(metadata.rules());
+            LOG.debug("Compiled rule index with {} rules for device {}", index.size(), deviceId);
+        }
+        if (deviceId != null && (current == null || current.index() != index
+                || !Objects.equals(current.version(), metadata.version()))) {
+            indexes.put(deviceId, new VersionedIndex(metadata.version(), index));
+        }
+        return index;
+    }
+
+    /**
+     * Drops the rule index of a device whose rules changed or that was deleted.
+     *
+     * @param deviceId The device id
+     */
+    public void invalidate(UUID deviceId) {
+        indexes.invalidate(deviceId);
+    }
+
+    public long size() {
+        return indexes.estimatedSize();
+    }
+}
@@ -0,0 +1,22 @@
+package cz.muni.fi.pv217.service.rules;
+
+/**
+ * Evaluation types of device rules, matching the rule types of device-management-service.
+ */
+public enum RuleType {
+    RANGE,
+    RATE_OF_CHANGE,
+    HYSTERESIS,
+    WINDOWED;
+
+    /**
+     * @return The rule type with the given name, RANGE when the name is missing
+     * @throws IllegalArgumentException if the name is not a known rule type
+     */
+    public static RuleType fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return RANGE;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,53 @@
+package cz.muni.fi.pv217.service.rules;
+
+/**
+ * Windowed range rule: a reading violates the rule when it is outside [from, to] and it is
+ * at least the N-th such reading within the last T seconds. Timestamps of the last N range
+ * violations are kept in a fixed ring of the rule state slot. Readings older than the newest
+ * reading seen are ignored, they would put the ring out of order.
+ */
+final class WindowedRuleEvaluator implements RuleEvaluator {
+
+    private final double from;
+    private final double to;
+    private final long windowMillis;
+    private final int violationCount;
+
+    WindowedRuleEvaluator(double from, double to, long windowMillis, int violationCount) {
+        this.from = from;
+        this.to = to;
+        this.windowMillis = windowMillis;
+        this.violationCount = violationCount;
+    }
+
+    @Override
+    public boolean evaluate(double value, long timestampMillis, DeviceRuleState state, int slot) {
+        if (timestampMillis < state.lastTimestamp[slot]) {
+            return false;
+        }
+        state.lastTimestamp[slot] = timestampMillis;
+        if (value >= from && value <= to) {
+            return false;
+        }
+
+        long[] ring = state.violationRing[slot];
+        int head = state.ringHead[slot];
+        ring[head] = timestampMillis;
+        head = head + 1 == violationCount ? 0 : head + 1;
+        state.ringHead[slot] = head;
+        if (state.ringSize[slot] < violationCount) {
+            state.ringSize[slot]++;
+        }
+
+        if (state.ringSize[slot] < violationCount) {
+            return false;
+        }
+        // After advancing, the head points to the oldest of the last N violations
+        return timestampMillis - ring[head] <= windowMillis;
+    }
+
+    @Override
+    public int windowCapacity() {
+        return violationCount;
+    }
+}
@@ -0,0 +1,78 @@
+package cz.muni.fi.pv217.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.kafka.MetadataBatchRequestPublisher;
+import cz.muni.fi.pv217.kafka.dto.MetadataBatchRequest;
+import cz.muni.fi.pv217.kafka.dto.MetadataBatchResponse;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.spi.Connector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers metadata requests in process instead of going through device-management-service.
+ * Responses are sent as JSON to the in-memory metadata-batch-responses channel from a separate
+ * thread, so they are handled by MetadataBatchResponseListener on virtual threads or on the worker
+ * pool, the execution model compared by {@link WorkerThreadsPipelineBenchmark}.
+ */
+@Alternative
+@ApplicationScoped
+public class InProcessMetadataResponder extends MetadataBatchRequestPublisher {
+
+    @Inject
+    @Connector("smallrye-in-memory")
+    InMemoryConnector connector;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    private final ExecutorService responder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "benchmark-metadata-responder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<UUID, DeviceMetadataResTo> metadata = Map.of();
+
+    /**
+     * Sets the metadata served for the devices of the current scenario.
+     */
+    public void serve(Map<UUID, DeviceMetadataResTo> metadata) {
+        this.metadata = metadata;
+    }
+
+    @Override
+    public void publish(MetadataBatchRequest request) {
+        Map<UUID, DeviceMetadataResTo> served = metadata;
+        Map<UUID, DeviceMetadataResTo> found = new HashMap<>(request.deviceIds().size() * 2);
+        for (UUID deviceId : request.deviceIds()) {
+            DeviceMetadataResTo deviceMetadata = served.get(deviceId);
+            if (deviceMetadata != null) {
+                found.put(deviceId, deviceMetadata);
+            }
+        }
+        MetadataBatchResponse response = new MetadataBatchResponse(request.batchId(), found);
+        responder.execute(() -> {
+            try {
+                connector.source("metadata-batch-responses").send(objectMapper.writeValueAsString(response));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize metadata response of batch " + response.batchId(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        responder.shutdownNow();
+    }
+}
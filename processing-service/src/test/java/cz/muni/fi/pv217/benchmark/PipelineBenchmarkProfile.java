@@ -0,0 +1,42 @@
+package cz.muni.fi.pv217.benchmark;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the processing pipeline fully in process: every Kafka channel is switched to the
+ * in-memory connector, batches are cached in memory (see PipelineThroughputBenchmark) and
+ * metadata is answered in process.
+ */
+public class PipelineBenchmarkProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> config = new HashMap<>();
+        config.put("%test.mp.messaging.incoming.sensor-ingest.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.incoming.metadata-batch-responses.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.incoming.device-change-events.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.outgoing.metadata-batch-requests.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.outgoing.processed-data-stream.connector", "smallrye-in-memory");
+        config.put("%test.mp.messaging.outgoing.metric-aggregates.connector", "smallrye-in-memory");
+        config.put("quarkus.kafka.devservices.enabled", "false");
+        config.put("quarkus.redis.devservices.enabled", "false");
+        // Every poll becomes one enrichment batch, so the scenario batch size is exact
+        config.put("processing.batch.adaptive.enabled", "false");
+        // Every event is published, the sink measures the latency of each of them
+        config.put("processing.publish.processed-events", "all");
+        config.put("quarkus.log.category.\"cz.muni.fi.pv217\".level", "WARN");
+        config.put("quarkus.log.category.\"cz.muni.fi.pv217.benchmark\".level", "INFO");
+        return config;
+    }
+
+    @Override
+    public Set<Class<?>> getEnabledAlternatives() {
+        return Set.of(
+            InProcessMetadataResponder.class,
+            RecordingProcessedEventPublisher.class);
+    }
+}
@@ -0,0 +1,184 @@
+package cz.muni.fi.pv217.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.muni.fi.pv217.cache.BatchCacheService;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectMock;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.spi.Connector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+/**
+ * End-to-end throughput benchmark of the processing pipeline inside one JVM.
+ * Raw messages enter through the sensor-ingest channel and run through InputEventListener,
+ * ProcessingOrchestrator, EventDataEnricher and ProcessedEventPublisher, with in-memory
+ * connectors, a mocked batch cache keeping the batches as JSON in memory and an in-process
+ * metadata responder whose responses pass MetadataBatchResponseListener.
+ * <p>
+ * Logs events per second, allocated bytes per event and publish latency percentiles for
+ * every combination of batch size, device count and rules per device, and checks that every
+ * event was acknowledged by the sink within the timeout. Not part of the regular test run,
+ * start it with {@code mvn test -Ppipeline-benchmark -pl processing-service}.
+ */
+@QuarkusTest
+@TestProfile(PipelineBenchmarkProfile.class)
+@DisplayName("Pipeline Throughput Benchmark")
+class PipelineThroughputBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineThroughputBenchmark.class);
+    private static final int[] BATCH_SIZES = {100, 500};
+    private static final int[] DEVICE_COUNTS = {10, 1000};
+    private static final int[] RULES_PER_DEVICE = {1, 100};
+    private static final int EVENTS = Integer.getInteger("benchmark.events", 20_000);
+    private static final int WARMUP_EVENTS = Integer.getInteger("benchmark.warmup-events", 10_000);
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    @Inject
+    @Connector("smallrye-in-memory")
+    InMemoryConnector connector;
+
+    @Inject
+    InProcessMetadataResponder metadataResponder;
+
+    @Inject
+    RecordingProcessedEventPublisher publisher;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @InjectMock
+    BatchCacheService batchCache;
+
+    @BeforeEach
+    void setUp() {
+        // Batches still take the JSON round trip of the Redis store, only the network is left out
+        Map<String, String> batches = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            batches.put(invocation.getArgument(0), objectMapper.writeValueAsString(invocation.getArgument(1)));
+            return null;
+        }).when(batchCache).storeBatch(anyString(), anyList());
+        when(batchCache.retrieveBatch(anyString())).thenAnswer(invocation -> {
+            String json = batches.get(invocation.<String>getArgument(0));
+            return json != null ? objectMapper.readValue(json, new TypeReference<List<InputEventVo>>() {}) : null;
+        });
+        doAnswer(invocation -> batches.remove(invocation.<String>getArgument(0)))
+            .when(batchCache).removeBatch(anyString());
+    }
+
+    @Test
+    @DisplayName("Measure pipeline throughput across batch sizes, device counts and rules per device")
+    void measureThroughput() throws Exception {
+        // Warm up the JIT with a mid-sized scenario
+        run(WARMUP_EVENTS, 100, 100, 10);
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%8s %8s %6s %12s %14s %8s %8s %8s",
+            "batch", "devices", "rules", "events/s", "bytes/event", "p50 ms", "p95 ms", "p99 ms"));
+        for (int batchSize : BATCH_SIZES) {
+            for (int devices : DEVICE_COUNTS) {
+                for (int rules : RULES_PER_DEVICE) {
+                    Result result = run(EVENTS, batchSize, devices, rules);
+                    assertTrue(result.p99() <= TIMEOUT_MILLIS, "Events should be published within the timeout");
+                    report.add(result.format(batchSize, devices, rules));
+                }
+            }
+        }
+        LOG.info("Pipeline throughput{}{}", System.lineSeparator(), String.join(System.lineSeparator(), report));
+    }
+
+    private Result run(int events, int batchSize, int deviceCount, int rulesPerDevice) throws InterruptedException {
+        List<UUID> devices = new ArrayList<>(deviceCount);
+        Map<UUID, DeviceMetadataResTo> metadata = new HashMap<>(deviceCount * 2);
+        for (int i = 0; i < deviceCount; i++) {
+            UUID deviceId = UUID.randomUUID();
+            devices.add(deviceId);
+            metadata.put(deviceId, createMetadata(rulesPerDevice));
+        }
+        metadataResponder.serve(metadata);
+        publisher.reset(events);
+        connector.sink("processed-data-stream").clear();
+        connector.sink("metric-aggregates").clear();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        for (int sent = 0; sent < events; sent += batchSize) {
+            int size = Math.min(batchSize, events - sent);
+            List<byte[]> poll = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                poll.add(createMessage(devices.get((sent + i) % deviceCount)));
+            }
+            connector.source("sensor-ingest").send(poll);
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (publisher.published() < events && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+
+        assertEquals(events, publisher.published(), "Every event should be acknowledged by the sink");
+        connector.sink("processed-data-stream").clear();
+        connector.sink("metric-aggregates").clear();
+
+        return new Result(
+            events / (elapsed / 1_000_000_000.0),
+            allocated / (double) events,
+            publisher.percentileMillis(0.50),
+            publisher.percentileMillis(0.95),
+            publisher.percentileMillis(0.99));
+    }
+
+    private DeviceMetadataResTo createMetadata(int rulesPerDevice) {
+        List<DeviceMetadataResTo.Rule> rules = new ArrayList<>(rulesPerDevice);
+        rules.add(new DeviceMetadataResTo.Rule("temperature", -40.0, 85.0));
+        for (int i = 1; i < rulesPerDevice; i++) {
+            rules.add(new DeviceMetadataResTo.Rule("metric" + i, 0.0, 100.0));
+        }
+        return new DeviceMetadataResTo(Map.of("latitude", 49.2, "longitude", 16.6),
+            "Benchmark device", "SENSOR", "ACTIVE", rules);
+    }
+
+    private byte[] createMessage(UUID deviceId) {
+        // The timestamp is the send time, so publish latency is measured from entering the pipeline
+        return ("{\"deviceId\":\"" + deviceId + "\",\"timestamp\":\"" + Instant.now() + "\","
+            + "\"readings\":[{\"temperature\":21.5,\"metric1\":42.0,\"humidity\":55}]}")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Result(double eventsPerSecond, double bytesPerEvent, long p50, long p95, long p99) {
+
+        String format(int batchSize, int devices, int rules) {
+            return String.format("%8d %8d %6d %12.0f %14.0f %8d %8d %8d",
+                batchSize, devices, rules, eventsPerSecond, bytesPerEvent, p50, p95, p99);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package cz.muni.fi.pv217.benchmark;
+
+import cz.muni.fi.pv217.controller.ProcessedEventPublisher;
+import cz.muni.fi.pv217.entity.to.ProcessedEventTo;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publisher that records how many events were acknowledged by the sink and how long after their
+ * timestamp they were published, for the mapped events as well as for the events serialized on
+ * the hot path. Events are still serialized and sent to the in-memory sink.
+ */
+@Alternative
+@ApplicationScoped
+public class RecordingProcessedEventPublisher extends ProcessedEventPublisher {
+
+    private static final byte[] TIMESTAMP_FIELD = "\"timestamp\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private final AtomicInteger published = new AtomicInteger();
+    private long[] latencies = new long[0];
+    private int recorded;
+
+    /**
+     * Starts a new recording for the given number of expected events.
+     */
+    public synchronized void reset(int expectedEvents) {
+        published.set(0);
+        latencies = new long[expectedEvents];
+        recorded = 0;
+    }
+
+    /**
+     * @return Number of events acknowledged by the sink since the last reset
+     */
+    public int published() {
+        return published.get();
+    }
+
+    /**
+     * @return Latency percentile in milliseconds, e.g. 0.99 for p99
+     */
+    public synchronized long percentileMillis(double percentile) {
+        if (recorded == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, recorded);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(recorded - 1, Math.ceil(percentile * recorded) - 1);
+        return sorted[Math.max(index, 0)];
+    }
+
+    @Override
+    public CompletionStage<Integer> publishBatch(List<ProcessedEventTo> events) {
+        long[] timestamps = new long[events.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = events.get(i).getTimestamp().toEpochMilli();
+        }
+        return super.publishBatch(events).thenApply(acknowledged -> record(acknowledged, timestamps));
+    }
+
+    @Override
+    public CompletionStage<Integer> publishSerialized(List<byte[]> messages) {
+        long[] timestamps = new long[messages.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = timestamp(messages.get(i));
+        }
+        return super.publishSerialized(messages).thenApply(acknowledged -> record(acknowledged, timestamps));
+    }
+
+    private int record(int acknowledged, long[] timestamps) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (long timestamp : timestamps) {
+                if (recorded < latencies.length) {
+                    latencies[recorded++] = now - timestamp;
+                }
+            }
+        }
+        published.addAndGet(acknowledged);
+        return acknowledged;
+    }
+
+    // The timestamp written by ProcessedEventEncoder, read without parsing the whole event
+    private static long timestamp(byte[] message) {
+        int start = indexOf(message, TIMESTAMP_FIELD);
+        if (start < 0) {
+            throw new IllegalStateException("Serialized event without a timestamp");
+        }
+        start += TIMESTAMP_FIELD.length;
+        int end = start;
+        while (message[end] != '"') {
+            end++;
+        }
+        return Instant.parse(new String(message, start, end - start, StandardCharsets.US_ASCII)).toEpochMilli();
+    }
+
+    private static int indexOf(byte[] message, byte[] field) {
+        outer:
+        for (int i = 0; i <= message.length - field.length; i++) {
+            for (int j = 0; j < field.length; j++) {
+                if (message[i + j] != field[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
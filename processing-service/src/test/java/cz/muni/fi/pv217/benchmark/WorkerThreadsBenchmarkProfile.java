@@ -0,0 +1,17 @@
+package cz.muni.fi.pv217.benchmark;
+
+import java.util.Map;
+
+/**
+ * The pipeline benchmark profile with the metadata-batch-responses handler on the worker pool instead of virtual threads,
+ * the baseline for comparing both execution models.
+ */
+public class WorkerThreadsBenchmarkProfile extends PipelineBenchmarkProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> config = super.getConfigOverrides();
+        config.put("quarkus.virtual-threads.enabled", "false");
+        return config;
+    }
+}
@@ -0,0 +1,18 @@
+package cz.muni.fi.pv217.benchmark;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.DisplayName;
+
+/**
+ * Runs the scenarios of {@link PipelineThroughputBenchmark} with the metadata-batch-responses handler
+ * on the worker pool. It is the only handler of the pipeline on virtual threads, sensor-ingest is
+ * ordered on the worker pool in both runs, so comparing both reports shows the throughput of virtual
+ * threads against the worker model for completing batches. Carrier pinning is printed by
+ * -Djdk.tracePinnedThreads in the pipeline-benchmark profile.
+ */
+@QuarkusTest
+@TestProfile(WorkerThreadsBenchmarkProfile.class)
+@DisplayName("Pipeline Throughput Benchmark on Worker Threads")
+class WorkerThreadsPipelineBenchmark extends PipelineThroughputBenchmark {
+}
@@ -15,6 +15,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
@@ -332,5 +333,41 @@ class BatchCacheServiceTest {
         assertDoesNotThrow(() -> batchCacheService.removeBatch(batchId),
             "Should handle Redis exception gracefully");
     }
-}
 
+    // ==================== Local Store Tests ====================
+
+    @Test
+    @DisplayName("Should keep batches in memory without touching Redis when the local store is enabled")
+    void testLocalStore_RoundTrip() {
+        // Arrange
+        batchCacheService.local = true;
+        List<InputEventVo> events = createEventList();
+
+        // Act
+        batchCacheService.storeBatch("batch-local", events);
+        List<InputEventVo> retrieved = batchCacheService.retrieveBatch("batch-local");
+        batchCacheService.removeBatch("batch-local");
+
+        // Assert
+        assertSame(events, retrieved);
+        assertNull(batchCacheService.retrieveBatch("batch-local"));
+        verifyNoInteractions(valueCommands);
+    }
+
+    @Test
+    @DisplayName("Should prune locally stored batches once they reach the cache TTL")
+    void testLocalStore_PrunesExpiredBatches() {
+        // Arrange
+        batchCacheService.local = true;
+        batchCacheService.storeBatch("batch-local", createEventList());
+
+        // Act
+        batchCacheService.pruneLocalBatches(System.nanoTime());
+        List<InputEventVo> fresh = batchCacheService.retrieveBatch("batch-local");
+        batchCacheService.pruneLocalBatches(System.nanoTime() + Duration.ofMinutes(11).toNanos());
+
+        // Assert
+        assertNotNull(fresh, "Batches within the TTL should be kept");
+        assertNull(batchCacheService.retrieveBatch("batch-local"));
+    }
+}
@@ -0,0 +1,120 @@
+package cz.muni.fi.pv217.controller;
+
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BatchDecoder Unit Tests")
+class BatchDecoderTest {
+
+    private BatchDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        decoder = new BatchDecoder();
+        decoder.parallelThreshold = 8;
+        decoder.maxPollRecords = 500;
+        decoder.threads = Optional.of(3);
+        decoder.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        decoder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep offset order when decoding a large batch in parallel")
+    void testDecode_ParallelKeepsOrder() {
+        // Arrange
+        List<UUID> deviceIds = new ArrayList<>();
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID deviceId = UUID.randomUUID();
+            deviceIds.add(deviceId);
+            messages.add(createMessage(deviceId));
+        }
+
+        // Act
+        BatchDecoder.DecodedBatch result = decoder.decode(messages);
+
+        // Assert
+        assertEquals(0, result.failed());
+        assertEquals(100, result.events().size());
+        for (int i = 0; i < deviceIds.size(); i++) {
+            assertEquals(deviceIds.get(i), result.events().get(i).getDeviceId(), "Event " + i + " out of order");
+        }
+    }
+
+    @Test
+    @DisplayName("Should decode a full poll in parallel when the threshold exceeds the poll size")
+    void testDecode_ThresholdAbovePollSize() {
+        // Arrange
+        decoder.shutdown();
+        decoder = new BatchDecoder();
+        decoder.parallelThreshold = 512;
+        decoder.maxPollRecords = 500;
+        decoder.threads = Optional.of(3);
+        decoder.init();
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            messages.add(createMessage(UUID.randomUUID()));
+        }
+
+        // Act
+        BatchDecoder.DecodedBatch result = decoder.decode(messages);
+
+        // Assert
+        assertEquals(500, result.events().size());
+        assertEquals(2, decoder.pool.getTaskCount(), "Chunks after the first should run on the decoder pool");
+    }
+
+    @Test
+    @DisplayName("Should skip and count invalid messages in every chunk")
+    void testDecode_InvalidMessages() {
+        // Arrange
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            messages.add(i % 10 == 5 ? "invalid json".getBytes(StandardCharsets.UTF_8) : createMessage(UUID.randomUUID()));
+        }
+
+        // Act
+        BatchDecoder.DecodedBatch result = decoder.decode(messages);
+
+        // Assert
+        assertEquals(3, result.failed());
+        assertEquals(27, result.events().size());
+    }
+
+    @Test
+    @DisplayName("Should decode small batches on the calling thread")
+    void testDecode_BelowThreshold() {
+        // Arrange
+        UUID deviceId = UUID.randomUUID();
+
+        // Act
+        BatchDecoder.DecodedBatch result = decoder.decode(List.of(createMessage(deviceId)));
+
+        // Assert
+        List<InputEventVo> events = result.events();
+        assertEquals(1, events.size());
+        assertEquals(deviceId, events.get(0).getDeviceId());
+    }
+
+    // ==================== Helper Methods ====================
+
+    private byte[] createMessage(UUID deviceId) {
+        return ("{\"deviceId\":\"" + deviceId + "\",\"timestamp\":\"2024-01-01T10:00:00Z\","
+            + "\"readings\":[{\"temperature\":25.5}]}").getBytes(StandardCharsets.UTF_8);
+    }
+}
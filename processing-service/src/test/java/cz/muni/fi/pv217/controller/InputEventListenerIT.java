@@ -1,7 +1,7 @@
 package cz.muni.fi.pv217.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import cz.muni.fi.pv217.entity.to.InputEventTo;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
 import cz.muni.fi.pv217.service.ProcessingOrchestrator;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusTest;
@@ -78,19 +78,19 @@ class InputEventListenerIT {
         // Assert
         await().atMost(Duration.ofSeconds(10))
             .untilAsserted(() -> {
-                ArgumentCaptor<List<InputEventTo>> captor = ArgumentCaptor.forClass(List.class);
-                verify(orchestrator, atLeastOnce()).processBatch(captor.capture());
+                ArgumentCaptor<List<InputEventVo>> captor = ArgumentCaptor.forClass(List.class);
+                verify(orchestrator, atLeastOnce()).processParsedBatch(captor.capture(), any());
 
-                List<InputEventTo> events = captor.getValue();
+                List<InputEventVo> events = captor.getValue();
                 assertFalse(events.isEmpty(), "Should have processed at least one event");
 
-                InputEventTo event = events.stream()
-                    .filter(e -> e.deviceId().equals(deviceId))
+                InputEventVo event = events.stream()
+                    .filter(e -> e.getDeviceId().equals(deviceId))
                     .findFirst()
                     .orElse(null);
 
                 assertNotNull(event, "Should find event with deviceId " + deviceId);
-                assertEquals(timestamp, event.timestamp());
+                assertEquals(timestamp, event.getTimestamp());
             });
     }
 
@@ -113,11 +113,11 @@ class InputEventListenerIT {
         // Assert
         await().atMost(Duration.ofSeconds(10))
             .untilAsserted(() -> {
-                ArgumentCaptor<List<InputEventTo>> captor = ArgumentCaptor.forClass(List.class);
-                verify(orchestrator, atLeastOnce()).processBatch(captor.capture());
+                ArgumentCaptor<List<InputEventVo>> captor = ArgumentCaptor.forClass(List.class);
+                verify(orchestrator, atLeastOnce()).processParsedBatch(captor.capture(), any());
 
                 // Get all captured events across all invocations
-                List<List<InputEventTo>> allBatches = captor.getAllValues();
+                List<List<InputEventVo>> allBatches = captor.getAllValues();
                 long totalEvents = allBatches.stream()
                     .flatMap(List::stream)
                     .count();
@@ -139,11 +139,11 @@ class InputEventListenerIT {
         // Assert
         await().atMost(Duration.ofSeconds(10))
             .untilAsserted(() -> {
-                ArgumentCaptor<List<InputEventTo>> captor = ArgumentCaptor.forClass(List.class);
-                verify(orchestrator, atLeastOnce()).processBatch(captor.capture());
+                ArgumentCaptor<List<InputEventVo>> captor = ArgumentCaptor.forClass(List.class);
+                verify(orchestrator, atLeastOnce()).processParsedBatch(captor.capture(), any());
 
                 // Get all captured events
-                List<List<InputEventTo>> allBatches = captor.getAllValues();
+                List<List<InputEventVo>> allBatches = captor.getAllValues();
                 long totalEvents = allBatches.stream()
                     .flatMap(List::stream)
                     .count();
@@ -170,7 +170,7 @@ class InputEventListenerIT {
             .untilAsserted(() -> {
                 // Verify that if orchestrator was called, it wasn't with invalid data
                 // The listener should skip invalid messages
-                verify(orchestrator, atMost(1)).processBatch(any());
+                verify(orchestrator, atMost(1)).processParsedBatch(any(), any());
             });
     }
 
@@ -193,11 +193,11 @@ class InputEventListenerIT {
         // Assert - should process valid messages and skip invalid ones
         await().atMost(Duration.ofSeconds(10))
             .untilAsserted(() -> {
-                ArgumentCaptor<List<InputEventTo>> captor = ArgumentCaptor.forClass(List.class);
-                verify(orchestrator, atLeastOnce()).processBatch(captor.capture());
+                ArgumentCaptor<List<InputEventVo>> captor = ArgumentCaptor.forClass(List.class);
+                verify(orchestrator, atLeastOnce()).processParsedBatch(captor.capture(), any());
 
                 // Get all valid events processed
-                List<List<InputEventTo>> allBatches = captor.getAllValues();
+                List<List<InputEventVo>> allBatches = captor.getAllValues();
                 long totalEvents = allBatches.stream()
                     .flatMap(List::stream)
                     .count();
@@ -217,7 +217,7 @@ class InputEventListenerIT {
         // First call throws exception, second call succeeds
         doThrow(new RuntimeException("Processing error"))
             .doNothing()
-            .when(orchestrator).processBatch(any());
+            .when(orchestrator).processParsedBatch(any(), any());
 
         // Act
         companion.produce(String.class, String.class)
@@ -226,7 +226,7 @@ class InputEventListenerIT {
         // Wait a bit for first message to be processed
         await().pollDelay(Duration.ofSeconds(1))
             .atMost(Duration.ofSeconds(3))
-            .untilAsserted(() -> verify(orchestrator, atLeastOnce()).processBatch(any()));
+            .untilAsserted(() -> verify(orchestrator, atLeastOnce()).processParsedBatch(any(), any()));
 
         // Send second message
         companion.produce(String.class, String.class)
@@ -235,7 +235,7 @@ class InputEventListenerIT {
         // Assert - should have called orchestrator at least twice (once failed, once succeeded)
         await().atMost(Duration.ofSeconds(10))
             .untilAsserted(() -> {
-                verify(orchestrator, atLeast(2)).processBatch(any());
+                verify(orchestrator, atLeast(2)).processParsedBatch(any(), any());
             });
     }
 
@@ -253,7 +253,7 @@ class InputEventListenerIT {
             .atMost(Duration.ofSeconds(5))
             .untilAsserted(() -> {
                 // Empty messages should be skipped
-                verify(orchestrator, atMost(1)).processBatch(any());
+                verify(orchestrator, atMost(1)).processParsedBatch(any(), any());
             });
     }
 
@@ -276,7 +276,7 @@ class InputEventListenerIT {
             .atMost(Duration.ofSeconds(5))
             .untilAsserted(() -> {
                 // Verify behavior - might be processed or skipped depending on validation
-                verify(orchestrator, atMost(1)).processBatch(any());
+                verify(orchestrator, atMost(1)).processParsedBatch(any(), any());
             });
     }
 
@@ -293,10 +293,10 @@ class InputEventListenerIT {
         // Assert
         await().atMost(Duration.ofSeconds(15))
             .untilAsserted(() -> {
-                ArgumentCaptor<List<InputEventTo>> captor = ArgumentCaptor.forClass(List.class);
-                verify(orchestrator, atLeastOnce()).processBatch(captor.capture());
+                ArgumentCaptor<List<InputEventVo>> captor = ArgumentCaptor.forClass(List.class);
+                verify(orchestrator, atLeastOnce()).processParsedBatch(captor.capture(), any());
 
-                List<List<InputEventTo>> allBatches = captor.getAllValues();
+                List<List<InputEventVo>> allBatches = captor.getAllValues();
                 long totalEvents = allBatches.stream()
                     .flatMap(List::stream)
                     .count();
@@ -0,0 +1,156 @@
+package cz.muni.fi.pv217.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import cz.muni.fi.pv217.entity.to.ProcessedEventTo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProcessedEventPublisher Unit Tests")
+class ProcessedEventPublisherTest {
+
+    @Mock
+    private Emitter<byte[]> emitter;
+
+    private ObjectMapper objectMapper;
+    private SimpleMeterRegistry registry;
+    private ProcessedEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        registry = new SimpleMeterRegistry();
+
+        publisher = new ProcessedEventPublisher();
+        publisher.emitter = emitter;
+        publisher.objectMapper = objectMapper;
+        publisher.registry = registry;
+        publisher.init();
+    }
+
+    // ==================== Helper Methods ====================
+
+    private ProcessedEventTo createEvent(String metricName, double value) {
+        return ProcessedEventTo.builder()
+            .deviceId(UUID.randomUUID())
+            .timestamp(Instant.ofEpochMilli(1000L))
+            .metrics(Collections.singletonList(ProcessedEventTo.ProcessedEventMetricTo.builder()
+                .metricName(metricName)
+                .value(value)
+                .isViolatingSafety(false)
+                .build()))
+            .build();
+    }
+
+    // ==================== Batch Publishing Tests ====================
+
+    @Test
+    @DisplayName("Should send every event of the batch and report all acknowledgements")
+    void testPublishBatch_AllAcknowledged() throws Exception {
+        // Arrange
+        when(emitter.send(any(byte[].class))).thenReturn(CompletableFuture.completedFuture(null));
+        ProcessedEventTo event1 = createEvent("temperature", 25.0);
+        ProcessedEventTo event2 = createEvent("humidity", 60.0);
+
+        // Act
+        int acknowledged = publisher.publishBatch(Arrays.asList(event1, event2)).toCompletableFuture().join();
+
+        // Assert
+        assertEquals(2, acknowledged, "Both events should be acknowledged");
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(emitter, times(2)).send(captor.capture());
+        assertEquals(objectMapper.writeValueAsString(event1),
+            new String(captor.getAllValues().get(0), StandardCharsets.UTF_8),
+            "Batched serialization should match single-event serialization");
+        assertEquals(objectMapper.writeValueAsString(event2),
+            new String(captor.getAllValues().get(1), StandardCharsets.UTF_8),
+            "Events should not leak content into each other");
+        assertEquals(2.0, registry.counter("processed_event_batch_published_events").count());
+        assertEquals(1L, registry.timer("processed_event_batch_ack_time").count());
+    }
+
+    @Test
+    @DisplayName("Should count failed acknowledgements without failing the whole batch")
+    void testPublishBatch_PartialFailure() {
+        // Arrange
+        when(emitter.send(any(byte[].class)))
+            .thenReturn(CompletableFuture.completedFuture(null))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+
+        // Act
+        int acknowledged = publisher.publishBatch(Arrays.asList(
+            createEvent("temperature", 25.0),
+            createEvent("humidity", 60.0))).toCompletableFuture().join();
+
+        // Assert
+        assertEquals(1, acknowledged, "Only the first event should be acknowledged");
+        assertEquals(1.0, registry.counter("processed_event_batch_failed_events").count());
+    }
+
+    @Test
+    @DisplayName("Should not block and complete only once every record is acknowledged or rejected")
+    void testPublishBatch_CompletesWithLastAcknowledgement() {
+        // Arrange
+        CompletableFuture<Void> brokerAck = new CompletableFuture<>();
+        when(emitter.send(any(byte[].class))).thenReturn(brokerAck);
+
+        // Act
+        CompletableFuture<Integer> result = publisher.publishBatch(List.of(createEvent("temperature", 25.0)))
+            .toCompletableFuture();
+
+        // Assert
+        assertFalse(result.isDone(), "Pending record should be neither published nor failed yet");
+        assertEquals(0.0, registry.counter("processed_event_batch_failed_events").count());
+
+        brokerAck.completeExceptionally(new RuntimeException("delivery timeout"));
+        assertEquals(0, result.join(), "Rejected event should not be reported as published");
+        assertEquals(1.0, registry.counter("processed_event_batch_failed_events").count());
+    }
+
+    @Test
+    @DisplayName("Should skip null events inside the batch")
+    void testPublishBatch_NullEventSkipped() {
+        // Arrange
+        when(emitter.send(any(byte[].class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        int acknowledged = publisher.publishBatch(Arrays.asList(createEvent("temperature", 25.0), null))
+            .toCompletableFuture().join();
+
+        // Assert
+        assertEquals(1, acknowledged);
+        verify(emitter, times(1)).send(any(byte[].class));
+    }
+
+    @Test
+    @DisplayName("Should not send anything for null or empty batch")
+    void testPublishBatch_EmptyBatch() {
+        // Act & Assert
+        assertEquals(0, publisher.publishBatch(null).toCompletableFuture().join());
+        assertEquals(0, publisher.publishBatch(Collections.emptyList()).toCompletableFuture().join());
+        verifyNoInteractions(emitter);
+    }
+}
@@ -0,0 +1,100 @@
+package cz.muni.fi.pv217.entity;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import cz.muni.fi.pv217.entity.mappers.InputEventParser;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("InputEventParser Unit Tests")
+class InputEventParserTest {
+
+    private static final String DEVICE_ID = "3fa85f64-5717-4562-b3fc-2c963f66afa6";
+
+    // ==================== Successful Parsing Tests ====================
+
+    @Test
+    @DisplayName("Should parse event with numeric and string readings")
+    void testParse_Success() throws Exception {
+        // Arrange
+        String json = "{\"deviceId\":\"" + DEVICE_ID + "\",\"timestamp\":\"2024-01-01T10:00:00Z\","
+            + "\"readings\":[{\"temperature\":25.5,\"humidity\":\"60\"},{\"pressure\":1013}]}";
+
+        // Act
+        InputEventVo result = InputEventParser.Parse(bytes(json));
+
+        // Assert
+        assertEquals(UUID.fromString(DEVICE_ID), result.getDeviceId());
+        assertEquals(Instant.parse("2024-01-01T10:00:00Z"), result.getTimestamp());
+        assertEquals(3, result.getReadings().size());
+        assertEquals("temperature", result.getReadings().get(0).getMetricName());
+        assertEquals(25.5, result.getReadings().get(0).getValue());
+        assertEquals(60.0, result.getReadings().get(1).getValue());
+        assertEquals("pressure", result.getReadings().get(2).getMetricName());
+        assertEquals(1013.0, result.getReadings().get(2).getValue());
+    }
+
+    @Test
+    @DisplayName("Should parse epoch second timestamps and skip unknown fields")
+    void testParse_EpochSecondsAndUnknownFields() throws Exception {
+        // Arrange
+        String json = "{\"source\":{\"fw\":[1,2]},\"deviceId\":\"" + DEVICE_ID + "\",\"timestamp\":1704103200.5,"
+            + "\"readings\":[{\"temperature\":25.5}]}";
+
+        // Act
+        InputEventVo result = InputEventParser.Parse(bytes(json));
+
+        // Assert
+        assertEquals(Instant.ofEpochSecond(1704103200L, 500_000_000), result.getTimestamp());
+        assertEquals(1, result.getReadings().size());
+    }
+
+    // ==================== Validation Tests ====================
+
+    @ParameterizedTest
+    @DisplayName("Should reject events failing validation with the mapper messages")
+    @CsvSource(delimiter = '|', value = {
+        "{\"timestamp\":\"2024-01-01T10:00:00Z\",\"readings\":[{\"t\":1}]}|Device ID cannot be null",
+        "{\"deviceId\":\"" + DEVICE_ID + "\",\"readings\":[{\"t\":1}]}|Timestamp cannot be null",
+        "{\"deviceId\":\"" + DEVICE_ID + "\",\"timestamp\":\"2024-01-01T10:00:00Z\",\"readings\":[]}|Readings cannot be null",
+        "{\"deviceId\":\"" + DEVICE_ID + "\",\"timestamp\":\"2024-01-01T10:00:00Z\",\"readings\":[{}]}|Reading cannot be null",
+        "{\"deviceId\":\"" + DEVICE_ID + "\",\"timestamp\":\"2024-01-01T10:00:00Z\",\"readings\":[null]}|Reading cannot be null",
+        "{\"deviceId\":\"" + DEVICE_ID + "\",\"timestamp\":\"2024-01-01T10:00:00Z\",\"readings\":[{\"t\":null}]}|Reading value cannot be null",
+        "null|Event cannot be null"
+    })
+    void testParse_ValidationErrors(String json, String expectedMessage) {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> InputEventParser.Parse(bytes(json)));
+        assertEquals(expectedMessage, exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should reject empty message")
+    void testParse_EmptyMessage() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> InputEventParser.Parse(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> InputEventParser.Parse(null));
+    }
+
+    @Test
+    @DisplayName("Should fail on malformed JSON")
+    void testParse_MalformedJson() {
+        // Act & Assert
+        assertThrows(JsonParseException.class, () -> InputEventParser.Parse(bytes("invalid json")));
+    }
+
+    // ==================== Helper Methods ====================
+
+    private byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,7 +1,9 @@
 package cz.muni.fi.pv217.service;
 
 import cz.muni.fi.pv217.entity.vo.ProcessedEventMetric;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
 import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -11,6 +13,7 @@ import org.junit.jupiter.params.provider.CsvSource;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -267,8 +270,109 @@ class MetricEvaluatorTest {
         assertTrue(metric.isViolatingSafety(), "Should detect violation when negative value is below range");
     }
 
+    // ==================== Rule Index Tests ====================
+
+    @Test
+    @DisplayName("Should evaluate metrics against the compiled rule index")
+    void testProcessWithIndex() {
+        // Arrange
+        DeviceRuleIndex index = DeviceRuleIndex.compile(Arrays.asList(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0),
+            new DeviceMetadataResTo.Rule("humidity", 40.0, 80.0)
+        ));
+        ProcessedEventMetric temperature = createIndexedMetric("temperature", 35.0, index);
+        ProcessedEventMetric humidity = createIndexedMetric("humidity", 50.0, index);
+        ProcessedEventVo event = createEvent(UUID.randomUUID(), Instant.ofEpochMilli(1000L), Arrays.asList(temperature, humidity));
+
+        // Act
+        processor.process(event, index);
+
+        // Assert
+        assertTrue(temperature.isViolatingSafety(), "Temperature should violate the indexed range");
+        assertFalse(humidity.isViolatingSafety(), "Humidity should be within the indexed range");
+    }
+
+    @Test
+    @DisplayName("Should not detect violation for metrics without a rule in the index")
+    void testProcessWithIndex_NoRule() {
+        // Arrange
+        DeviceRuleIndex index = DeviceRuleIndex.compile(Collections.singletonList(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0)));
+        ProcessedEventMetric pressure = createIndexedMetric("pressure", 5000.0, index);
+        ProcessedEventVo event = createEvent(UUID.randomUUID(), Instant.ofEpochMilli(1000L), Collections.singletonList(pressure));
+
+        // Act
+        processor.process(event, index);
+
+        // Assert
+        assertFalse(pressure.isViolatingSafety(), "Metric without a rule should not violate safety");
+    }
+
+    @Test
+    @DisplayName("Should fall back to metric boundaries when no index is given")
+    void testProcessWithIndex_NullIndex() {
+        // Arrange
+        ProcessedEventMetric metric = createMetric("temperature", 35.0, 15.0, 30.0);
+        ProcessedEventVo event = createEvent(UUID.randomUUID(), Instant.ofEpochMilli(1000L), Collections.singletonList(metric));
+
+        // Act
+        processor.process(event, null);
+
+        // Assert
+        assertTrue(metric.isViolatingSafety(), "Should evaluate metric boundaries without an index");
+    }
+
+    @Test
+    @DisplayName("Should keep hysteresis state of a device across events")
+    void testProcessWithIndex_HysteresisStateAcrossEvents() {
+        // Arrange
+        DeviceRuleIndex index = DeviceRuleIndex.compile(Collections.singletonList(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "HYSTERESIS", 2.0, null, null)));
+        UUID deviceId = UUID.randomUUID();
+        ProcessedEventMetric first = createIndexedMetric("temperature", 31.0, index);
+        ProcessedEventMetric second = createIndexedMetric("temperature", 29.0, index);
+
+        // Act
+        processor.process(createEvent(deviceId, Instant.ofEpochMilli(1000L), Collections.singletonList(first)), index);
+        processor.process(createEvent(deviceId, Instant.ofEpochMilli(2000L), Collections.singletonList(second)), index);
+
+        // Assert
+        assertTrue(first.isViolatingSafety(), "Value above the range should raise the alert");
+        assertTrue(second.isViolatingSafety(), "Value inside the hysteresis band should keep the alert");
+    }
+
+    @Test
+    @DisplayName("Should start a new rule state when the device rules change")
+    void testProcessWithIndex_StateResetOnNewIndex() {
+        // Arrange
+        List<DeviceMetadataResTo.Rule> rules = Collections.singletonList(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "HYSTERESIS", 2.0, null, null));
+        DeviceRuleIndex oldIndex = DeviceRuleIndex.compile(rules);
+        DeviceRuleIndex newIndex = DeviceRuleIndex.compile(rules);
+        UUID deviceId = UUID.randomUUID();
+        ProcessedEventMetric first = createIndexedMetric("temperature", 31.0, oldIndex);
+        ProcessedEventMetric second = createIndexedMetric("temperature", 29.0, newIndex);
+
+        // Act
+        processor.process(createEvent(deviceId, Instant.ofEpochMilli(1000L), Collections.singletonList(first)), oldIndex);
+        processor.process(createEvent(deviceId, Instant.ofEpochMilli(2000L), Collections.singletonList(second)), newIndex);
+
+        // Assert
+        assertTrue(first.isViolatingSafety());
+        assertFalse(second.isViolatingSafety(), "Alert state should not carry over to a new rule index");
+    }
+
     // ==================== Helper Methods ====================
 
+    private ProcessedEventMetric createIndexedMetric(String name, Double value, DeviceRuleIndex index) {
+        return ProcessedEventMetric.builder()
+            .metricName(name)
+            .value(value)
+            .ruleSlot(index.slotOf(name))
+            .build();
+    }
+
+
     private ProcessedEventMetric createMetric(String name, Double value, Double from, Double to) {
         return ProcessedEventMetric.builder()
             .metricName(name)
@@ -0,0 +1,196 @@
+package cz.muni.fi.pv217.service.aggregation;
+
+import cz.muni.fi.pv217.entity.to.MetricAggregateTo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventMetric;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("WindowAggregator Unit Tests")
+class WindowAggregatorTest {
+
+    private SimpleMeterRegistry registry;
+    private static final Map<String, Double> LOCATION = Map.of("latitude", 49.2, "longitude", 16.6);
+
+    private WindowAggregator aggregator;
+    private UUID deviceId;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        aggregator = new WindowAggregator();
+        aggregator.registry = registry;
+        aggregator.paneSize = Duration.ofSeconds(10);
+        aggregator.slidingPanes = 3;
+        aggregator.allowedLateness = Duration.ofSeconds(5);
+        aggregator.idleTimeout = Duration.ofMinutes(2);
+        aggregator.maxDevices = 2;
+        aggregator.init();
+        deviceId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregator.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep windows open until the watermark passes their end")
+    void testAggregate_WindowsOpenBeforeWatermark() {
+        // Arrange
+        List<MetricAggregateTo> closed = new ArrayList<>();
+
+        // Act
+        aggregator.aggregate(createEvent(1_000L, 10.0, false), closed);
+        aggregator.aggregate(createEvent(12_000L, 30.0, false), closed);
+
+        // Assert
+        assertTrue(closed.isEmpty(), "Pane [0s, 10s) is within the allowed lateness of the newest reading");
+    }
+
+    @Test
+    @DisplayName("Should emit tumbling and sliding aggregates of closed panes")
+    void testAggregate_EmitsClosedPanes() {
+        // Arrange
+        List<MetricAggregateTo> closed = new ArrayList<>();
+
+        // Act
+        aggregator.aggregate(createEvent(1_000L, 10.0, false), closed);
+        aggregator.aggregate(createEvent(4_000L, 20.0, true), closed);
+        aggregator.aggregate(createEvent(12_000L, 30.0, false), closed);
+        aggregator.aggregate(createEvent(26_000L, 40.0, false), closed);
+
+        // Assert
+        assertEquals(4, closed.size(), "Panes 0 and 1 should each emit a tumbling and a sliding aggregate");
+
+        MetricAggregateTo firstPane = closed.get(0);
+        assertEquals(WindowAggregator.TUMBLING, firstPane.getWindowType());
+        assertEquals(Instant.ofEpochMilli(0L), firstPane.getWindowStart());
+        assertEquals(Instant.ofEpochMilli(10_000L), firstPane.getWindowEnd());
+        assertEquals(2, firstPane.getCount());
+        assertEquals(1, firstPane.getViolationCount());
+        assertEquals(10.0, firstPane.getMin());
+        assertEquals(20.0, firstPane.getMax());
+        assertEquals(15.0, firstPane.getAvg());
+        assertEquals(LOCATION, firstPane.getLocation(), "Aggregates should carry the location of the device");
+
+        MetricAggregateTo secondSliding = closed.get(3);
+        assertEquals(WindowAggregator.SLIDING, secondSliding.getWindowType());
+        assertEquals(Instant.ofEpochMilli(-10_000L), secondSliding.getWindowStart());
+        assertEquals(Instant.ofEpochMilli(20_000L), secondSliding.getWindowEnd());
+        assertEquals(3, secondSliding.getCount());
+        assertEquals(10.0, secondSliding.getMin());
+        assertEquals(30.0, secondSliding.getMax());
+        assertEquals(20.0, secondSliding.getAvg());
+    }
+
+    @Test
+    @DisplayName("Should drop readings for already emitted windows")
+    void testAggregate_DropsLateReadings() {
+        // Arrange
+        List<MetricAggregateTo> closed = new ArrayList<>();
+        aggregator.aggregate(createEvent(1_000L, 10.0, false), closed);
+        aggregator.aggregate(createEvent(26_000L, 40.0, false), closed);
+        closed.clear();
+
+        // Act
+        aggregator.aggregate(createEvent(8_000L, 50.0, false), closed);
+        aggregator.aggregate(createEvent(22_000L, 45.0, false), closed);
+
+        // Assert
+        assertTrue(closed.isEmpty());
+        assertEquals(1.0, registry.counter("processing_aggregation_late_readings").count(),
+            "Only the reading for the emitted pane should be dropped");
+    }
+
+    @Test
+    @DisplayName("Should skip events without timestamp or metrics")
+    void testAggregate_InvalidEvents() {
+        // Arrange
+        List<MetricAggregateTo> closed = new ArrayList<>();
+        ProcessedEventVo noTimestamp = createEvent(1_000L, 10.0, false);
+        noTimestamp.setTimestamp(null);
+
+        // Act
+        aggregator.aggregate(null, closed);
+        aggregator.aggregate(noTimestamp, closed);
+
+        // Assert
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should emit the remaining panes of an idle device and forget it")
+    void testFlushIdle_EmitsRemainingPanes() {
+        // Arrange
+        List<MetricAggregateTo> closed = new ArrayList<>();
+        aggregator.aggregate(createEvent(1_000L, 10.0, false), closed);
+        aggregator.aggregate(createEvent(12_000L, 30.0, false), closed);
+        assertTrue(closed.isEmpty());
+
+        // Act
+        List<MetricAggregateTo> notIdle = aggregator.flushIdle(System.nanoTime());
+        List<MetricAggregateTo> flushed = aggregator.flushIdle(System.nanoTime() + Duration.ofMinutes(3).toNanos());
+
+        // Assert
+        assertTrue(notIdle.isEmpty(), "Active device should keep its windows open");
+        assertEquals(4, flushed.size(), "Panes 0 and 1 should be emitted although the watermark did not pass them");
+        assertEquals(Instant.ofEpochMilli(20_000L), flushed.get(2).getWindowEnd());
+        assertEquals(0.0, registry.get("processing_aggregation_tracked_devices").gauge().value());
+        assertEquals(1.0, registry.counter("processing_aggregation_evicted_devices").count());
+
+        // A later reading starts new windows for the device
+        aggregator.aggregate(createEvent(30_000L, 50.0, false), closed);
+        assertEquals(1.0, registry.get("processing_aggregation_tracked_devices").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently active devices above the maximum")
+    void testFlushIdle_EvictsAboveMaxDevices() {
+        // Arrange
+        List<MetricAggregateTo> closed = new ArrayList<>();
+        UUID first = deviceId;
+        aggregator.aggregate(createEvent(1_000L, 10.0, false), closed);
+        for (int i = 0; i < 2; i++) {
+            deviceId = UUID.randomUUID();
+            aggregator.aggregate(createEvent(1_000L, 20.0, false), closed);
+        }
+
+        // Act
+        List<MetricAggregateTo> flushed = aggregator.flushIdle(System.nanoTime());
+
+        // Assert
+        assertEquals(2, flushed.size(), "Only the least recently active device should be flushed");
+        assertEquals(first, flushed.get(0).getDeviceId());
+        assertEquals(2.0, registry.get("processing_aggregation_tracked_devices").gauge().value());
+    }
+
+    // ==================== Helper Methods ====================
+
+    private ProcessedEventVo createEvent(long timestampMillis, double value, boolean violating) {
+        ProcessedEventMetric metric = ProcessedEventMetric.builder()
+            .metricName("temperature")
+            .value(value)
+            .isViolatingSafety(violating)
+            .build();
+        return ProcessedEventVo.builder()
+            .deviceId(deviceId)
+            .timestamp(Instant.ofEpochMilli(timestampMillis))
+            .metrics(Collections.singletonList(metric))
+            .location(LOCATION)
+            .build();
+    }
+}
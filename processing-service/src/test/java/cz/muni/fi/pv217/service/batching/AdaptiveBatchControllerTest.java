@@ -0,0 +1,109 @@
+package cz.muni.fi.pv217.service.batching;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AdaptiveBatchController Unit Tests")
+class AdaptiveBatchControllerTest {
+
+    private SimpleMeterRegistry registry;
+    private AdaptiveBatchController controller;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        controller = new AdaptiveBatchController();
+        controller.registry = registry;
+        controller.minSize = 50;
+        controller.maxSize = 400;
+        controller.sizeStep = 50;
+        controller.minLinger = Duration.ofMillis(5);
+        controller.maxLinger = Duration.ofMillis(500);
+        controller.latencySlo = Duration.ofSeconds(2);
+        controller.maxPollRecords = 500;
+        controller.init();
+    }
+
+    @Test
+    @DisplayName("Should start with the minimum batch size and maximum linger")
+    void testInitialState() {
+        // Assert
+        assertEquals(50, controller.targetSize());
+        assertEquals(500, controller.lingerMillis());
+        assertEquals(50.0, registry.get("processing_batch_target_size").gauge().value());
+        assertEquals(500.0, registry.get("processing_batch_linger_ms").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should grow the batch additively while latency is below the SLO")
+    void testAdditiveIncrease() {
+        // Act
+        controller.onBatchCompleted(100);
+        controller.onBatchCompleted(100);
+
+        // Assert
+        assertEquals(150, controller.targetSize());
+    }
+
+    @Test
+    @DisplayName("Should halve the batch when the SLO is missed")
+    void testMultiplicativeDecrease() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            controller.onBatchCompleted(100);
+        }
+        assertEquals(400, controller.targetSize(), "Batch size should be capped at the maximum");
+
+        // Act
+        controller.onBatchCompleted(20_000);
+
+        // Assert
+        assertEquals(200, controller.targetSize());
+    }
+
+    @Test
+    @DisplayName("Should grow the batch and stop lingering while the consumer is behind")
+    void testBacklog() {
+        // Act
+        controller.onPoll(500);
+
+        // Assert
+        assertEquals(100, controller.targetSize());
+        assertEquals(5, controller.lingerMillis());
+    }
+
+    @Test
+    @DisplayName("Should halve the batch when the SLO is missed while the consumer is behind")
+    void testMultiplicativeDecreaseWithBacklog() {
+        // Arrange
+        controller.onPoll(500);
+        controller.onBatchCompleted(100);
+        controller.onBatchCompleted(100);
+        assertEquals(200, controller.targetSize());
+
+        // Act
+        controller.onBatchCompleted(20_000);
+
+        // Assert
+        assertEquals(100, controller.targetSize(), "Backlog should not keep growing a batch that misses the SLO");
+        assertEquals(5, controller.lingerMillis());
+    }
+
+    @Test
+    @DisplayName("Should shorten linger to what the metadata round trip leaves of the SLO")
+    void testLingerFollowsMetadataRoundTrip() {
+        // Act
+        controller.onMetadataRoundTrip(1600);
+        controller.onBatchCompleted(1700);
+
+        // Assert
+        assertEquals(200, controller.lingerMillis());
+        assertEquals(50, controller.targetSize(), "Latency between comfort zone and SLO keeps the size");
+    }
+}
@@ -0,0 +1,179 @@
+package cz.muni.fi.pv217.service.batching;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BatchCompletionTracker Unit Tests")
+class BatchCompletionTrackerTest {
+
+    private SimpleMeterRegistry registry;
+    private BatchCompletionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        tracker = new BatchCompletionTracker();
+        tracker.registry = registry;
+        tracker.batchTimeout = Duration.ofMinutes(1);
+        tracker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+    }
+
+    // ==================== Helper Methods ====================
+
+    private static final class RecordingAcknowledgement implements BatchAcknowledgement {
+
+        private final AtomicInteger acks = new AtomicInteger();
+        private final List<Throwable> nacks = new ArrayList<>();
+        private final long receivedAt;
+
+        RecordingAcknowledgement() {
+            this(System.nanoTime());
+        }
+
+        RecordingAcknowledgement(long receivedAt) {
+            this.receivedAt = receivedAt;
+        }
+
+        @Override
+        public void ack() {
+            acks.incrementAndGet();
+        }
+
+        @Override
+        public void nack(Throwable reason) {
+            nacks.add(reason);
+        }
+
+        @Override
+        public long receivedAtNanos() {
+            return receivedAt;
+        }
+    }
+
+    @Test
+    @DisplayName("Should acknowledge records only when the batch completes")
+    void testComplete_AcknowledgesOnce() {
+        // Arrange
+        RecordingAcknowledgement ack = new RecordingAcknowledgement();
+        tracker.register("batch-1", ack);
+
+        // Act & Assert
+        assertEquals(0, ack.acks.get(), "Records should not be acknowledged on registration");
+        assertEquals(1.0, registry.get("processing_commit_pending_batches").gauge().value());
+
+        tracker.complete("batch-1");
+        tracker.complete("batch-1");
+        tracker.fail("batch-1", new IllegalStateException("late failure"));
+
+        assertEquals(1, ack.acks.get(), "Duplicate completion should not acknowledge again");
+        assertTrue(ack.nacks.isEmpty(), "Completed batch should not be rejected afterwards");
+        assertEquals(0, tracker.pendingCount());
+        assertEquals(1, registry.get("processing_commit_lag").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should reject timed out batches instead of acknowledging them")
+    void testExpire_RejectsRecords() {
+        // Arrange
+        RecordingAcknowledgement ack = new RecordingAcknowledgement();
+        tracker.batchTimeout = Duration.ZERO;
+        tracker.register("batch-1", ack);
+
+        // Act
+        tracker.expire();
+        tracker.complete("batch-1");
+
+        // Assert
+        assertEquals(0, ack.acks.get());
+        assertEquals(1, ack.nacks.size());
+        assertInstanceOf(TimeoutException.class, ack.nacks.get(0));
+        assertEquals(0, tracker.pendingCount());
+        assertEquals(1.0, registry.counter("processing_commit_expired_batches").count());
+    }
+
+    @Test
+    @DisplayName("Should count the timeout and commit lag from when the records were received")
+    void testRegister_CountsFromReceipt() {
+        // Arrange
+        long received = System.nanoTime() - Duration.ofMinutes(2).toNanos();
+        RecordingAcknowledgement expiring = new RecordingAcknowledgement(received);
+        RecordingAcknowledgement completing = new RecordingAcknowledgement(received);
+        tracker.register("batch-1", expiring);
+        tracker.register("batch-2", completing);
+
+        // Act
+        tracker.complete("batch-2");
+        tracker.expire();
+
+        // Assert
+        assertEquals(1, expiring.nacks.size(), "Batch received before the timeout should expire on registration");
+        assertTrue(registry.get("processing_commit_lag").timer().totalTime(TimeUnit.MINUTES) >= 2,
+                   "Commit lag should include the time before registration");
+    }
+
+    @Test
+    @DisplayName("Should reject the records of a failed batch once")
+    void testFail_RejectsOnce() {
+        // Arrange
+        RecordingAcknowledgement ack = new RecordingAcknowledgement();
+        tracker.register("batch-1", ack);
+        IllegalStateException reason = new IllegalStateException("publish failed");
+
+        // Act
+        tracker.fail("batch-1", reason);
+        tracker.fail("batch-1", reason);
+        tracker.complete("batch-1");
+
+        // Assert
+        assertEquals(List.of(reason), ack.nacks);
+        assertEquals(0, ack.acks.get());
+        assertEquals(1.0, registry.counter("processing_commit_failed_batches").count());
+    }
+
+    @Test
+    @DisplayName("Should settle the records of accumulated polls together")
+    void testAllOf_SettlesEveryPoll() {
+        // Arrange
+        RecordingAcknowledgement first = new RecordingAcknowledgement();
+        RecordingAcknowledgement second = new RecordingAcknowledgement();
+        BatchAcknowledgement all = BatchAcknowledgement.allOf(List.of(second, first));
+        tracker.register("batch-1", all);
+
+        // Act
+        tracker.fail("batch-1", new IllegalStateException("publish failed"));
+
+        // Assert
+        assertEquals(first.receivedAtNanos(), all.receivedAtNanos(), "Batch should be received with its earliest poll");
+        assertEquals(1, first.nacks.size());
+        assertEquals(1, second.nacks.size());
+    }
+
+    @Test
+    @DisplayName("Should ignore batches without acknowledgement and unknown batches")
+    void testRegister_NullAck() {
+        // Act
+        tracker.register("batch-1", null);
+        tracker.complete("unknown");
+        tracker.complete(null);
+
+        // Assert
+        assertEquals(0, tracker.pendingCount());
+    }
+}
@@ -0,0 +1,132 @@
+package cz.muni.fi.pv217.service.batching;
+
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.service.ProcessingOrchestrator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MicroBatchAccumulator Unit Tests")
+class MicroBatchAccumulatorTest {
+
+    @Mock
+    private ProcessingOrchestrator orchestrator;
+
+    private MicroBatchAccumulator accumulator;
+
+    @BeforeEach
+    void setUp() {
+        AdaptiveBatchController controller = new AdaptiveBatchController();
+        controller.registry = new SimpleMeterRegistry();
+        controller.minSize = 4;
+        controller.maxSize = 4;
+        controller.sizeStep = 1;
+        controller.minLinger = Duration.ZERO;
+        controller.maxLinger = Duration.ZERO;
+        controller.latencySlo = Duration.ofSeconds(2);
+        controller.maxPollRecords = 500;
+        controller.init();
+
+        // The linger timer is not started, flushExpired is called by the tests
+        accumulator = new MicroBatchAccumulator();
+        accumulator.orchestrator = orchestrator;
+        accumulator.controller = controller;
+        accumulator.enabled = true;
+    }
+
+    // ==================== Helper Methods ====================
+
+    private List<InputEventVo> createEvents(int count) {
+        List<InputEventVo> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(InputEventVo.builder()
+                .deviceId(UUID.randomUUID())
+                .timestamp(Instant.ofEpochMilli(1000L))
+                .readings(List.of())
+                .build());
+        }
+        return events;
+    }
+
+    private static final class CountingAcknowledgement implements BatchAcknowledgement {
+
+        private final AtomicInteger acks = new AtomicInteger();
+        private final AtomicInteger nacks = new AtomicInteger();
+        private final long receivedAt = System.nanoTime();
+
+        @Override
+        public void ack() {
+            acks.incrementAndGet();
+        }
+
+        @Override
+        public void nack(Throwable reason) {
+            nacks.incrementAndGet();
+        }
+
+        @Override
+        public long receivedAtNanos() {
+            return receivedAt;
+        }
+    }
+
+    // ==================== Acknowledgement Tests ====================
+
+    @Test
+    @DisplayName("Should hold the acknowledgements of accumulated polls until their batch is handed over")
+    void testAdd_HoldsAcknowledgementsUntilFlush() {
+        // Arrange
+        CountingAcknowledgement first = new CountingAcknowledgement();
+        CountingAcknowledgement second = new CountingAcknowledgement();
+
+        // Act
+        accumulator.add(createEvents(2), first);
+        verifyNoInteractions(orchestrator);
+        accumulator.add(createEvents(2), second);
+
+        // Assert
+        ArgumentCaptor<BatchAcknowledgement> captor = ArgumentCaptor.forClass(BatchAcknowledgement.class);
+        verify(orchestrator).processParsedBatch(argThat(events -> events.size() == 4), captor.capture());
+        assertEquals(0, first.acks.get() + second.acks.get(), "Polls should not be acknowledged on hand-over");
+
+        captor.getValue().ack();
+        assertEquals(1, first.acks.get());
+        assertEquals(1, second.acks.get());
+    }
+
+    @Test
+    @DisplayName("Should reject every accumulated poll when the batch cannot be handed over")
+    void testFlush_RejectsPollsOnFailure() {
+        // Arrange
+        CountingAcknowledgement first = new CountingAcknowledgement();
+        CountingAcknowledgement second = new CountingAcknowledgement();
+        doThrow(new RuntimeException("Processing error")).when(orchestrator).processParsedBatch(any(), any());
+
+        // Act
+        accumulator.add(createEvents(1), first);
+        accumulator.add(createEvents(1), second);
+        accumulator.flushExpired();
+
+        // Assert
+        assertEquals(1, first.nacks.get());
+        assertEquals(1, second.nacks.get());
+        assertEquals(0, first.acks.get() + second.acks.get());
+    }
+}
@@ -0,0 +1,126 @@
+package cz.muni.fi.pv217.service.hotpath;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventToMapper;
+import cz.muni.fi.pv217.entity.mappers.ProcessedEventVoMapper;
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.entity.vo.InputEventReading;
+import cz.muni.fi.pv217.entity.vo.InputEventVo;
+import cz.muni.fi.pv217.entity.vo.ProcessedEventVo;
+import cz.muni.fi.pv217.service.MetricEvaluator;
+import cz.muni.fi.pv217.service.rules.DeviceRuleIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Hot Path Unit Tests")
+class ProcessedEventEncoderTest {
+
+    private ObjectMapper objectMapper;
+    private ProcessedEventEncoder encoder;
+    private DeviceMetadataResTo metadata;
+    private DeviceRuleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        encoder = new ProcessedEventEncoder(objectMapper, 1000);
+        metadata = new DeviceMetadataResTo(
+            Map.of("latitude", 49.2, "longitude", 16.6),
+            "Thermometer",
+            "SENSOR",
+            "ACTIVE",
+            Arrays.asList(
+                new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0),
+                new DeviceMetadataResTo.Rule("humidity", 40.0, 80.0)));
+        index = DeviceRuleIndex.compile(metadata.rules());
+    }
+
+    @Test
+    @DisplayName("Should produce the same JSON as the regular mapper chain")
+    void testEncode_MatchesRegularPath() throws Exception {
+        // Arrange
+        InputEventVo event = createEvent(UUID.randomUUID(), Arrays.asList(
+            createReading("temperature", 35.0),
+            createReading("humidity", 50.0),
+            createReading("pressure", null)));
+
+        ProcessedEventVo regular = ProcessedEventVoMapper.MapFrom(event, metadata, index);
+        new MetricEvaluator().process(regular, index);
+        String expected = objectMapper.writeValueAsString(ProcessedEventToMapper.MapFrom(regular));
+
+        EventCarrier carrier = new EventCarrier();
+        carrier.load(event, index);
+        new MetricEvaluator().process(carrier, index);
+
+        // Act
+        byte[] actual = encoder.encode(carrier, metadata, index);
+
+        // Assert
+        assertEquals(objectMapper.readTree(expected), objectMapper.readTree(actual));
+    }
+
+    @Test
+    @DisplayName("Should reuse the carrier for events of different sizes")
+    void testCarrier_Reuse() {
+        // Arrange
+        EventCarrier carrier = new EventCarrier();
+        InputEventReading[] readings = new InputEventReading[40];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = createReading("metric" + i, (double) i);
+        }
+
+        // Act
+        carrier.load(createEvent(UUID.randomUUID(), Arrays.asList(readings)), index);
+        carrier.load(createEvent(UUID.randomUUID(), Collections.singletonList(createReading("temperature", 20.0))), index);
+
+        // Assert
+        assertEquals(1, carrier.size());
+        assertEquals("temperature", carrier.metricName(0));
+        assertEquals(index.slotOf("temperature"), carrier.slot(0));
+        assertFalse(carrier.isViolating(0));
+    }
+
+    @Test
+    @DisplayName("Should reject events with a null reading")
+    void testCarrier_NullReading() {
+        // Arrange
+        EventCarrier carrier = new EventCarrier();
+        InputEventVo event = createEvent(UUID.randomUUID(), Arrays.asList(createReading("temperature", 20.0), null));
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> carrier.load(event, index));
+        assertEquals("Reading cannot be null", exception.getMessage());
+    }
+
+    // ==================== Helper Methods ====================
+
+    private InputEventVo createEvent(UUID deviceId, List<InputEventReading> readings) {
+        return InputEventVo.builder()
+            .deviceId(deviceId)
+            .timestamp(Instant.parse("2024-01-01T10:00:00Z"))
+            .readings(readings)
+            .build();
+    }
+
+    private InputEventReading createReading(String metricName, Double value) {
+        return InputEventReading.builder()
+            .metricName(metricName)
+            .value(value)
+            .build();
+    }
+}
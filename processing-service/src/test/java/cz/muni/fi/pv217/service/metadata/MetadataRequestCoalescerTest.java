@@ -0,0 +1,214 @@
+package cz.muni.fi.pv217.service.metadata;
+
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import cz.muni.fi.pv217.kafka.MetadataBatchRequestPublisher;
+import cz.muni.fi.pv217.kafka.dto.MetadataBatchRequest;
+import cz.muni.fi.pv217.kafka.dto.MetadataBatchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MetadataRequestCoalescer Unit Tests")
+class MetadataRequestCoalescerTest {
+
+    private static final UUID DEVICE_A = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID DEVICE_B = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+    private static final UUID DEVICE_C = UUID.fromString("00000000-0000-0000-0000-00000000000c");
+
+    @Mock
+    private MetadataBatchRequestPublisher requestPublisher;
+
+    private SimpleMeterRegistry registry;
+    private MetadataRequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        coalescer = new MetadataRequestCoalescer();
+        coalescer.requestPublisher = requestPublisher;
+        coalescer.registry = registry;
+        // Long window, the tests flush explicitly
+        coalescer.window = Duration.ofHours(1);
+        coalescer.maxDevices = 100;
+        coalescer.timeout = Duration.ofMinutes(1);
+        coalescer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    private static DeviceMetadataResTo metadata(String name) {
+        return new DeviceMetadataResTo(Map.of(), name, "SENSOR", "ACTIVE",
+            List.of(new DeviceMetadataResTo.Rule("temperature", 0.0, 50.0)));
+    }
+
+    private MetadataBatchRequest flushAndCapture(int expectedRequests) {
+        coalescer.flush();
+        ArgumentCaptor<MetadataBatchRequest> captor = ArgumentCaptor.forClass(MetadataBatchRequest.class);
+        verify(requestPublisher, times(expectedRequests)).publish(captor.capture());
+        return captor.getValue();
+    }
+
+    // ==================== Coalescing ====================
+
+    @Test
+    @DisplayName("Should merge requests within the window into one request with unique devices")
+    void testRequest_MergesWindow() {
+        // Act
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> first = coalescer.request(List.of(DEVICE_A, DEVICE_B));
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> second = coalescer.request(List.of(DEVICE_B, DEVICE_C));
+        MetadataBatchRequest request = flushAndCapture(1);
+
+        // Assert
+        assertEquals(List.of(DEVICE_A, DEVICE_B, DEVICE_C), request.deviceIds());
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1.0, registry.counter("processing_metadata_coalesced_devices").count());
+        assertEquals(3, coalescer.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("Should not request devices that are already in flight")
+    void testRequest_SkipsInFlightDevices() {
+        // Arrange
+        coalescer.request(List.of(DEVICE_A));
+        flushAndCapture(1);
+
+        // Act
+        coalescer.request(List.of(DEVICE_A, DEVICE_B));
+        MetadataBatchRequest request = flushAndCapture(2);
+
+        // Assert
+        assertEquals(List.of(DEVICE_B), request.deviceIds());
+    }
+
+    @Test
+    @DisplayName("Should publish early once the window holds the maximum number of devices")
+    void testRequest_FlushesAtMaxDevices() {
+        // Arrange
+        coalescer.maxDevices = 2;
+
+        // Act
+        coalescer.request(List.of(DEVICE_A, DEVICE_B));
+
+        // Assert
+        verify(requestPublisher).publish(any());
+    }
+
+    // ==================== Completion ====================
+
+    @Test
+    @DisplayName("Should complete every waiting batch with the metadata of its own devices")
+    void testComplete_FansOutToWaitingBatches() {
+        // Arrange
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> first = coalescer.request(List.of(DEVICE_A, DEVICE_B));
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> second = coalescer.request(List.of(DEVICE_B));
+        MetadataBatchRequest request = flushAndCapture(1);
+
+        // Act
+        boolean handled = coalescer.complete(new MetadataBatchResponse(request.batchId(),
+            Map.of(DEVICE_A, metadata("a"), DEVICE_B, metadata("b"))));
+
+        // Assert
+        assertTrue(handled);
+        assertEquals(2, first.join().size());
+        assertEquals("b", second.join().get(DEVICE_B).deviceName());
+        assertEquals(0, coalescer.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("Should leave devices missing from the response out of the result")
+    void testComplete_MissingDevice() {
+        // Arrange
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> result = coalescer.request(List.of(DEVICE_A, DEVICE_B));
+        MetadataBatchRequest request = flushAndCapture(1);
+
+        // Act
+        coalescer.complete(new MetadataBatchResponse(request.batchId(), Map.of(DEVICE_A, metadata("a"))));
+
+        // Assert
+        assertEquals(Map.of(DEVICE_A, metadata("a")), result.join());
+    }
+
+    @Test
+    @DisplayName("Should fail waiting batches when the response carries no metadata")
+    void testComplete_NoMetadata() {
+        // Arrange
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> result = coalescer.request(List.of(DEVICE_A, DEVICE_B));
+        MetadataBatchRequest request = flushAndCapture(1);
+
+        // Act
+        assertTrue(coalescer.complete(new MetadataBatchResponse(request.batchId(), null)));
+
+        // Assert
+        CompletionException failure = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(0, coalescer.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("Should not handle responses to requests it did not send")
+    void testComplete_UnknownRequest() {
+        // Act & Assert
+        assertFalse(coalescer.complete(new MetadataBatchResponse("other-batch", Map.of())));
+        assertFalse(coalescer.complete(new MetadataBatchResponse(null, Map.of())));
+        assertFalse(coalescer.complete(null));
+    }
+
+    // ==================== Expiry ====================
+
+    @Test
+    @DisplayName("Should fail waiting batches of timed out requests and allow requesting again")
+    void testExpire_FailsAndReleasesDevices() {
+        // Arrange
+        CompletableFuture<Map<UUID, DeviceMetadataResTo>> result = coalescer.request(List.of(DEVICE_A));
+        MetadataBatchRequest request = flushAndCapture(1);
+        coalescer.timeout = Duration.ZERO;
+
+        // Act
+        coalescer.expire();
+
+        // Assert
+        CompletionException failure = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+        assertEquals(0, coalescer.inFlightCount());
+        assertFalse(coalescer.complete(new MetadataBatchResponse(request.batchId(), Map.of())),
+            "A late response should be ignored");
+
+        coalescer.request(List.of(DEVICE_A));
+        assertEquals(List.of(DEVICE_A), flushAndCapture(2).deviceIds());
+    }
+
+    @Test
+    @DisplayName("Should not publish anything when nothing was requested")
+    void testFlush_Empty() {
+        // Act
+        coalescer.flush();
+
+        // Assert
+        verify(requestPublisher, never()).publish(any());
+    }
+}
@@ -0,0 +1,147 @@
+package cz.muni.fi.pv217.service.rules;
+
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DeviceRuleIndex Unit Tests")
+class DeviceRuleIndexTest {
+
+    @Test
+    @DisplayName("Should resolve slots and primitive ranges for every rule")
+    void testCompile_ResolvesSlots() {
+        // Arrange
+        List<DeviceMetadataResTo.Rule> rules = Arrays.asList(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0),
+            new DeviceMetadataResTo.Rule("humidity", 40.0, 80.0)
+        );
+
+        // Act
+        DeviceRuleIndex index = DeviceRuleIndex.compile(rules);
+
+        // Assert
+        assertEquals(2, index.size());
+        int slot = index.slotOf("humidity");
+        assertNotEquals(DeviceRuleIndex.NO_RULE, slot);
+        assertEquals("humidity", index.metricId(slot));
+        assertEquals(40.0, index.from(slot));
+        assertEquals(80.0, index.to(slot));
+        assertTrue(index.isBounded(slot));
+        assertEquals(DeviceRuleIndex.NO_RULE, index.slotOf("pressure"));
+        assertEquals(DeviceRuleIndex.NO_RULE, index.slotOf(null));
+    }
+
+    @Test
+    @DisplayName("Should keep the first rule when several rules share a metric name")
+    void testCompile_DuplicateNames_FirstWins() {
+        // Arrange
+        List<DeviceMetadataResTo.Rule> rules = Arrays.asList(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0),
+            new DeviceMetadataResTo.Rule("temperature", 0.0, 100.0)
+        );
+
+        // Act
+        DeviceRuleIndex index = DeviceRuleIndex.compile(rules);
+
+        // Assert
+        assertEquals(1, index.size());
+        assertEquals(15.0, index.from(index.slotOf("temperature")));
+        assertEquals(2, index.deviceRules().size(), "Device rule list should keep every rule");
+    }
+
+    @Test
+    @DisplayName("Should mark rules with a missing boundary as unbounded")
+    void testCompile_MissingBoundary() {
+        // Act
+        DeviceRuleIndex index = DeviceRuleIndex.compile(
+            Collections.singletonList(new DeviceMetadataResTo.Rule("temperature", null, 30.0)));
+
+        // Assert
+        int slot = index.slotOf("temperature");
+        assertFalse(index.isBounded(slot));
+        assertTrue(Double.isNaN(index.from(slot)));
+    }
+
+    @Test
+    @DisplayName("Should expose an immutable device rule list")
+    void testDeviceRules_Immutable() {
+        // Arrange
+        DeviceRuleIndex index = DeviceRuleIndex.compile(
+            Collections.singletonList(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0)));
+
+        // Act & Assert
+        assertThrows(UnsupportedOperationException.class, () -> index.deviceRules().clear());
+    }
+
+    @Test
+    @DisplayName("Should reject missing rules and null rules")
+    void testCompile_InvalidRules() {
+        // Act & Assert
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+            () -> DeviceRuleIndex.compile(Collections.emptyList()));
+        assertEquals("Rules not found", missing.getMessage());
+
+        IllegalArgumentException nullRule = assertThrows(IllegalArgumentException.class,
+            () -> DeviceRuleIndex.compile(Arrays.asList(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0), null)));
+        assertEquals("Rule cannot be null", nullRule.getMessage());
+    }
+
+    @Test
+    @DisplayName("RuleIndexCache should reuse the index until the device rules change")
+    void testRuleIndexCache_RecompilesOnChange() {
+        // Arrange
+        RuleIndexCache cache = new RuleIndexCache();
+        UUID deviceId = UUID.randomUUID();
+        List<DeviceMetadataResTo.Rule> rules = new ArrayList<>(List.of(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0)));
+
+        // Act
+        DeviceRuleIndex first = cache.indexFor(deviceId, metadata(rules));
+        DeviceRuleIndex second = cache.indexFor(deviceId, metadata(new ArrayList<>(rules)));
+        DeviceRuleIndex changed = cache.indexFor(deviceId,
+            metadata(List.of(new DeviceMetadataResTo.Rule("temperature", 10.0, 30.0))));
+
+        // Assert
+        assertSame(first, second, "Equal rules should reuse the compiled index");
+        assertNotSame(first, changed, "Changed rules should be recompiled");
+        assertEquals(10.0, changed.from(changed.slotOf("temperature")));
+    }
+
+    @Test
+    @DisplayName("RuleIndexCache should serve the index by device version and recompile after invalidation")
+    void testRuleIndexCache_KeyedByVersion() {
+        // Arrange
+        RuleIndexCache cache = new RuleIndexCache(10);
+        UUID deviceId = UUID.randomUUID();
+        List<DeviceMetadataResTo.Rule> rules = List.of(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0));
+        List<DeviceMetadataResTo.Rule> changedRules = List.of(new DeviceMetadataResTo.Rule("temperature", 10.0, 30.0));
+
+        // Act
+        DeviceRuleIndex first = cache.indexFor(deviceId, metadata(rules, 1L));
+        DeviceRuleIndex sameVersion = cache.indexFor(deviceId, metadata(changedRules, 1L));
+        DeviceRuleIndex renamed = cache.indexFor(deviceId, metadata(rules, 2L));
+        cache.invalidate(deviceId);
+        DeviceRuleIndex invalidated = cache.indexFor(deviceId, metadata(rules, 2L));
+
+        // Assert
+        assertSame(first, sameVersion, "The same version should be served without comparing the rules");
+        assertSame(first, renamed, "A new version with equal rules should keep the index");
+        assertNotSame(first, invalidated, "An invalidated index should be recompiled");
+    }
+
+    private DeviceMetadataResTo metadata(List<DeviceMetadataResTo.Rule> rules, Long version) {
+        return new DeviceMetadataResTo(Map.of(), "Sensor-A1", "TemperatureSensor", "active", rules, version);
+    }
+
+    private DeviceMetadataResTo metadata(List<DeviceMetadataResTo.Rule> rules) {
+        return new DeviceMetadataResTo(Map.of(), "Sensor-A1", "TemperatureSensor", "active", rules);
+    }
+}
@@ -0,0 +1,138 @@
+package cz.muni.fi.pv217.service.rules;
+
+import cz.muni.fi.pv217.entity.to.DeviceMetadataResTo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RuleEvaluator Unit Tests")
+class RuleEvaluatorTest {
+
+    // ==================== Compiler Tests ====================
+
+    @Test
+    @DisplayName("Should compile rules without a type as range rules")
+    void testCompile_DefaultsToRange() {
+        // Act
+        RuleEvaluator evaluator = RuleCompiler.compile(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0));
+
+        // Assert
+        assertInstanceOf(RangeRuleEvaluator.class, evaluator);
+    }
+
+    @Test
+    @DisplayName("Should reject rules with unknown types and invalid parameters instead of evaluating them as range rules")
+    void testCompile_RejectsInvalidRules() {
+        // Act & Assert
+        assertSame(RuleCompiler.REJECTED, RuleCompiler.compile(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "MEDIAN", null, null, null)));
+        assertSame(RuleCompiler.REJECTED, RuleCompiler.compile(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "WINDOWED", null, 60, null)));
+        assertSame(RuleCompiler.REJECTED, RuleCompiler.compile(
+            new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "HYSTERESIS", 10.0, null, null)));
+        assertFalse(RuleCompiler.REJECTED.evaluate(100.0, 1000L, null, 0));
+    }
+
+    @Test
+    @DisplayName("Should never report a violation for unbounded rules")
+    void testCompile_Unbounded() {
+        // Arrange
+        DeviceRuleIndex index = indexOf(new DeviceMetadataResTo.Rule("temperature", null, 30.0, "RATE_OF_CHANGE", null, null, null));
+
+        // Act & Assert
+        assertFalse(index.evaluator(0).evaluate(1000.0, 1000L, index.newState(), 0));
+    }
+
+    // ==================== Rate of Change Tests ====================
+
+    @Test
+    @DisplayName("Should detect changes faster than the allowed rate per second")
+    void testRateOfChange() {
+        // Arrange
+        DeviceRuleIndex index = indexOf(new DeviceMetadataResTo.Rule("temperature", -1.0, 1.0, "RATE_OF_CHANGE", null, null, null));
+        DeviceRuleState state = index.newState();
+        RuleEvaluator evaluator = index.evaluator(0);
+
+        // Act & Assert
+        assertFalse(evaluator.evaluate(20.0, 0L, state, 0), "First reading has nothing to compare with");
+        assertFalse(evaluator.evaluate(21.0, 2000L, state, 0), "0.5 per second is within the limit");
+        assertTrue(evaluator.evaluate(25.0, 3000L, state, 0), "4 per second exceeds the limit");
+        assertFalse(evaluator.evaluate(100.0, 3000L, state, 0), "Readings that are not newer are ignored");
+    }
+
+    // ==================== Hysteresis Tests ====================
+
+    @Test
+    @DisplayName("Should clear the alert only after the value is back inside the hysteresis band")
+    void testHysteresis() {
+        // Arrange
+        DeviceRuleIndex index = indexOf(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "HYSTERESIS", 2.0, null, null));
+        DeviceRuleState state = index.newState();
+        RuleEvaluator evaluator = index.evaluator(0);
+
+        // Act & Assert
+        assertFalse(evaluator.evaluate(29.0, 0L, state, 0));
+        assertTrue(evaluator.evaluate(30.5, 1000L, state, 0));
+        assertTrue(evaluator.evaluate(29.0, 2000L, state, 0), "Alert should hold inside the band");
+        assertFalse(evaluator.evaluate(27.5, 3000L, state, 0), "Alert should clear below to - hysteresis");
+        assertFalse(evaluator.evaluate(29.0, 4000L, state, 0), "No new alert until the range is left again");
+    }
+
+    @Test
+    @DisplayName("Should not let a late reading raise or clear a hysteresis alert")
+    void testHysteresis_IgnoresOutOfOrderReadings() {
+        // Arrange
+        DeviceRuleIndex index = indexOf(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "HYSTERESIS", 2.0, null, null));
+        DeviceRuleState state = index.newState();
+        RuleEvaluator evaluator = index.evaluator(0);
+
+        // Act & Assert
+        assertFalse(evaluator.evaluate(20.0, 5000L, state, 0));
+        assertFalse(evaluator.evaluate(35.0, 1000L, state, 0), "A late reading does not raise the alert");
+        assertTrue(evaluator.evaluate(31.0, 6000L, state, 0));
+        assertTrue(evaluator.evaluate(20.0, 2000L, state, 0), "A late reading does not clear the alert");
+        assertTrue(evaluator.evaluate(29.0, 7000L, state, 0), "The alert still holds inside the band");
+    }
+
+    // ==================== Windowed Tests ====================
+
+    @Test
+    @DisplayName("Should report a violation only after N out-of-range readings within the window")
+    void testWindowed() {
+        // Arrange
+        DeviceRuleIndex index = indexOf(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "WINDOWED", null, 10, 3));
+        DeviceRuleState state = index.newState();
+        RuleEvaluator evaluator = index.evaluator(0);
+
+        // Act & Assert
+        assertFalse(evaluator.evaluate(35.0, 0L, state, 0));
+        assertFalse(evaluator.evaluate(20.0, 1000L, state, 0), "In-range readings are never violations");
+        assertFalse(evaluator.evaluate(35.0, 2000L, state, 0));
+        assertTrue(evaluator.evaluate(35.0, 9000L, state, 0), "Third violation within 10 seconds");
+        assertFalse(evaluator.evaluate(35.0, 20000L, state, 0), "Older violations fell out of the window");
+    }
+
+    @Test
+    @DisplayName("Should ignore readings older than the newest one in a window")
+    void testWindowed_IgnoresOutOfOrderReadings() {
+        // Arrange
+        DeviceRuleIndex index = indexOf(new DeviceMetadataResTo.Rule("temperature", 15.0, 30.0, "WINDOWED", null, 10, 2));
+        DeviceRuleState state = index.newState();
+        RuleEvaluator evaluator = index.evaluator(0);
+
+        // Act & Assert
+        assertFalse(evaluator.evaluate(35.0, 30000L, state, 0));
+        assertFalse(evaluator.evaluate(35.0, 1000L, state, 0), "A late reading is not counted");
+        assertFalse(evaluator.evaluate(35.0, 45000L, state, 0), "The late reading did not enter the window");
+        assertTrue(evaluator.evaluate(35.0, 46000L, state, 0));
+    }
+
+    // ==================== Helper Methods ====================
+
+    private DeviceRuleIndex indexOf(DeviceMetadataResTo.Rule rule) {
+        return DeviceRuleIndex.compile(Collections.singletonList(rule));
+    }
+}